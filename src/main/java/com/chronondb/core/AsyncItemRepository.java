@@ -0,0 +1,60 @@
+package com.chronondb.core;
+
+import com.chronondb.core.memstore.LogItem;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous item repository, same operations as {@link ItemRepository}, but nothing blocks the invoker. Futures
+ * fail with the same exceptions sync methods throw, e.g. {@link com.chronondb.core.exception.OverloadException}.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public interface AsyncItemRepository<K, V> {
+
+    /**
+     * Async {@link ItemRepository#add(Object, long, Object)}
+     *
+     * @param itemId           unique key
+     * @param expiryTimeMillis absolute expiration time in milliseconds, must be in the future
+     * @param payload          Payload to keep
+     * @return Completes when item is added
+     */
+    CompletableFuture<Void> addAsync(K itemId, long expiryTimeMillis, V payload);
+
+    /**
+     * Async {@link ItemRepository#remove(Object)}
+     *
+     * @param itemId unique key
+     * @return Completes when item is removed
+     */
+    CompletableFuture<Void> removeAsync(K itemId);
+
+    /**
+     * Async {@link ItemRepository#get(long, long)}
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @return Active items between startTime and endTime
+     */
+    CompletableFuture<Collection<LogItem<K, V>>> getAsync(long startTimeMillis, long endTimeMillis);
+
+    /**
+     * Async {@link ItemRepository#get(Object)}
+     *
+     * @param itemId Item Id
+     * @return Log item or null, if not found
+     */
+    CompletableFuture<LogItem<K, V>> getAsync(K itemId);
+
+    /**
+     * Async {@link ItemRepository#flush(long, long)}
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @return Completes when range is flushed
+     */
+    CompletableFuture<Void> flushAsync(long startTimeMillis, long endTimeMillis);
+}
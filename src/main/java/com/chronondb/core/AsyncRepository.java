@@ -0,0 +1,294 @@
+package com.chronondb.core;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.memstore.LogItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a sync {@link ItemRepository} on an executor, e.g. embedded {@link com.chronondb.core.memstore.Log}, so request
+ * threads of an asynchronous service never block on it.
+ * <p>
+ * Point operations (add, remove, get by Id) are batched: concurrent requests queue up and executor tasks drain them,
+ * so a burst of a thousand gets is a few tasks, not a thousand. Operations are spread over lanes by Id hash, a lane
+ * per thread of the executor, and lanes are drained in parallel, so one slow operation holds up its own lane only.
+ * Gets of the same Id in a batch with no write of it in between are served by one lookup. Point operations of the
+ * same Id run in the order they were submitted, operations of different Ids are not ordered.
+ * <p>
+ * Range gets and flushes are long, every one runs as a task of its own and never holds up point operations, so they
+ * are not ordered with them: compose futures if you need it.
+ * <p>
+ * Default executor is a dedicated pool of daemon threads, closed together with the repository. Own executor is not
+ * closed, e.g. pass a virtual thread per task executor where the platform has one.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public class AsyncRepository<K, V> implements AsyncItemRepository<K, V>, AutoCloseable {
+
+    /**
+     * Point operations per drain task, so a long queue doesn't starve the others sharing the executor
+     */
+    public static final int MAX_BATCH = 256;
+
+    private final ItemRepository<K, V> repository;
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+
+    private final List<Lane> lanes;
+
+    /**
+     * Repository call, sync
+     */
+    private interface Call<T> {
+        T call() throws DatabaseGenericException;
+    }
+
+    /**
+     * Queued point operation
+     */
+    private abstract class PointOp {
+        final K itemId;
+
+        PointOp(K itemId) {
+            this.itemId = itemId;
+        }
+
+        /**
+         * Run and complete the future, never throws
+         *
+         * @param reads Items read in this batch, Id to item or null
+         */
+        abstract void run(Map<K, LogItem<K, V>> reads);
+
+        abstract void fail(Throwable e);
+    }
+
+    private final class PointGet extends PointOp {
+        final CompletableFuture<LogItem<K, V>> future = new CompletableFuture<>();
+
+        PointGet(K itemId) {
+            super(itemId);
+        }
+
+        @Override
+        void run(Map<K, LogItem<K, V>> reads) {
+            try {
+                if (!reads.containsKey(itemId)) reads.put(itemId, repository.get(itemId));
+                future.complete(reads.get(itemId));
+            } catch (DatabaseGenericException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        void fail(Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private final class PointWrite extends PointOp {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final Call<Void> call;
+
+        PointWrite(K itemId, Call<Void> call) {
+            super(itemId);
+            this.call = call;
+        }
+
+        @Override
+        void run(Map<K, LogItem<K, V>> reads) {
+            // whatever was read before is stale now
+            reads.remove(itemId);
+            try {
+                call.call();
+                future.complete(null);
+            } catch (DatabaseGenericException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        void fail(Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Point operations of some Ids, drained by a single task at a time, so they keep their order
+     */
+    private final class Lane {
+        private final Queue<PointOp> points = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        void enqueue(PointOp op) {
+            points.add(op);
+            schedule();
+        }
+
+        void schedule() {
+            if (points.isEmpty() || !draining.compareAndSet(false, true)) return;
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // nobody is going to run them
+                for (var op = points.poll(); op != null; op = points.poll()) op.fail(e);
+                draining.set(false);
+            }
+        }
+
+        void drain() {
+            var reads = new HashMap<K, LogItem<K, V>>();
+            for (int i = 0; i < MAX_BATCH; i++) {
+                var op = points.poll();
+                if (op == null) break;
+                op.run(reads);
+            }
+            draining.set(false);
+            // someone may have queued after the last poll, but before the flag is down
+            schedule();
+        }
+    }
+
+    private AsyncRepository(ItemRepository<K, V> repository, Executor executor, ExecutorService ownExecutor,
+                            int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Bad parallelism: " + parallelism);
+        this.repository = repository;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        var lanes = new ArrayList<Lane>(parallelism);
+        for (int i = 0; i < parallelism; i++) lanes.add(new Lane());
+        this.lanes = List.copyOf(lanes);
+    }
+
+    /**
+     * Wrap a repository, run it on a dedicated pool, a thread per core
+     *
+     * @param repository Sync repository
+     * @param <K>        Item Id type
+     * @param <V>        Payload type
+     * @return Async repository, close it to stop the pool
+     */
+    public static <K, V> AsyncRepository<K, V> wrap(ItemRepository<K, V> repository) {
+        var counter = new AtomicInteger();
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        var pool = Executors.newFixedThreadPool(threads, task -> {
+            var thread = new Thread(task, "chronondb-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new AsyncRepository<>(repository, pool, pool, threads);
+    }
+
+    /**
+     * Wrap a repository, run it on the executor, point operations on up to a thread per core at once
+     *
+     * @param repository Sync repository
+     * @param executor   Executor, not closed by the repository
+     * @param <K>        Item Id type
+     * @param <V>        Payload type
+     * @return Async repository
+     */
+    public static <K, V> AsyncRepository<K, V> wrap(ItemRepository<K, V> repository, Executor executor) {
+        return wrap(repository, executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Wrap a repository, run it on the executor
+     *
+     * @param repository  Sync repository
+     * @param executor    Executor, not closed by the repository
+     * @param parallelism How many point operation tasks may run at once, e.g. executor threads
+     * @param <K>         Item Id type
+     * @param <V>         Payload type
+     * @return Async repository
+     */
+    public static <K, V> AsyncRepository<K, V> wrap(ItemRepository<K, V> repository, Executor executor,
+                                                    int parallelism) {
+        return new AsyncRepository<>(repository, executor, null, parallelism);
+    }
+
+    @Override
+    public CompletableFuture<Void> addAsync(K itemId, long expiryTimeMillis, V payload) {
+        var op = new PointWrite(itemId, () -> {
+            repository.add(itemId, expiryTimeMillis, payload);
+            return null;
+        });
+        enqueue(op);
+        return op.future;
+    }
+
+    @Override
+    public CompletableFuture<Void> removeAsync(K itemId) {
+        var op = new PointWrite(itemId, () -> {
+            repository.remove(itemId);
+            return null;
+        });
+        enqueue(op);
+        return op.future;
+    }
+
+    @Override
+    public CompletableFuture<LogItem<K, V>> getAsync(K itemId) {
+        var op = new PointGet(itemId);
+        enqueue(op);
+        return op.future;
+    }
+
+    @Override
+    public CompletableFuture<Collection<LogItem<K, V>>> getAsync(long startTimeMillis, long endTimeMillis) {
+        return submit(() -> repository.get(startTimeMillis, endTimeMillis));
+    }
+
+    @Override
+    public CompletableFuture<Void> flushAsync(long startTimeMillis, long endTimeMillis) {
+        return submit(() -> {
+            repository.flush(startTimeMillis, endTimeMillis);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Call<T> call) {
+        var future = new CompletableFuture<T>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(call.call());
+                } catch (DatabaseGenericException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void enqueue(PointOp op) {
+        // spread, so Ids with close hash codes don't share a lane
+        int hash = Objects.hashCode(op.itemId);
+        lanes.get(Math.floorMod(hash ^ (hash >>> 16), lanes.size())).enqueue(op);
+    }
+
+    /**
+     * Stop the default pool, queued operations still run. Own executor is left as is.
+     */
+    @Override
+    public void close() {
+        if (ownExecutor != null) ownExecutor.shutdown();
+    }
+}
@@ -4,6 +4,7 @@ import com.chronondb.core.exception.DatabaseGenericException;
 import com.chronondb.core.memstore.LogItem;
 
 import java.util.Collection;
+import java.util.Iterator;
 
 /**
  * Item repository interface
@@ -42,6 +43,20 @@ public interface ItemRepository<K, V> {
      */
     Collection<LogItem<K,V>> get(long startTimeMillis, long endTimeMillis) throws DatabaseGenericException;
 
+    /**
+     * Returns data for specified period lazily, so big ranges can be streamed without materializing the whole result.
+     * <p>
+     * Default implementation just wraps {@link #get(long, long)}, override it if repository can do better.
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis end of the time range in milliseconds
+     * @return iterator over active items between startTime and endTime
+     * @throws DatabaseGenericException On internal error
+     */
+    default Iterator<LogItem<K, V>> iterator(long startTimeMillis, long endTimeMillis) throws DatabaseGenericException {
+        return get(startTimeMillis, endTimeMillis).iterator();
+    }
+
     /**
      * Returns data for specified Id
      *
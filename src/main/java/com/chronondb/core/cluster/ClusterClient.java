@@ -0,0 +1,272 @@
+package com.chronondb.core.cluster;
+
+import com.chronondb.core.AsyncItemRepository;
+import com.chronondb.core.ItemRepository;
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.net.Codec;
+import com.chronondb.core.net.LogClient;
+import com.chronondb.core.net.RangeStream;
+import com.chronondb.core.properties.ClusterProperties;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cluster of {@link com.chronondb.core.net.LogServer} nodes, each serving its own Log. Keys are partitioned by
+ * consistent hashing, see {@link HashRing}: point operations go to the owner of the key only, so capacity and write
+ * throughput grow with nodes.
+ * <p>
+ * Every node holds items of every time range, so range queries and FLUSH go to all of them. Requests are sent to all
+ * the nodes at once and results are merged by register time, see {@link ClusterRange}. Node which is down fails the
+ * range unless {@link ClusterProperties#isAllowPartialResults()}, then the range has the rest and says what is
+ * missing. There is no replication of partitions here: keys of a node which is down are unavailable until it is back,
+ * run a {@link com.chronondb.core.replication.ReplicationFollower} per node if you need a standby.
+ * <p>
+ * Thread-safe, connections are pipelined and shared, see {@link LogClient}.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public class ClusterClient<K, V> implements ItemRepository<K, V>, AsyncItemRepository<K, V>, AutoCloseable {
+
+    private static final Comparator<LogItem<?, ?>> BY_REGISTER_TIME =
+            Comparator.comparingLong(LogItem::getRegisterTime);
+
+    private final Map<String, LogClient<K, V>> nodes;
+    private final HashRing ring;
+    private final Codec<K> keyCodec;
+    private final boolean allowPartial;
+    private final long timeoutMs;
+
+    private final AtomicLong partialResults = new AtomicLong();
+
+    private ClusterClient(Map<String, LogClient<K, V>> nodes, Codec<K> keyCodec, ClusterProperties settings) {
+        this.nodes = nodes;
+        this.ring = new HashRing(nodes.keySet(), settings.getVirtualNodes());
+        this.keyCodec = keyCodec;
+        this.allowPartial = settings.isAllowPartialResults();
+        this.timeoutMs = settings.getTimeoutMs();
+    }
+
+    /**
+     * Connect to all the nodes. Node list must be the same, in any order, for all clients of the cluster, otherwise
+     * they disagree about owners.
+     *
+     * @param addresses    Node addresses
+     * @param keyCodec     Item Id codec
+     * @param payloadCodec Payload codec
+     * @param settings     Cluster settings, see type for details
+     * @param <K>          Item Id type
+     * @param <V>          Payload type
+     * @return Connected client
+     * @throws IOException If can't connect to some node
+     */
+    public static <K, V> ClusterClient<K, V> connect(List<InetSocketAddress> addresses, Codec<K> keyCodec,
+                                                     Codec<V> payloadCodec, ClusterProperties settings)
+            throws IOException {
+        var nodes = new LinkedHashMap<String, LogClient<K, V>>();
+        try {
+            for (var address : addresses) {
+                var node = address.getHostString() + ':' + address.getPort();
+                if (nodes.containsKey(node)) throw new IllegalArgumentException("Duplicate node " + node);
+                nodes.put(node, LogClient.connect(address, keyCodec, payloadCodec, settings.getTimeoutMs()));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (var client : nodes.values()) client.close();
+            throw e;
+        }
+        return new ClusterClient<>(nodes, keyCodec, settings);
+    }
+
+    /**
+     * Nodes of the cluster
+     *
+     * @return Node ids, host:port
+     */
+    public List<String> getNodes() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Owner of a key
+     *
+     * @param itemId Item Id
+     * @return Node id
+     */
+    public String nodeFor(K itemId) {
+        return ring.nodeFor(keyCodec.encode(itemId));
+    }
+
+    /**
+     * Range queries answered without some of the nodes, as far as known when the result or stream was handed out, see
+     * {@link ClusterProperties#isAllowPartialResults()}
+     *
+     * @return Queries count
+     */
+    public long getPartialResults() {
+        return partialResults.get();
+    }
+
+    private LogClient<K, V> owner(K itemId) {
+        return nodes.get(nodeFor(itemId));
+    }
+
+    @Override
+    public CompletableFuture<Void> addAsync(K itemId, long expiryTimeMillis, V payload) {
+        return owner(itemId).addAsync(itemId, expiryTimeMillis, payload);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeAsync(K itemId) {
+        return owner(itemId).removeAsync(itemId);
+    }
+
+    @Override
+    public CompletableFuture<LogItem<K, V>> getAsync(K itemId) {
+        return owner(itemId).getAsync(itemId);
+    }
+
+    /**
+     * Scatter range to all the nodes, gather whole results and merge them by register time
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @return Log items, oldest first
+     */
+    @Override
+    public CompletableFuture<Collection<LogItem<K, V>>> getAsync(long startTimeMillis, long endTimeMillis) {
+        var parts = new ArrayList<CompletableFuture<Collection<LogItem<K, V>>>>(nodes.size());
+        for (var node : nodes.values()) {
+            // a stuck node must not hold the others. Timed out request is forgotten and cancelled by the node client
+            var part = node.getAsync(startTimeMillis, endTimeMillis).orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+            // node which is down just has nothing, if we may
+            parts.add(allowPartial ? part.exceptionally(e -> null) : part);
+        }
+
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            var result = new ArrayList<LogItem<K, V>>();
+            boolean partial = false;
+            for (var part : parts) {
+                var items = part.join();
+                if (items == null) partial = true;
+                else result.addAll(items);
+            }
+            if (partial) partialResults.incrementAndGet();
+            // node parts are sorted already, TimSort just finds and merges the runs
+            result.sort(BY_REGISTER_TIME);
+            return result;
+        });
+    }
+
+    /**
+     * FLUSH on all the nodes
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @return Completes when all the nodes are done, fails if any failed
+     */
+    @Override
+    public CompletableFuture<Void> flushAsync(long startTimeMillis, long endTimeMillis) {
+        var parts = new ArrayList<CompletableFuture<Void>>(nodes.size());
+        for (var node : nodes.values()) parts.add(node.flushAsync(startTimeMillis, endTimeMillis));
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]));
+    }
+
+    @Override
+    public void add(K itemId, long expiryTimeMillis, V payload) throws DatabaseGenericException {
+        owner(itemId).add(itemId, expiryTimeMillis, payload);
+    }
+
+    @Override
+    public void remove(K itemId) throws DatabaseGenericException {
+        owner(itemId).remove(itemId);
+    }
+
+    @Override
+    public LogItem<K, V> get(K itemId) throws DatabaseGenericException {
+        return owner(itemId).get(itemId);
+    }
+
+    @Override
+    public void flush(long startTimeMillis, long endTimeMillis) throws DatabaseGenericException {
+        try {
+            flushAsync(startTimeMillis, endTimeMillis).join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (cause instanceof DatabaseGenericException) throw (DatabaseGenericException) cause;
+            throw new DatabaseGenericException(String.valueOf(cause));
+        }
+    }
+
+    @Override
+    public Collection<LogItem<K, V>> get(long startTimeMillis, long endTimeMillis) throws DatabaseGenericException {
+        var result = new LinkedList<LogItem<K, V>>();
+        var range = iterator(startTimeMillis, endTimeMillis);
+        try {
+            range.forEachRemaining(result::add);
+        } catch (IllegalStateException e) {
+            throw new DatabaseGenericException(e.getMessage());
+        } finally {
+            range.close();
+        }
+        return result;
+    }
+
+    /**
+     * Streamed range of the whole cluster, oldest first. Streams of all the nodes are requested at once, items are
+     * merged while you iterate, see {@link ClusterRange}. Close it if you don't read it to the end.
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @return Lazy merging iterator
+     * @throws DatabaseGenericException If request can't be sent to some node or it breaks before its first item, and
+     *                                  partial results are not allowed
+     */
+    @Override
+    public ClusterRange<K, V> iterator(long startTimeMillis, long endTimeMillis) throws DatabaseGenericException {
+        var streams = new LinkedHashMap<String, RangeStream<K, V>>();
+        var failed = new ArrayList<String>();
+        for (var node : nodes.entrySet()) {
+            try {
+                streams.put(node.getKey(), node.getValue().iterator(startTimeMillis, endTimeMillis));
+            } catch (DatabaseGenericException e) {
+                if (!allowPartial) {
+                    // nobody is going to read the ones already open
+                    for (var stream : streams.values()) stream.close();
+                    throw new DatabaseGenericException("Node " + node.getKey() + ": " + e.getMessage());
+                }
+                failed.add(node.getKey());
+            }
+        }
+
+        ClusterRange<K, V> range;
+        try {
+            range = ClusterRange.merge(streams, failed, allowPartial);
+        } catch (IllegalStateException e) {
+            // node broke while the first items were taken, merge has closed the streams already
+            throw new DatabaseGenericException(e.getMessage());
+        }
+        if (!range.isComplete()) partialResults.incrementAndGet();
+        return range;
+    }
+
+    /**
+     * Close connections to all the nodes. Pending requests fail.
+     */
+    @Override
+    public void close() {
+        for (var node : nodes.values()) node.close();
+    }
+}
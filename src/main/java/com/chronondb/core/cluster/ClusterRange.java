@@ -0,0 +1,133 @@
+package com.chronondb.core.cluster;
+
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.net.RangeStream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Range of the cluster, see {@link ClusterClient#iterator(long, long)}. Streams of all the nodes are open at once and
+ * fill in background, this one merges them by register time: k-way merge over their heads, so memory is a head per
+ * node plus stream buffers, whatever the range is.
+ * <p>
+ * Node stream which breaks either breaks the whole range with {@link IllegalStateException} or, if partial results
+ * are allowed, is dropped and reported by {@link #getFailedNodes()}. Not thread-safe, same as any iterator.
+ * <p>
+ * Range which is not read to the end MUST be closed, e.g. when only the first items are needed: close cancels the
+ * streams of all the nodes, see {@link RangeStream}.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public final class ClusterRange<K, V> implements RangeStream<K, V> {
+
+    private static final Comparator<Head<?, ?>> BY_REGISTER_TIME = Comparator
+            .<Head<?, ?>>comparingLong(head -> head.item.getRegisterTime())
+            .thenComparingInt(head -> head.order);
+
+    private final PriorityQueue<Head<K, V>> heads = new PriorityQueue<>(BY_REGISTER_TIME);
+    private final List<RangeStream<K, V>> streams = new ArrayList<>();
+    private final boolean allowPartial;
+    private final List<String> failedNodes;
+
+    /**
+     * Node stream and its current item, reused while the stream goes on
+     */
+    private static final class Head<K, V> {
+        private final String node;
+        private final int order;
+        private final RangeStream<K, V> items;
+        private LogItem<K, V> item;
+
+        private Head(String node, int order, RangeStream<K, V> items) {
+            this.node = node;
+            this.order = order;
+            this.items = items;
+        }
+    }
+
+    private ClusterRange(boolean allowPartial, List<String> failedNodes) {
+        this.allowPartial = allowPartial;
+        this.failedNodes = new ArrayList<>(failedNodes);
+    }
+
+    /**
+     * @param streams      Node id to its open stream
+     * @param failedNodes  Nodes which failed to open a stream
+     * @param allowPartial Drop broken streams instead of failing
+     */
+    static <K, V> ClusterRange<K, V> merge(Map<String, RangeStream<K, V>> streams, List<String> failedNodes,
+                                           boolean allowPartial) {
+        var range = new ClusterRange<K, V>(allowPartial, failedNodes);
+        range.streams.addAll(streams.values());
+        int order = 0;
+        for (var stream : streams.entrySet()) range.advance(new Head<>(stream.getKey(), order++, stream.getValue()));
+        return range;
+    }
+
+    /**
+     * Move a head to its next item and put it back, or drop it if its stream is over
+     */
+    private void advance(Head<K, V> head) {
+        try {
+            if (!head.items.hasNext()) return;
+            head.item = head.items.next();
+            heads.add(head);
+        } catch (IllegalStateException e) {
+            if (!allowPartial) {
+                // the range is over, the rest of the nodes must stop streaming
+                close();
+                throw new IllegalStateException("Node " + head.node + ": " + e.getMessage(), e);
+            }
+            head.items.close();
+            failedNodes.add(head.node);
+        }
+    }
+
+    /**
+     * Nodes whose items are missing from the range: request or stream failed. Complete once iteration is over
+     *
+     * @return Node ids, unmodifiable
+     */
+    public List<String> getFailedNodes() {
+        return Collections.unmodifiableList(failedNodes);
+    }
+
+    /**
+     * Are all the nodes in the range so far
+     *
+     * @return False if some node failed
+     */
+    public boolean isComplete() {
+        return failedNodes.isEmpty();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public LogItem<K, V> next() {
+        var head = heads.poll();
+        if (head == null) throw new NoSuchElementException();
+        var item = head.item;
+        advance(head);
+        return item;
+    }
+
+    /**
+     * Cancel streams of all the nodes, idempotent
+     */
+    @Override
+    public void close() {
+        heads.clear();
+        for (var stream : streams) stream.close();
+    }
+}
@@ -0,0 +1,69 @@
+package com.chronondb.core.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring. Every node is put on the ring at many pseudo-random points (virtual nodes), key belongs to the
+ * first point clockwise from its hash. Node which joins or leaves moves only about 1/N of the keys, the rest stay
+ * where they are.
+ * <p>
+ * Keys are hashed by their encoded bytes, not by hashCode, so every client in every JVM sees the same owner.
+ * Immutable, thread-safe.
+ */
+public final class HashRing {
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+    private final List<String> nodes;
+
+    /**
+     * @param nodes        Node ids, e.g. host:port
+     * @param virtualNodes Points per node
+     */
+    public HashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) throw new IllegalArgumentException("No nodes");
+        if (virtualNodes < 1) throw new IllegalArgumentException("Bad virtual nodes: " + virtualNodes);
+        this.nodes = List.copyOf(nodes);
+        for (var node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // collision of two points is possible, though hardly ever. The first one keeps it
+                ring.putIfAbsent(hash((node + '#' + i).getBytes(StandardCharsets.UTF_8)), node);
+            }
+        }
+    }
+
+    /**
+     * Nodes of the ring
+     *
+     * @return Node ids, unmodifiable
+     */
+    public List<String> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Owner of a key
+     *
+     * @param key Encoded key
+     * @return Node id
+     */
+    public String nodeFor(byte[] key) {
+        var point = ring.ceilingEntry(hash(key));
+        return point == null ? ring.firstEntry().getValue() : point.getValue();
+    }
+
+    /**
+     * FNV-1a, then SplitMix64 finalizer: FNV alone leaves short keys clustered
+     */
+    static long hash(byte[] bytes) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : bytes) h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,170 @@
+package com.chronondb.core.columnar;
+
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.net.Codec;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Block of a columnar file, a view over the mapped memory. Nothing is deserialized up front: header is read on
+ * demand, columns are exposed as buffers over the mapping, values are decoded only when asked for.
+ * <p>
+ * Thread-safe for reads, every call works with its own buffer view.
+ */
+public final class ColumnarBlock {
+
+    private final ByteBuffer data;
+    private final int rows;
+    private final int idBytes;
+
+    ColumnarBlock(ByteBuffer data) {
+        this.data = data.order(ColumnarFormat.ORDER);
+        this.rows = data.getInt(ColumnarFormat.ROWS);
+        this.idBytes = data.getInt(ColumnarFormat.ID_BYTES);
+    }
+
+    /**
+     * Rows in the block
+     *
+     * @return Rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Min register time of the block, from the header
+     *
+     * @return Min register time
+     */
+    public long getMinRegisterTime() {
+        return data.getLong(ColumnarFormat.MIN_REGISTER_TIME);
+    }
+
+    /**
+     * Max register time of the block, from the header
+     *
+     * @return Max register time
+     */
+    public long getMaxRegisterTime() {
+        return data.getLong(ColumnarFormat.MAX_REGISTER_TIME);
+    }
+
+    /**
+     * Min TTL of the block, from the header
+     *
+     * @return Min TTL
+     */
+    public long getMinTtl() {
+        return data.getLong(ColumnarFormat.MIN_TTL);
+    }
+
+    /**
+     * Max TTL of the block, from the header
+     *
+     * @return Max TTL
+     */
+    public long getMaxTtl() {
+        return data.getLong(ColumnarFormat.MAX_TTL);
+    }
+
+    /**
+     * Register time column, a read-only view over the mapping
+     *
+     * @return Register times, one per row
+     */
+    public LongBuffer registerTimes() {
+        return column(ColumnarFormat.registerTimesOffset(), (long) rows * Long.BYTES).asLongBuffer();
+    }
+
+    /**
+     * TTL column, a read-only view over the mapping
+     *
+     * @return TTLs, one per row
+     */
+    public LongBuffer ttls() {
+        return column(ColumnarFormat.ttlsOffset(rows), (long) rows * Long.BYTES).asLongBuffer();
+    }
+
+    /**
+     * Register time of a row
+     *
+     * @param row Row
+     * @return Register time
+     */
+    public long getRegisterTime(int row) {
+        return data.getLong((int) ColumnarFormat.registerTimesOffset() + checkRow(row) * Long.BYTES);
+    }
+
+    /**
+     * TTL of a row
+     *
+     * @param row Row
+     * @return TTL
+     */
+    public long getTtl(int row) {
+        return data.getLong((int) ColumnarFormat.ttlsOffset(rows) + checkRow(row) * Long.BYTES);
+    }
+
+    /**
+     * Encoded id of a row, a read-only view over the mapping, no copy
+     *
+     * @param row Row
+     * @return Id bytes
+     */
+    public ByteBuffer getIdBytes(int row) {
+        return value(ColumnarFormat.idOffsetsOffset(rows), ColumnarFormat.idDataOffset(rows), checkRow(row));
+    }
+
+    /**
+     * Encoded payload of a row, a read-only view over the mapping, no copy
+     *
+     * @param row Row
+     * @return Payload bytes or null, if payload is null
+     */
+    public ByteBuffer getPayloadBytes(int row) {
+        checkRow(row);
+        long nulls = data.getLong((int) ColumnarFormat.nullsOffset(rows) + row / 64 * Long.BYTES);
+        if ((nulls & (1L << (row % 64))) != 0) return null;
+        return value(ColumnarFormat.payloadOffsetsOffset(rows), ColumnarFormat.payloadDataOffset(rows, idBytes), row);
+    }
+
+    /**
+     * Decode a row as an item, with its original register time
+     *
+     * @param row          Row
+     * @param keyCodec     Item Id codec
+     * @param payloadCodec Payload codec
+     * @param <K>          Item Id type
+     * @param <V>          Payload type
+     * @return Item
+     */
+    public <K, V> LogItem<K, V> getItem(int row, Codec<K> keyCodec, Codec<V> payloadCodec) {
+        var payload = getPayloadBytes(row);
+        return new LogItem<>(keyCodec.decode(bytes(getIdBytes(row))), getRegisterTime(row), getTtl(row),
+                payload == null ? null : payloadCodec.decode(bytes(payload)));
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= rows) throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        return row;
+    }
+
+    private ByteBuffer value(long offsetsOffset, long dataOffset, int row) {
+        int from = data.getInt((int) offsetsOffset + row * Integer.BYTES);
+        int to = data.getInt((int) offsetsOffset + (row + 1) * Integer.BYTES);
+        // opaque codec bytes, default byte order, as any fresh buffer
+        return data.slice((int) (dataOffset + from), to - from).asReadOnlyBuffer();
+    }
+
+    private ByteBuffer column(long offset, long length) {
+        return data.slice((int) offset, (int) length).asReadOnlyBuffer().order(ColumnarFormat.ORDER);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        var bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
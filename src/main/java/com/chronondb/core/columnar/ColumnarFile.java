@@ -0,0 +1,175 @@
+package com.chronondb.core.columnar;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.memstore.Log;
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.net.Codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Columnar file written by {@link ColumnarWriter}, memory mapped. Open reads block headers only, every block is
+ * mapped as is and its columns are read straight from the mapping, see {@link ColumnarBlock}.
+ * <p>
+ * Mapping stays valid after the file is closed, it is released by GC together with the blocks.
+ */
+public final class ColumnarFile {
+
+    private final List<ColumnarBlock> blocks;
+    private final long rows;
+
+    private ColumnarFile(List<ColumnarBlock> blocks) {
+        this.blocks = blocks;
+        long count = 0;
+        for (var block : blocks) count += block.getRows();
+        this.rows = count;
+    }
+
+    /**
+     * Open and map a file
+     *
+     * @param file File
+     * @return Columnar file
+     * @throws IOException If file can't be read or it is not a columnar file
+     */
+    public static ColumnarFile open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = read(channel, 0, ColumnarFormat.FILE_HEADER_SIZE);
+            if (header.getInt() != ColumnarFormat.MAGIC) throw new IOException("Not a columnar file: " + file);
+            if (header.getInt() != ColumnarFormat.VERSION) throw new IOException("Unknown columnar version: " + file);
+
+            var blocks = new ArrayList<ColumnarBlock>();
+            long position = ColumnarFormat.FILE_HEADER_SIZE;
+            long size = channel.size();
+            while (position < size) {
+                long blockBytes = read(channel, position, ColumnarFormat.BLOCK_HEADER_SIZE)
+                        .getLong(ColumnarFormat.BLOCK_BYTES);
+                if (blockBytes < ColumnarFormat.BLOCK_HEADER_SIZE || position + blockBytes > size
+                        || blockBytes > Integer.MAX_VALUE)
+                    throw new IOException("Broken columnar block at " + position + ": " + file);
+
+                blocks.add(new ColumnarBlock(channel.map(FileChannel.MapMode.READ_ONLY, position, blockBytes)));
+                position += blockBytes;
+            }
+            return new ColumnarFile(blocks);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        var buffer = ByteBuffer.allocate(size).order(ColumnarFormat.ORDER);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of columnar file");
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Blocks, in file order
+     *
+     * @return Blocks
+     */
+    public List<ColumnarBlock> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * Rows in all blocks
+     *
+     * @return Rows
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Items with register time in range. Blocks are pruned by the header, rows are decoded lazily.
+     *
+     * @param startTimeMillis Start of the range, inclusive
+     * @param endTimeMillis   End of the range, inclusive
+     * @param keyCodec        Item Id codec
+     * @param payloadCodec    Payload codec
+     * @param <K>             Item Id type
+     * @param <V>             Payload type
+     * @return Lazy iterator, in file order
+     */
+    public <K, V> Iterator<LogItem<K, V>> items(long startTimeMillis, long endTimeMillis, Codec<K> keyCodec,
+                                                Codec<V> payloadCodec) {
+        return new RowIterator<>(blocks.iterator(), startTimeMillis, endTimeMillis, keyCodec, payloadCodec);
+    }
+
+    /**
+     * Import all items to a Log with their original register times, through the bulk loader. Expired ones are
+     * skipped. File MUST be sorted by register time, which is true for an export of a Log range.
+     *
+     * @param log          Target Log
+     * @param keyCodec     Item Id codec
+     * @param payloadCodec Payload codec
+     * @param parallelism  Threads to build blocks with
+     * @param <K>          Item Id type
+     * @param <V>          Payload type
+     * @return Items imported
+     * @throws DatabaseGenericException If interrupted or timed out while locking
+     */
+    public <K, V> long importInto(Log<K, V> log, Codec<K> keyCodec, Codec<V> payloadCodec, int parallelism)
+            throws DatabaseGenericException {
+        return log.bulkLoader(parallelism).load(items(Long.MIN_VALUE, Long.MAX_VALUE, keyCodec, payloadCodec));
+    }
+
+    private static final class RowIterator<K, V> implements Iterator<LogItem<K, V>> {
+        private final Iterator<ColumnarBlock> blocks;
+        private final long startTimeMillis;
+        private final long endTimeMillis;
+        private final Codec<K> keyCodec;
+        private final Codec<V> payloadCodec;
+        private ColumnarBlock block;
+        private int row;
+        private LogItem<K, V> nextItem;
+
+        private RowIterator(Iterator<ColumnarBlock> blocks, long startTimeMillis, long endTimeMillis,
+                            Codec<K> keyCodec, Codec<V> payloadCodec) {
+            this.blocks = blocks;
+            this.startTimeMillis = startTimeMillis;
+            this.endTimeMillis = endTimeMillis;
+            this.keyCodec = keyCodec;
+            this.payloadCodec = payloadCodec;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextItem == null) {
+                if (block != null && row < block.getRows()) {
+                    long time = block.getRegisterTime(row);
+                    if (time >= startTimeMillis && time <= endTimeMillis)
+                        nextItem = block.getItem(row, keyCodec, payloadCodec);
+                    row++;
+                    continue;
+                }
+                if (!blocks.hasNext()) return false;
+                block = blocks.next();
+                row = 0;
+                // header says there is nothing for us, columns are not touched
+                if (block.getMaxRegisterTime() < startTimeMillis || block.getMinRegisterTime() > endTimeMillis)
+                    row = block.getRows();
+            }
+            return true;
+        }
+
+        @Override
+        public LogItem<K, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            var item = nextItem;
+            nextItem = null;
+            return item;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.chronondb.core.columnar;
+
+import java.nio.ByteOrder;
+
+/**
+ * Columnar file layout. Everything is little-endian, every section starts at 8 bytes boundary, so a mapped column can
+ * be viewed as LongBuffer as is.
+ * <p>
+ * File: [int magic][int version][long reserved], then blocks one after another till the end of file.
+ * <p>
+ * Block header, 64 bytes: [int rows][int reserved][long blockBytes][long minRegisterTime][long maxRegisterTime]
+ * [long minTtl][long maxTtl][int idBytes][int payloadBytes][long reserved]
+ * <p>
+ * Block columns, in this order:
+ * - register times, long per row
+ * - TTLs, long per row
+ * - id offsets, int per row plus one, relative to id data
+ * - payload offsets, int per row plus one, relative to payload data
+ * - payload null bitmap, a bit per row, in longs
+ * - id data
+ * - payload data
+ */
+final class ColumnarFormat {
+
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * "CHC1"
+     */
+    static final int MAGIC = 0x31434843;
+    static final int VERSION = 1;
+
+    static final int FILE_HEADER_SIZE = 16;
+    static final int BLOCK_HEADER_SIZE = 64;
+
+    static final int ROWS = 0;
+    static final int BLOCK_BYTES = 8;
+    static final int MIN_REGISTER_TIME = 16;
+    static final int MAX_REGISTER_TIME = 24;
+    static final int MIN_TTL = 32;
+    static final int MAX_TTL = 40;
+    static final int ID_BYTES = 48;
+    static final int PAYLOAD_BYTES = 52;
+
+    private ColumnarFormat() {
+    }
+
+    /**
+     * Round up to 8 bytes boundary
+     *
+     * @param size Size, bytes
+     * @return Padded size
+     */
+    static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    static long registerTimesOffset() {
+        return BLOCK_HEADER_SIZE;
+    }
+
+    static long ttlsOffset(int rows) {
+        return registerTimesOffset() + (long) rows * Long.BYTES;
+    }
+
+    static long idOffsetsOffset(int rows) {
+        return ttlsOffset(rows) + (long) rows * Long.BYTES;
+    }
+
+    static long payloadOffsetsOffset(int rows) {
+        return idOffsetsOffset(rows) + align((long) (rows + 1) * Integer.BYTES);
+    }
+
+    static long nullsOffset(int rows) {
+        return payloadOffsetsOffset(rows) + align((long) (rows + 1) * Integer.BYTES);
+    }
+
+    static long idDataOffset(int rows) {
+        return nullsOffset(rows) + (long) nullsLongs(rows) * Long.BYTES;
+    }
+
+    static long payloadDataOffset(int rows, int idBytes) {
+        return idDataOffset(rows) + align(idBytes);
+    }
+
+    static long blockBytes(int rows, int idBytes, int payloadBytes) {
+        return payloadDataOffset(rows, idBytes) + align(payloadBytes);
+    }
+
+    static int nullsLongs(int rows) {
+        return (rows + 63) / 64;
+    }
+}
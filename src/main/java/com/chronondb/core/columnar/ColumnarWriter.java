@@ -0,0 +1,247 @@
+package com.chronondb.core.columnar;
+
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.net.Codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes items to a columnar file, see {@link ColumnarFormat} for the layout. Items are cut into blocks of a fixed
+ * number of rows, every block has min/max of register time and TTL in its header, so reader can skip blocks without
+ * touching columns.
+ * <p>
+ * Block goes to disk with a single gather write: header and fixed-size columns are built in small buffers, encoded ids
+ * and payloads are written as they are, no copy into one big buffer. NOT thread-safe.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public final class ColumnarWriter<K, V> implements Closeable {
+
+    /**
+     * Rows per block by default, 64K rows of a few dozens bytes each is a few MB per block
+     */
+    public static final int ROWS_PER_BLOCK = 64 * 1024;
+
+    private static final ByteBuffer PADDING = ByteBuffer.allocate(Long.BYTES);
+
+    private final FileChannel channel;
+    private final Codec<K> keyCodec;
+    private final Codec<V> payloadCodec;
+    private final int rowsPerBlock;
+
+    private final long[] registerTimes;
+    private final long[] ttls;
+    private final List<byte[]> ids;
+    private final List<byte[]> payloads;
+    private int rows;
+    private long totalRows;
+    private int blocks;
+
+    private ColumnarWriter(FileChannel channel, Codec<K> keyCodec, Codec<V> payloadCodec, int rowsPerBlock) {
+        this.channel = channel;
+        this.keyCodec = keyCodec;
+        this.payloadCodec = payloadCodec;
+        this.rowsPerBlock = rowsPerBlock;
+        this.registerTimes = new long[rowsPerBlock];
+        this.ttls = new long[rowsPerBlock];
+        this.ids = new ArrayList<>(rowsPerBlock);
+        this.payloads = new ArrayList<>(rowsPerBlock);
+    }
+
+    /**
+     * Create a file, existing one is truncated
+     *
+     * @param file         File
+     * @param keyCodec     Item Id codec
+     * @param payloadCodec Payload codec
+     * @param rowsPerBlock Rows per block
+     * @param <K>          Item Id type
+     * @param <V>          Payload type
+     * @return Writer, close it to write the last block
+     * @throws IOException If file can't be created
+     */
+    public static <K, V> ColumnarWriter<K, V> create(Path file, Codec<K> keyCodec, Codec<V> payloadCodec,
+                                                     int rowsPerBlock) throws IOException {
+        if (rowsPerBlock <= 0) throw new IllegalArgumentException("Rows per block must be positive");
+
+        var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            var header = ByteBuffer.allocate(ColumnarFormat.FILE_HEADER_SIZE).order(ColumnarFormat.ORDER)
+                    .putInt(ColumnarFormat.MAGIC)
+                    .putInt(ColumnarFormat.VERSION)
+                    .putLong(0)
+                    .flip();
+            while (header.hasRemaining()) channel.write(header);
+            return new ColumnarWriter<>(channel, keyCodec, payloadCodec, rowsPerBlock);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Create a file with default rows per block, see {@link #create(Path, Codec, Codec, int)}
+     *
+     * @param file         File
+     * @param keyCodec     Item Id codec
+     * @param payloadCodec Payload codec
+     * @param <K>          Item Id type
+     * @param <V>          Payload type
+     * @return Writer, close it to write the last block
+     * @throws IOException If file can't be created
+     */
+    public static <K, V> ColumnarWriter<K, V> create(Path file, Codec<K> keyCodec, Codec<V> payloadCodec)
+            throws IOException {
+        return create(file, keyCodec, payloadCodec, ROWS_PER_BLOCK);
+    }
+
+    /**
+     * Append an item
+     *
+     * @param item Item
+     * @throws IOException If write failed
+     */
+    public void write(LogItem<K, V> item) throws IOException {
+        registerTimes[rows] = item.getRegisterTime();
+        ttls[rows] = item.getTtl();
+        ids.add(keyCodec.encode(item.getId()));
+        payloads.add(item.getPayLoad() == null ? null : payloadCodec.encode(item.getPayLoad()));
+        totalRows++;
+        if (++rows == rowsPerBlock) flushBlock();
+    }
+
+    /**
+     * Append all items, e.g. from {@link com.chronondb.core.memstore.Log#iterator(long, long)}
+     *
+     * @param items Items
+     * @return Items written
+     * @throws IOException If write failed
+     */
+    public long writeAll(Iterator<LogItem<K, V>> items) throws IOException {
+        long count = 0;
+        while (items.hasNext()) {
+            write(items.next());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Rows written so far, including the open block
+     *
+     * @return Rows
+     */
+    public long getRows() {
+        return totalRows;
+    }
+
+    /**
+     * Blocks written so far
+     *
+     * @return Blocks
+     */
+    public int getBlocks() {
+        return blocks;
+    }
+
+    private void flushBlock() throws IOException {
+        if (rows == 0) return;
+
+        var idOffsets = ByteBuffer.allocate((int) ColumnarFormat.align((long) (rows + 1) * Integer.BYTES))
+                .order(ColumnarFormat.ORDER);
+        var payloadOffsets = ByteBuffer.allocate(idOffsets.capacity()).order(ColumnarFormat.ORDER);
+        var nulls = new long[ColumnarFormat.nullsLongs(rows)];
+        var buffers = new ArrayList<ByteBuffer>(2 * rows + 8);
+
+        long minRegisterTime = Long.MAX_VALUE;
+        long maxRegisterTime = Long.MIN_VALUE;
+        long minTtl = Long.MAX_VALUE;
+        long maxTtl = Long.MIN_VALUE;
+        int idBytes = 0;
+        int payloadBytes = 0;
+        idOffsets.putInt(0);
+        payloadOffsets.putInt(0);
+        for (int i = 0; i < rows; i++) {
+            minRegisterTime = Math.min(minRegisterTime, registerTimes[i]);
+            maxRegisterTime = Math.max(maxRegisterTime, registerTimes[i]);
+            minTtl = Math.min(minTtl, ttls[i]);
+            maxTtl = Math.max(maxTtl, ttls[i]);
+
+            idBytes = Math.addExact(idBytes, ids.get(i).length);
+            idOffsets.putInt(idBytes);
+            var payload = payloads.get(i);
+            if (payload == null) nulls[i / 64] |= 1L << (i % 64);
+            else payloadBytes = Math.addExact(payloadBytes, payload.length);
+            payloadOffsets.putInt(payloadBytes);
+        }
+
+        long blockBytes = ColumnarFormat.blockBytes(rows, idBytes, payloadBytes);
+        var header = ByteBuffer.allocate(ColumnarFormat.BLOCK_HEADER_SIZE).order(ColumnarFormat.ORDER)
+                .putInt(rows)
+                .putInt(0)
+                .putLong(blockBytes)
+                .putLong(minRegisterTime)
+                .putLong(maxRegisterTime)
+                .putLong(minTtl)
+                .putLong(maxTtl)
+                .putInt(idBytes)
+                .putInt(payloadBytes)
+                .putLong(0);
+
+        buffers.add(header.flip());
+        buffers.add(longs(registerTimes, rows));
+        buffers.add(longs(ttls, rows));
+        buffers.add(idOffsets.position(0));
+        buffers.add(payloadOffsets.position(0));
+        buffers.add(longs(nulls, nulls.length));
+        for (var id : ids) buffers.add(ByteBuffer.wrap(id));
+        buffers.add(padding(idBytes));
+        for (var payload : payloads) if (payload != null) buffers.add(ByteBuffer.wrap(payload));
+        buffers.add(padding(payloadBytes));
+
+        // OS takes a limited number of buffers per call, channel writes what it can, so loop
+        var gather = buffers.toArray(new ByteBuffer[0]);
+        long written = 0;
+        while (written < blockBytes) written += channel.write(gather);
+
+        rows = 0;
+        ids.clear();
+        payloads.clear();
+        blocks++;
+    }
+
+    private static ByteBuffer longs(long[] values, int count) {
+        var buffer = ByteBuffer.allocate(count * Long.BYTES).order(ColumnarFormat.ORDER);
+        buffer.asLongBuffer().put(values, 0, count);
+        return buffer;
+    }
+
+    private static ByteBuffer padding(int size) {
+        return PADDING.duplicate().limit((int) (ColumnarFormat.align(size) - size));
+    }
+
+    /**
+     * Write the last block and close the file
+     *
+     * @throws IOException If write failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+}
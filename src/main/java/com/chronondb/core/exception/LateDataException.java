@@ -0,0 +1,14 @@
+package com.chronondb.core.exception;
+
+/**
+ * Item event time is behind the lateness watermark of the Log, its block is sealed or gone
+ */
+public class LateDataException extends DatabaseGenericException {
+    /**
+     * Set exception message
+     * @param m message
+     */
+    public LateDataException(String m) {
+        super(m);
+    }
+}
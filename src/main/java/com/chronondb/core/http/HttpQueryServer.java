@@ -0,0 +1,302 @@
+package com.chronondb.core.http;
+
+import com.chronondb.core.ItemRepository;
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.exception.OverloadException;
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.net.RangeStream;
+import com.chronondb.core.properties.ServerProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plain HTTP front end for ops tools and scripts, JDK built-in server under the hood.
+ * <pre>
+ * PUT    /items/{id}?ttl={absolute ms}   body is payload, empty body is null payload
+ * GET    /items/{id}                      item as JSON, 404 if not found
+ * DELETE /items/{id}
+ * GET    /range?from={ms}&amp;to={ms}[&amp;limit={n}][&amp;count=true]
+ * POST   /flush?from={ms}&amp;to={ms}
+ * </pre>
+ * Range is streamed as chunked NDJSON, one item per line, straight from the block walk. Nothing is materialized, so
+ * export of any size costs a write buffer per request. With count=true only {@code {"count":N}} is returned.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public class HttpQueryServer<K, V> implements AutoCloseable {
+
+    /**
+     * NDJSON content type
+     */
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final String JSON = "application/json";
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final ItemRepository<K, V> repository;
+    private final TextCodec<K> keyCodec;
+    private final TextCodec<V> payloadCodec;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private HttpQueryServer(ItemRepository<K, V> repository, TextCodec<K> keyCodec, TextCodec<V> payloadCodec,
+                            ServerProperties settings) throws IOException {
+        this.repository = repository;
+        this.keyCodec = keyCodec;
+        this.payloadCodec = payloadCodec;
+
+        var address = settings.getBindAddress() == null || settings.getBindAddress().isEmpty()
+                ? new InetSocketAddress(settings.getPort())
+                : new InetSocketAddress(settings.getBindAddress(), settings.getPort());
+        this.server = HttpServer.create(address, 0);
+
+        var counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(settings.getWorkerThreads(), runnable -> {
+            var thread = new Thread(runnable, "chronondb-http-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(executor);
+
+        this.server.createContext("/items/", exchange -> serve(exchange, this::handleItem));
+        this.server.createContext("/range", exchange -> serve(exchange, this::handleRange));
+        this.server.createContext("/flush", exchange -> serve(exchange, this::handleFlush));
+    }
+
+    /**
+     * Start HTTP server
+     *
+     * @param repository   Repository to serve
+     * @param keyCodec     Item Id text codec
+     * @param payloadCodec Payload text codec
+     * @param settings     Bind address, port and worker threads are used
+     * @param <K>          Item Id type
+     * @param <V>          Payload type
+     * @return Running server
+     * @throws IOException If can't bind
+     */
+    public static <K, V> HttpQueryServer<K, V> start(ItemRepository<K, V> repository, TextCodec<K> keyCodec,
+                                                     TextCodec<V> payloadCodec, ServerProperties settings)
+            throws IOException {
+        var server = new HttpQueryServer<>(repository, keyCodec, payloadCodec, settings);
+        server.server.start();
+        return server;
+    }
+
+    /**
+     * Actual bound port, useful with ephemeral port
+     *
+     * @return TCP port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Request handler, all error handling is in one place
+     */
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException, DatabaseGenericException;
+    }
+
+    private static void serve(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            handler.handle(exchange);
+        } catch (IllegalArgumentException e) {
+            sendText(exchange, 400, e.getMessage());
+        } catch (DatabaseGenericException e) {
+            sendText(exchange, e instanceof OverloadException ? 503 : 500, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleItem(HttpExchange exchange) throws IOException, DatabaseGenericException {
+        var path = exchange.getRequestURI().getRawPath();
+        var rawId = path.substring("/items/".length());
+        if (rawId.isEmpty()) {
+            sendText(exchange, 404, "Item Id is missing");
+            return;
+        }
+        K itemId = keyCodec.parse(URLDecoder.decode(rawId, StandardCharsets.UTF_8));
+
+        switch (exchange.getRequestMethod()) {
+            case "PUT":
+            case "POST":
+                long ttl = Long.parseLong(requiredParam(queryParams(exchange), "ttl"));
+                var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                repository.add(itemId, ttl, body.isEmpty() ? null : payloadCodec.parse(body));
+                sendText(exchange, 204, null);
+                break;
+            case "GET":
+                var item = repository.get(itemId);
+                if (item == null) sendText(exchange, 404, "Not found");
+                else sendJson(exchange, toJson(item, new StringBuilder()).toString());
+                break;
+            case "DELETE":
+                repository.remove(itemId);
+                sendText(exchange, 204, null);
+                break;
+            default:
+                sendText(exchange, 405, "Method not allowed");
+        }
+    }
+
+    private void handleRange(HttpExchange exchange) throws IOException, DatabaseGenericException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendText(exchange, 405, "Method not allowed");
+            return;
+        }
+
+        var params = queryParams(exchange);
+        long from = Long.parseLong(requiredParam(params, "from"));
+        long to = Long.parseLong(requiredParam(params, "to"));
+        long limit = params.containsKey("limit") ? Long.parseLong(params.get("limit")) : Long.MAX_VALUE;
+        boolean countOnly = Boolean.parseBoolean(params.get("count"));
+        if (limit < 0) throw new IllegalArgumentException("Limit must not be negative");
+
+        var items = repository.iterator(from, to);
+        try {
+            if (countOnly) {
+                long count = 0;
+                while (count < limit && items.hasNext()) {
+                    items.next();
+                    count++;
+                }
+                sendJson(exchange, "{\"count\":" + count + "}");
+                return;
+            }
+
+            // 0 length means chunked, we don't know the size and don't want to know it
+            exchange.getResponseHeaders().set("Content-Type", NDJSON);
+            exchange.sendResponseHeaders(200, 0);
+
+            try (Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+                var line = new StringBuilder();
+                for (long count = 0; count < limit && items.hasNext(); count++) {
+                    line.setLength(0);
+                    toJson(items.next(), line).append('\n');
+                    writer.append(line);
+                }
+            }
+        } finally {
+            // limit or a broken HTTP client leaves the range unread, remote one must be cancelled
+            if (items instanceof RangeStream) ((RangeStream<?, ?>) items).close();
+        }
+    }
+
+    private void handleFlush(HttpExchange exchange) throws IOException, DatabaseGenericException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendText(exchange, 405, "Method not allowed");
+            return;
+        }
+
+        var params = queryParams(exchange);
+        repository.flush(Long.parseLong(requiredParam(params, "from")), Long.parseLong(requiredParam(params, "to")));
+        sendText(exchange, 204, null);
+    }
+
+    private StringBuilder toJson(LogItem<K, V> item, StringBuilder json) {
+        json.append("{\"id\":");
+        appendQuoted(json, keyCodec.format(item.getId()));
+        json.append(",\"registerTime\":").append(item.getRegisterTime());
+        json.append(",\"ttl\":").append(item.getTtl());
+        json.append(",\"payload\":");
+        if (item.getPayLoad() == null) json.append("null");
+        else appendQuoted(json, payloadCodec.format(item.getPayLoad()));
+        return json.append('}');
+    }
+
+    private static void appendQuoted(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+                    else json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static Map<String, String> queryParams(HttpExchange exchange) {
+        var params = new HashMap<String, String>();
+        var query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return params;
+
+        for (var pair : query.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            var name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            var value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static String requiredParam(Map<String, String> params, String name) {
+        var value = params.get(name);
+        if (value == null) throw new IllegalArgumentException("Parameter '" + name + "' is mandatory");
+        return value;
+    }
+
+    private static void sendJson(HttpExchange exchange, String json) throws IOException {
+        var bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        if (text == null) {
+            // -1 means no body at all
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Stop serving. Repository is not touched, it is yours.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
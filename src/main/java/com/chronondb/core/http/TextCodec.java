@@ -0,0 +1,28 @@
+package com.chronondb.core.http;
+
+/**
+ * Text codec for Ids and payloads in URLs, request bodies and JSON output.
+ * <p>
+ * Implementation MUST be thread-safe.
+ *
+ * @param <T> Value type
+ */
+public interface TextCodec<T> {
+
+    /**
+     * Format value as text
+     *
+     * @param value Value, never null
+     * @return Text
+     */
+    String format(T value);
+
+    /**
+     * Parse value from text
+     *
+     * @param text Text, never null
+     * @return Value
+     * @throws IllegalArgumentException If text is not a valid value
+     */
+    T parse(String text);
+}
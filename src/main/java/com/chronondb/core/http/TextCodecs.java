@@ -0,0 +1,40 @@
+package com.chronondb.core.http;
+
+/**
+ * Text codecs for the most common Id and payload types
+ */
+public final class TextCodecs {
+
+    /**
+     * Long, decimal
+     */
+    public static final TextCodec<Long> LONG = new TextCodec<>() {
+        @Override
+        public String format(Long value) {
+            return value.toString();
+        }
+
+        @Override
+        public Long parse(String text) {
+            return Long.parseLong(text);
+        }
+    };
+
+    /**
+     * String, as is
+     */
+    public static final TextCodec<String> STRING = new TextCodec<>() {
+        @Override
+        public String format(String value) {
+            return value;
+        }
+
+        @Override
+        public String parse(String text) {
+            return text;
+        }
+    };
+
+    private TextCodecs() {
+    }
+}
@@ -0,0 +1,144 @@
+package com.chronondb.core.memstore;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bulk loader of historical data, e.g. after a migration, see {@link Log#bulkLoader(int)}.
+ * <p>
+ * Regular add writes to the current block only and pays for the index and the happy path checks on every item. Loader
+ * takes a stream sorted by register time, cuts it into blocks for the gaps of the Log and builds every block aside, in
+ * parallel, already sealed. Then all of them are spliced into the chain at once and the index is filled. Readers see
+ * a block either complete or not at all, but the index may lag behind for a moment, so a key lookup may miss an item
+ * which a range query already sees.
+ * <p>
+ * Items which fall into existing blocks, or into the current and future time, can't be built aside, they are
+ * replayed one by one, see {@link Log#replay(LogItem)}. Listeners get every loaded item as a regular add.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public class BulkLoader<K, V> {
+
+    private final Log<K, V> log;
+    private final int parallelism;
+
+    private BulkLoader(Log<K, V> log, int parallelism) {
+        this.log = log;
+        this.parallelism = parallelism;
+    }
+
+    static <K, V> BulkLoader<K, V> create(Log<K, V> log, int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("Parallelism must be positive");
+        return new BulkLoader<>(log, parallelism);
+    }
+
+    /**
+     * Load items. Items already expired are skipped.
+     *
+     * @param items Items, sorted by register time
+     * @return Items loaded
+     * @throws DatabaseGenericException If interrupted or timed out while locking
+     * @throws IllegalArgumentException If items are not sorted. Nothing built aside is loaded then, but items replayed
+     *                                  one by one before that stay
+     */
+    public long load(Iterator<LogItem<K, V>> items) throws DatabaseGenericException {
+        var executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            var thread = new Thread(runnable, "chronondb-bulk-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            long now = log.currentTimeMillis();
+            long loaded = 0;
+            long lastTime = Long.MIN_VALUE;
+
+            // blocks in build, bounded so a huge stream doesn't pile up in the executor queue
+            var building = new ArrayDeque<Future<LogBlock<K, V>>>();
+            var built = new ArrayList<LogBlock<K, V>>();
+            List<LogItem<K, V>> group = null;
+            long[] range = null;
+
+            while (items.hasNext()) {
+                var item = items.next();
+                long time = item.getRegisterTime();
+                if (time < lastTime) throw new IllegalArgumentException("Items are not sorted by register time");
+                lastTime = time;
+                if (item.getTtl() < now) continue;
+                loaded++;
+
+                if (group != null && time <= range[1]) {
+                    group.add(item);
+                    continue;
+                }
+
+                // group is over, hand it to the builders
+                if (group != null) {
+                    building.add(build(executor, range, group));
+                    if (building.size() > parallelism * 2) built.add(join(building.poll()));
+                    group = null;
+                }
+
+                range = log.freeRange(time);
+                if (range.length == 0) {
+                    log.replay(item);
+                    continue;
+                }
+                group = new ArrayList<>();
+                group.add(item);
+            }
+
+            if (group != null) building.add(build(executor, range, group));
+            while (!building.isEmpty()) built.add(join(building.poll()));
+
+            var rejected = log.spliceBlocks(built);
+            for (var block : built) {
+                if (rejected.contains(block)) continue;
+                var blockItems = block.iterator(block.getBlockStart(), block.getBlockEnd(), now);
+                while (blockItems.hasNext()) log.indexLoaded(blockItems.next());
+            }
+
+            // somebody took the place meanwhile, the slow way then
+            for (var block : rejected) {
+                var blockItems = block.iterator(block.getBlockStart(), block.getBlockEnd(), now);
+                while (blockItems.hasNext()) log.replay(blockItems.next());
+            }
+
+            return loaded;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Future<LogBlock<K, V>> build(ExecutorService executor, long[] range, List<LogItem<K, V>> group) {
+        return executor.submit(() -> {
+            var block = log.newBlock(range[0], range[1]);
+            // a copy, the block owns its items
+            for (var item : group)
+                block.addUncommitted(new LogItem<>(item.getId(), item.getRegisterTime(), item.getTtl(),
+                        item.getPayLoad()));
+            block.sealUnsafe();
+            return block;
+        });
+    }
+
+    private LogBlock<K, V> join(Future<LogBlock<K, V>> future) throws DatabaseGenericException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseGenericException("Command Thread interrupted!");
+        } catch (ExecutionException e) {
+            throw new DatabaseGenericException("Bulk load failed to build a block: " + e.getCause());
+        }
+    }
+}
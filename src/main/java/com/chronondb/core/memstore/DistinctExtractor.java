@@ -0,0 +1,24 @@
+package com.chronondb.core.memstore;
+
+/**
+ * Extracts what per-block distinct sketches count, see
+ * {@link Log#Log(com.chronondb.core.properties.LogProperties, java.util.Map, MetricExtractor, DistinctExtractor)}. Item
+ * Id by default, but could be a user, a device, anything the payload knows.
+ * <p>
+ * Invoked in the command thread for every added item, so it MUST be fast and side-effect free.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+@FunctionalInterface
+public interface DistinctExtractor<K, V> {
+
+    /**
+     * Extract value to count, equal values MUST have equal hash codes
+     *
+     * @param itemId  Item Id
+     * @param payload Payload, may be null
+     * @return Value, null if item has nothing to count
+     */
+    Object extract(K itemId, V payload);
+}
@@ -0,0 +1,129 @@
+package com.chronondb.core.memstore;
+
+import java.util.function.Predicate;
+
+/**
+ * Range query filter evaluated inside the block scan, see {@link Log#get(long, long, ItemFilter)}. Items which don't
+ * match are never copied to the result.
+ * <p>
+ * Predicates on key and payload are checked per item. Bounds are more than that: register time bounds narrow the range
+ * of buckets to walk, TTL bounds are compared with TTL bounds of a block, so a block which can't hold a matching item
+ * is skipped as a whole.
+ * <p>
+ * Immutable, every method returns a new filter, conditions are combined with AND. Thread-safe if predicates are.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public final class ItemFilter<K, V> {
+
+    private static final ItemFilter<Object, Object> ALL =
+            new ItemFilter<>(null, null, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    private final Predicate<? super K> key;
+    private final Predicate<? super V> payload;
+    private final long minRegisterTime;
+    private final long maxRegisterTime;
+    private final long minTtl;
+    private final long maxTtl;
+
+    private ItemFilter(Predicate<? super K> key, Predicate<? super V> payload, long minRegisterTime,
+                       long maxRegisterTime, long minTtl, long maxTtl) {
+        this.key = key;
+        this.payload = payload;
+        this.minRegisterTime = minRegisterTime;
+        this.maxRegisterTime = maxRegisterTime;
+        this.minTtl = minTtl;
+        this.maxTtl = maxTtl;
+    }
+
+    /**
+     * Filter which matches everything, start from it
+     *
+     * @param <K> Item Id type
+     * @param <V> Payload type
+     * @return Filter
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> ItemFilter<K, V> all() {
+        return (ItemFilter<K, V>) ALL;
+    }
+
+    /**
+     * Item Id must match
+     *
+     * @param predicate Predicate on Id
+     * @return New filter
+     */
+    public ItemFilter<K, V> key(Predicate<? super K> predicate) {
+        var current = key;
+        Predicate<? super K> combined = current == null ? predicate : k -> current.test(k) && predicate.test(k);
+        return new ItemFilter<>(combined, payload, minRegisterTime, maxRegisterTime, minTtl, maxTtl);
+    }
+
+    /**
+     * Payload must match
+     *
+     * @param predicate Predicate on payload, payload may be null
+     * @return New filter
+     */
+    public ItemFilter<K, V> payload(Predicate<? super V> predicate) {
+        var current = payload;
+        Predicate<? super V> combined = current == null ? predicate : v -> current.test(v) && predicate.test(v);
+        return new ItemFilter<>(key, combined, minRegisterTime, maxRegisterTime, minTtl, maxTtl);
+    }
+
+    /**
+     * Item must be registered within the bounds, buckets outside are not walked
+     *
+     * @param fromMillis Min register time, inclusive
+     * @param toMillis   Max register time, inclusive
+     * @return New filter
+     */
+    public ItemFilter<K, V> registered(long fromMillis, long toMillis) {
+        return new ItemFilter<>(key, payload, Math.max(minRegisterTime, fromMillis),
+                Math.min(maxRegisterTime, toMillis), minTtl, maxTtl);
+    }
+
+    /**
+     * Item must expire within the bounds, blocks with no such TTL are not walked
+     *
+     * @param fromMillis Min TTL, inclusive
+     * @param toMillis   Max TTL, inclusive
+     * @return New filter
+     */
+    public ItemFilter<K, V> ttl(long fromMillis, long toMillis) {
+        return new ItemFilter<>(key, payload, minRegisterTime, maxRegisterTime, Math.max(minTtl, fromMillis),
+                Math.min(maxTtl, toMillis));
+    }
+
+    long getMinRegisterTime() {
+        return minRegisterTime;
+    }
+
+    long getMaxRegisterTime() {
+        return maxRegisterTime;
+    }
+
+    long getMinTtl() {
+        return minTtl;
+    }
+
+    long getMaxTtl() {
+        return maxTtl;
+    }
+
+    /**
+     * Does item match, bounds included
+     *
+     * @param itemId       Item Id
+     * @param registerTime Register time
+     * @param ttl          TTL
+     * @param payload      Payload
+     * @return True if it does
+     */
+    boolean test(K itemId, long registerTime, long ttl, V payload) {
+        return registerTime >= minRegisterTime && registerTime <= maxRegisterTime && ttl >= minTtl && ttl <= maxTtl
+                && (key == null || key.test(itemId)) && (this.payload == null || this.payload.test(payload));
+    }
+}
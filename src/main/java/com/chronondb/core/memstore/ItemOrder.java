@@ -0,0 +1,30 @@
+package com.chronondb.core.memstore;
+
+import java.util.Comparator;
+
+/**
+ * Ranking for top-N queries, see {@link Log#top(int, long, long, ItemOrder)}
+ */
+public enum ItemOrder {
+    /**
+     * The most recently registered first
+     */
+    REGISTER_TIME,
+    /**
+     * The longest living first
+     */
+    TTL;
+
+    /**
+     * Ascending comparator for the field
+     *
+     * @param <K> Item Id type
+     * @param <V> Payload type
+     * @return Comparator
+     */
+    <K, V> Comparator<LogItem<K, V>> comparator() {
+        return this == REGISTER_TIME
+                ? Comparator.comparingLong(LogItem::getRegisterTime)
+                : Comparator.comparingLong(LogItem::getTtl);
+    }
+}
@@ -0,0 +1,25 @@
+package com.chronondb.core.memstore;
+
+/**
+ * Range scan callback, see {@link Log#scan(long, long, ItemVisitor)}.
+ * <p>
+ * Item fields come as separate arguments, no {@link LogItem} is handed out, so nothing is allocated per item. Called
+ * in the scanning thread, in range order, items of the same millisecond in no particular order.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+@FunctionalInterface
+public interface ItemVisitor<K, V> {
+
+    /**
+     * Item of the range
+     *
+     * @param itemId       Item Id
+     * @param registerTime Register time, ms
+     * @param ttl          Expiration time, ms
+     * @param payload      Payload
+     * @return True to go on, false to stop the scan
+     */
+    boolean visit(K itemId, long registerTime, long ttl, V payload);
+}
@@ -0,0 +1,114 @@
+package com.chronondb.core.memstore;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Block key membership filter, plain Bloom filter. Says "no" for sure and "maybe" with ~1% false positives when
+ * sized right, so block-wide key search skips blocks which can't hold the key.
+ * <p>
+ * Lock-free, bits are only ever set. While sealed block rebuilds its filter, the new filter keeps a reference to the
+ * previous one and asks it as well, so there is no moment when a present key is reported as absent.
+ */
+final class KeyFilter {
+
+    /**
+     * 10 bits per item and 7 hashes give ~1% false positives
+     */
+    static final int BITS_PER_ITEM = 10;
+    private static final int HASHES = 7;
+
+    private final AtomicLongArray words;
+    private final int mask;
+
+    /**
+     * Filter which is being replaced by this one, null once this one is complete
+     */
+    private volatile KeyFilter previous;
+
+    private KeyFilter(int expectedItems, KeyFilter previous) {
+        // power of two, so index is a mask, not a division
+        long bits = Math.max(64L, Long.highestOneBit(Math.max(1L, (long) expectedItems * BITS_PER_ITEM - 1)) << 1);
+        bits = Math.min(bits, 1L << 30);
+        this.words = new AtomicLongArray((int) (bits >>> 6));
+        this.mask = (int) bits - 1;
+        this.previous = previous;
+    }
+
+    /**
+     * Empty filter
+     *
+     * @param expectedItems Expected items, defines size
+     * @return Filter
+     */
+    static KeyFilter create(int expectedItems) {
+        return new KeyFilter(expectedItems, null);
+    }
+
+    /**
+     * Empty filter which replaces existing one. Until {@link #complete()} both are asked
+     *
+     * @param expectedItems Expected items, defines size
+     * @param previous      Filter being replaced
+     * @return Filter
+     */
+    static KeyFilter replace(int expectedItems, KeyFilter previous) {
+        return new KeyFilter(expectedItems, previous);
+    }
+
+    /**
+     * Every item is added, previous filter is not needed anymore
+     */
+    void complete() {
+        previous = null;
+    }
+
+    /**
+     * Size in bits
+     *
+     * @return Bits
+     */
+    int size() {
+        return mask + 1;
+    }
+
+    void add(Object key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            long flag = 1L << (bit & 63);
+            int word = bit >>> 6;
+            // most bits are already set in a busy filter, read is cheaper than CAS
+            long current = words.get(word);
+            while ((current & flag) == 0 && !words.compareAndSet(word, current, current | flag))
+                current = words.get(word);
+        }
+    }
+
+    boolean mightContain(Object key) {
+        // previous first: if it is already gone, this one was complete before the check
+        var replaced = previous;
+
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean found = true;
+        for (int i = 0; i < HASHES && found; i++) {
+            int bit = (h1 + i * h2) & mask;
+            found = (words.get(bit >>> 6) & (1L << (bit & 63))) != 0;
+        }
+        return found || replaced != null && replaced.mightContain(key);
+    }
+
+    private static long hash(Object key) {
+        // hashCode() is often weak (Long, Integer), spread it with murmur3 finalizer
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
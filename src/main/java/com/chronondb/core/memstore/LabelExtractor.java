@@ -0,0 +1,21 @@
+package com.chronondb.core.memstore;
+
+/**
+ * Extracts a label value (tenant, region, device class...) from the payload for the secondary index, see
+ * {@link Log#Log(com.chronondb.core.properties.LogProperties, java.util.Map)}.
+ * <p>
+ * Invoked in the command thread for every added item, so it MUST be fast and side-effect free.
+ *
+ * @param <V> Payload type
+ */
+@FunctionalInterface
+public interface LabelExtractor<V> {
+
+    /**
+     * Extract label value
+     *
+     * @param payload Payload, never null
+     * @return Label value, null if item has no such label
+     */
+    String extract(V payload);
+}
@@ -0,0 +1,126 @@
+package com.chronondb.core.memstore;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Block level secondary index. Every item of the block gets an ordinal, every label value gets a bitmap of ordinals.
+ * Label filter is a bitmap intersection, so only matching items are touched.
+ * <p>
+ * Index is append-only. Removed items just lose their ordinal slot, their bits stay and are skipped on read. Block
+ * lives for a limited time anyway, so there is no sense to compact bitmaps.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+final class LabelIndex<K, V> {
+
+    /**
+     * Ordinal slots are allocated in chunks, 4K items each
+     */
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final Map<String, LabelExtractor<V>> extractors;
+
+    /**
+     * Label name to label value to ordinals. BitSet is not thread-safe, so it is its own monitor
+     */
+    private final Map<String, Map<String, BitSet>> postings = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextOrdinal = new AtomicInteger();
+
+    /**
+     * Ordinal to item. Chunks are appended rarely and read all the time, copy on write is fine here
+     */
+    private final List<AtomicReferenceArray<LogItem<K, V>>> chunks = new CopyOnWriteArrayList<>();
+    private final Object chunksMutex = new Object();
+
+    LabelIndex(Map<String, LabelExtractor<V>> extractors) {
+        this.extractors = extractors;
+        for (var label : extractors.keySet()) postings.put(label, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Index item. Item must not be visible to others yet, ordinal is written to it
+     *
+     * @param item New item
+     */
+    void add(LogItem<K, V> item) {
+        int ordinal = nextOrdinal.getAndIncrement();
+        item.ordinal = ordinal;
+        chunk(ordinal >>> CHUNK_BITS).set(ordinal & CHUNK_MASK, item);
+
+        // no payload, no labels
+        if (item.getPayLoad() == null) return;
+
+        for (var extractor : extractors.entrySet()) {
+            var value = extractor.getValue().extract(item.getPayLoad());
+            if (value == null) continue;
+            var bits = postings.get(extractor.getKey()).computeIfAbsent(value, v -> new BitSet());
+            synchronized (bits) {
+                bits.set(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Release item slot, the item is gone from the block
+     *
+     * @param item Removed item
+     */
+    void forget(LogItem<K, V> item) {
+        if (item.ordinal < 0) return;
+        chunks.get(item.ordinal >>> CHUNK_BITS).compareAndSet(item.ordinal & CHUNK_MASK, item, null);
+    }
+
+    /**
+     * Ordinals of items which have all the labels. Result is a private copy
+     *
+     * @param labels Label name to value, must be non-empty and indexed
+     * @return Ordinals, maybe of removed items already
+     */
+    BitSet match(Map<String, String> labels) {
+        BitSet result = null;
+        for (var label : labels.entrySet()) {
+            var bits = postings.get(label.getKey()).get(label.getValue());
+            if (bits == null) return new BitSet();
+
+            BitSet copy;
+            synchronized (bits) {
+                copy = (BitSet) bits.clone();
+            }
+            if (result == null) result = copy;
+            else result.and(copy);
+
+            // smallest possible answer already
+            if (result.isEmpty()) return result;
+        }
+        return result == null ? new BitSet() : result;
+    }
+
+    /**
+     * Item by ordinal
+     *
+     * @param ordinal Ordinal from {@link #match(Map)}
+     * @return Item or null, if it is gone
+     */
+    LogItem<K, V> get(int ordinal) {
+        return chunks.get(ordinal >>> CHUNK_BITS).get(ordinal & CHUNK_MASK);
+    }
+
+    private AtomicReferenceArray<LogItem<K, V>> chunk(int chunkIndex) {
+        while (chunks.size() <= chunkIndex) {
+            synchronized (chunksMutex) {
+                if (chunks.size() <= chunkIndex) chunks.add(new AtomicReferenceArray<>(CHUNK_SIZE));
+            }
+        }
+        return chunks.get(chunkIndex);
+    }
+}
@@ -0,0 +1,22 @@
+package com.chronondb.core.memstore;
+
+/**
+ * Receives items which came too late for event-time add, see {@link Log#add(Object, long, long, Object)}.
+ * <p>
+ * Called from the command thread, so it must be fast: put the item aside to a queue, a dead letter topic or a
+ * counter and return.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+@FunctionalInterface
+public interface LateDataHandler<K, V> {
+
+    /**
+     * Item is behind the watermark and was not added to the Log
+     *
+     * @param item      Late item, with its event time as register time
+     * @param watermark Watermark at the moment of add, item event time is before it
+     */
+    void onLateItem(LogItem<K, V> item, long watermark);
+}
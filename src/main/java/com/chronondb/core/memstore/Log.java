@@ -1,14 +1,29 @@
 package com.chronondb.core.memstore;
 
 import com.chronondb.core.ItemRepository;
+import com.chronondb.core.exception.LateDataException;
 import com.chronondb.core.exception.OverloadException;
 import com.chronondb.core.exception.DatabaseGenericException;
 import com.chronondb.core.properties.LogProperties;
+import com.chronondb.core.properties.SubscriptionProperties;
+import com.chronondb.core.time.TimeSource;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -19,6 +34,8 @@ import java.util.concurrent.locks.ReentrantLock;
  * @param <V> Payload type
  */
 public class Log<K,V> implements ItemRepository<K, V> {
+    private static final long[] NO_RANGE = new long[0];
+
     /**
      * Block chain head.
      */
@@ -39,9 +56,10 @@ public class Log<K,V> implements ItemRepository<K, V> {
     private final Map<K, Long> sessionIndex = new ConcurrentHashMap<>();
 
     /**
-     * Block index to find a block in memory by Id. Here is the downside of in-memory with JMM
+     * Block boundary index, block start to block. Blocks don't overlap, so the block of a time mark is the floor entry,
+     * if it still covers the time. Sizes of blocks may differ, so no time / blockSize math here.
      */
-    private final Map<Long, LogBlock<K, V>> blockIndex = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, LogBlock<K, V>> blockIndex = new ConcurrentSkipListMap<>();
 
     private final LogProperties settings;
 
@@ -53,6 +71,8 @@ public class Log<K,V> implements ItemRepository<K, V> {
      * instead of block chain with a merge at the VACUUM stage.
      * <p>
      * Anyway, block rotation is a jet fast and happens once in blockSize ms.
+     * <p>
+     * Guards ingest rate as well, it is updated by rotation only.
      */
     private final ReentrantLock newBlockMutex = new ReentrantLock();
 
@@ -64,26 +84,148 @@ public class Log<K,V> implements ItemRepository<K, V> {
     private final ReentrantLock vacuumMutex = new ReentrantLock();
 
     /**
-     * Block size required for time2block mapping. Why this is here? Well, I'm seriously considered dynamic block size
+     * Nominal block size: the first block, blocks spliced into the past and every block if size is not adaptive
      */
     private final int blockSize;
 
+    /**
+     * Adaptive block size bounds, cached from settings. maxBlockSize 0 means fixed block size
+     */
+    private final int minBlockSize;
+    private final int maxBlockSize;
+    private final int targetBlockItems;
+
+    /**
+     * Smoothed ingest rate, items per ms, measured on rotated blocks. Negative until the first rotation.
+     * Guarded by newBlockMutex.
+     */
+    private double ingestRate = -1;
+
+    /**
+     * Clock, cached from settings. Every command asks it, so no RMI-like lookups on each call
+     */
+    private final TimeSource timeSource;
+
+    /**
+     * Cached upsert mode, see {@link LogProperties#isUpsert()}
+     */
+    private final boolean upsert;
+
+    /**
+     * Cached allowed lateness of event-time adds, see {@link LogProperties#getAllowedLatenessMs()}
+     */
+    private final int allowedLatenessMs;
+
+    /**
+     * Where late items go, null to reject them with an exception
+     */
+    private volatile LateDataHandler<K, V> lateDataHandler;
+
+    /**
+     * Operation listeners. Registered rarely, iterated on every write, so copy on write is a perfect fit
+     */
+    private final List<LogListener<K, V>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Label extractors of the secondary index, label name to extractor. Fixed for the Log lifetime
+     */
+    private final Map<String, LabelExtractor<V>> labels;
+
+    /**
+     * Metric of per-block quantile sketches, null if none. Fixed for the Log lifetime
+     */
+    private final MetricExtractor<V> metric;
+
+    /**
+     * What per-block distinct sketches count, null if none. Fixed for the Log lifetime
+     */
+    private final DistinctExtractor<K, V> distinct;
+
+    /**
+     * Version clock and store of removed items for snapshots, shared by all blocks
+     */
+    private final Versions<K, V> versions = new Versions<>();
+
+    /**
+     * Blocks with range tombstones, VACUUM purges them. Blocks dropped by FLUSH stay here until then, so snapshots
+     * still find their items. Block is here once, see {@link LogBlock#queueForPurge()}
+     */
+    private final Queue<LogBlock<K, V>> flushedBlocks = new ConcurrentLinkedQueue<>();
+
     /**
      * Init Log
      *
      * @param settings Settings, see type for details
      */
     public Log(LogProperties settings) {
+        this(settings, Collections.emptyMap());
+    }
+
+    /**
+     * Init Log with secondary index. Every block keeps bitmaps of its items per label value, so range query with label
+     * filter touches only matching items, see {@link #get(long, long, Map)}.
+     *
+     * @param settings Settings, see type for details
+     * @param labels   Label extractors, label name to extractor
+     */
+    public Log(LogProperties settings, Map<String, LabelExtractor<V>> labels) {
+        this(settings, labels, null);
+    }
+
+    /**
+     * Init Log with secondary index and quantile sketches, distinct sketches count keys if
+     * {@link LogProperties#getDistinctPrecision()} is set, see {@link #Log(LogProperties, Map, MetricExtractor,
+     * DistinctExtractor)}.
+     *
+     * @param settings Settings, see type for details
+     * @param labels   Label extractors, label name to extractor
+     * @param metric   Metric extractor, null for no sketches
+     */
+    public Log(LogProperties settings, Map<String, LabelExtractor<V>> labels, MetricExtractor<V> metric) {
+        this(settings, labels, metric, settings.getDistinctPrecision() > 0 ? (itemId, payload) -> itemId : null);
+    }
+
+    /**
+     * Init Log with secondary index and sketches. Every block keeps a mergeable sketch of the metric over its items,
+     * so percentiles of a range merge sketches instead of reading items, see {@link #quantiles(long, long,
+     * double...)}. Distinct values are counted the same way by HyperLogLog, see {@link #distinctCount(long, long)}.
+     *
+     * @param settings Settings, see type for details
+     * @param labels   Label extractors, label name to extractor
+     * @param metric   Metric extractor, null for no sketches
+     * @param distinct What distinct sketches count, null for no sketches. Needs
+     *                 {@link LogProperties#getDistinctPrecision()}
+     */
+    public Log(LogProperties settings, Map<String, LabelExtractor<V>> labels, MetricExtractor<V> metric,
+               DistinctExtractor<K, V> distinct) {
         // no way to parse here property file or read Properties. Do it outside
         this.settings = settings;
         // cache it
         this.blockSize = settings.getBlockSize();
+        this.minBlockSize = Math.max(1, settings.getMinBlockSize());
+        this.maxBlockSize = settings.getMaxBlockSize();
+        this.targetBlockItems = settings.getTargetBlockItems();
+        if (maxBlockSize > 0 && maxBlockSize < minBlockSize)
+            throw new IllegalArgumentException("Max block size is less than min block size");
+        this.timeSource = settings.getTimeSource();
+        this.upsert = settings.isUpsert();
+        this.allowedLatenessMs = settings.getAllowedLatenessMs();
+        this.labels = Map.copyOf(labels);
+        this.metric = metric;
+        double accuracy = settings.getQuantileAccuracy();
+        if (metric != null && !(accuracy > 0 && accuracy < 1))
+            throw new IllegalArgumentException("Bad quantile accuracy: " + accuracy);
+        this.distinct = distinct;
+        int precision = settings.getDistinctPrecision();
+        if (distinct != null && (precision < DistinctSketch.MIN_PRECISION || precision > DistinctSketch.MAX_PRECISION))
+            throw new IllegalArgumentException("Bad distinct precision: " + precision);
 
         // Init first block
-        var initBlock = new LogBlock<K, V>(settings);
+        var initBlock = new LogBlock<K, V>(settings, timeSource.currentTimeMillis(), this::notifyExpire, this.labels,
+                versions, metric, distinct);
 
         // write index and references
-        blockIndex.put(initBlock.getBlockId(), initBlock);
+        blockIndex.put(initBlock.getBlockStart(), initBlock);
         head = initBlock;
         current = initBlock;
     }
@@ -117,9 +259,126 @@ public class Log<K,V> implements ItemRepository<K, V> {
             - if block was generated at the last nanoseconds, new write will miss the block
             So, block gen time must me reg time for the record which triggered block rotation
             */
-            sessionIndex.put(itemId, current.getBlockGen());
-            current.add(itemId, current.getBlockGen(), expiryTimeMillis, payload);
+            register(current, new LogItem<>(itemId, current.getBlockGen(), expiryTimeMillis, payload));
+
+        } catch (InterruptedException e) {
+            throw new DatabaseGenericException("Command Thread interrupted!");
+        } finally {
+            if (newBlockMutex.isHeldByCurrentThread()) newBlockMutex.unlock();
+        }
+    }
 
+    /**
+     * Apply an item with its original register time. This is for replication and recovery, where item was already
+     * registered once somewhere else and must land in the same time bucket.
+     * <p>
+     * Item from the future (clocks are never perfectly in sync) is just added now. Item from the past goes to the block
+     * which holds its register time, if there is no such block in the chain - block is created and spliced into the
+     * chain. Replay of an item which is already there with the same register time replaces it, that's how a touched
+     * TTL is replicated. Splice is a rare and slow path, it pauses block rotation and VACUUM.
+     * <p>
+     * Replayed items are reported to listeners as regular adds, so a replica can have listeners of its own.
+     *
+     * @param item Item to apply
+     * @throws DatabaseGenericException If interrupted or timed out while locking
+     */
+    public void replay(LogItem<K, V> item) throws DatabaseGenericException {
+        // a copy, the block owns its items
+        place(item.getId(), item.getRegisterTime(), item.getTtl(), item.getPayLoad());
+    }
+
+    /**
+     * Add item by event time, the time it happened, not the time it came. Item goes to the block which holds the
+     * event time, so range queries see it where it belongs, even if the source buffered it for minutes.
+     * <p>
+     * Event time may be up to allowed lateness behind, see {@link #getWatermark()}. Older item is late: it goes to
+     * the late data handler if there is one, otherwise add fails. Event time from the future (client clock is ahead)
+     * is not trusted, such item is added now, same as {@link #add(Object, long, Object)}.
+     * <p>
+     * Adds inside the current block are as cheap as a regular add, older ones may need a block spliced into the
+     * chain, which is a slow path, see {@link #replay(LogItem)}.
+     *
+     * @param itemId           unique key
+     * @param eventTimeMillis  when the item happened, becomes its register time
+     * @param expiryTimeMillis absolute expiration time in milliseconds
+     * @param payload          Payload to keep
+     * @throws LateDataException        If item is behind the watermark and there is no late data handler
+     * @throws DatabaseGenericException If interrupted or timed out while locking
+     */
+    public void add(K itemId, long eventTimeMillis, long expiryTimeMillis, V payload) throws DatabaseGenericException {
+        long watermark = getWatermark();
+        if (eventTimeMillis < watermark) {
+            var handler = lateDataHandler;
+            if (handler == null)
+                throw new LateDataException("Item is late: event time " + eventTimeMillis + ", watermark " + watermark);
+            handler.onLateItem(new LogItem<>(itemId, eventTimeMillis, expiryTimeMillis, payload), watermark);
+            return;
+        }
+
+        place(itemId, eventTimeMillis, expiryTimeMillis, payload);
+    }
+
+    /**
+     * Lateness watermark: event-time adds before it are late. Blocks are sealed and vacuumed only when the watermark
+     * is past them.
+     *
+     * @return Current time minus allowed lateness
+     */
+    public long getWatermark() {
+        return timeSource.currentTimeMillis() - allowedLatenessMs;
+    }
+
+    /**
+     * Route late items to a handler instead of failing the add
+     *
+     * @param handler Late data handler, null to reject late items with {@link LateDataException}
+     */
+    public void setLateDataHandler(LateDataHandler<K, V> handler) {
+        this.lateDataHandler = handler;
+    }
+
+    /**
+     * Put an item to the block of its register time, creating the block if needed
+     *
+     * @param itemId           Item Id
+     * @param registerTime     Register time to keep
+     * @param expiryTimeMillis TTL
+     * @param payload          Payload
+     * @throws DatabaseGenericException If interrupted or timed out while locking
+     */
+    private void place(K itemId, long registerTime, long expiryTimeMillis, V payload) throws DatabaseGenericException {
+        // from the future, clocks are never perfectly in sync. Nothing to keep, just add it now
+        long now = timeSource.currentTimeMillis();
+        if (registerTime > now) {
+            add(itemId, expiryTimeMillis, payload);
+            return;
+        }
+
+        var targetBlock = current;
+        // current block is idle, nobody has rotated it for a while. Catch up to now first, then the time is either in
+        // the new current block or in the gap before it
+        if (registerTime > targetBlock.getBlockEnd()) targetBlock = rotateTo(now);
+
+        if (!targetBlock.isBlockGoodFor(registerTime)) targetBlock = findBlock(registerTime);
+        if (targetBlock == null || targetBlock.isObsolete()) targetBlock = spliceBlock(registerTime);
+
+        register(targetBlock, new LogItem<>(itemId, registerTime, expiryTimeMillis, payload));
+    }
+
+    /**
+     * Rotate the current block, unless it is good for the time mark already
+     *
+     * @param time Time mark, MUST NOT be in the future
+     * @return Current block
+     * @throws DatabaseGenericException If interrupted or timed out while locking
+     */
+    private LogBlock<K, V> rotateTo(long time) throws DatabaseGenericException {
+        try {
+            if (!newBlockMutex.tryLock(settings.getLockThreshold(), TimeUnit.MILLISECONDS))
+                throw new OverloadException("FATAL: Timeout on lock to switch block, system locked or overloaded");
+            // maybe someone did it already
+            if (current.getBlockEnd() < time) rotateTheBlockUnsafe();
+            return current;
         } catch (InterruptedException e) {
             throw new DatabaseGenericException("Command Thread interrupted!");
         } finally {
@@ -127,14 +386,314 @@ public class Log<K,V> implements ItemRepository<K, V> {
         }
     }
 
+    /**
+     * Write a new item to the block and to the index.
+     * <p>
+     * In upsert mode the previous version is retired in the same step. ConcurrentHashMap.compute() locks the index
+     * bin of this key only, so there is no global lock, but two upserts of the same key never interleave: the last
+     * one wins and exactly one version stays. The old version goes AFTER the new one is in place, so a concurrent
+     * reader may see both for a moment, but never none.
+     *
+     * @param block Target block, MUST be good for the item register time
+     * @param item  New item
+     */
+    private void register(LogBlock<K, V> block, LogItem<K, V> item) {
+        if (upsert) {
+            sessionIndex.compute(item.getId(), (key, previous) -> {
+                block.add(item);
+                // the same millisecond means the same bucket, put has replaced it already
+                if (previous != null && previous != item.getRegisterTime()) {
+                    var previousBlock = findBlock(previous);
+                    if (previousBlock != null) previousBlock.remove(key, previous);
+                }
+                return item.getRegisterTime();
+            });
+        } else {
+            sessionIndex.put(item.getId(), item.getRegisterTime());
+            block.add(item);
+        }
+
+        notifyAdd(item);
+    }
+
+    /**
+     * Get or create the block from the past which holds time mark.
+     *
+     * @param time Time mark, MUST be before the current block
+     * @return Block
+     * @throws DatabaseGenericException If interrupted or timed out while locking
+     */
+    private LogBlock<K, V> spliceBlock(long time) throws DatabaseGenericException {
+        try {
+            // both chain writers must stay away: rotation changes the tail, VACUUM changes everything behind it
+            if (!newBlockMutex.tryLock(settings.getLockThreshold(), TimeUnit.MILLISECONDS)
+                    || !vacuumMutex.tryLock(settings.getLockThreshold(), TimeUnit.MILLISECONDS))
+                throw new OverloadException("FATAL: Timeout on lock to splice block, system locked or overloaded");
+
+            // maybe someone did it already
+            var block = findBlock(time);
+            if (block != null && !block.isObsolete()) return block;
+
+            var range = freeRange(time);
+            var newBlock = newBlock(range[0], range[1]);
+            linkUnsafe(newBlock);
+
+            return newBlock;
+        } catch (InterruptedException e) {
+            throw new DatabaseGenericException("Command Thread interrupted!");
+        } finally {
+            if (vacuumMutex.isHeldByCurrentThread()) vacuumMutex.unlock();
+            if (newBlockMutex.isHeldByCurrentThread()) newBlockMutex.unlock();
+        }
+    }
+
+    /**
+     * Splice blocks built aside into the chain, see {@link BulkLoader}. Blocks are linked as they are, items are
+     * NOT indexed here.
+     *
+     * @param blocks New blocks, sorted, built for the gaps of this Log, see {@link #freeRange(long)}
+     * @return Blocks which don't fit anymore, someone took their place meanwhile. Empty, normally
+     * @throws DatabaseGenericException If interrupted or timed out while locking
+     */
+    List<LogBlock<K, V>> spliceBlocks(List<LogBlock<K, V>> blocks) throws DatabaseGenericException {
+        try {
+            // same as a single splice, but the locks are taken once for the whole batch
+            if (!newBlockMutex.tryLock(settings.getLockThreshold(), TimeUnit.MILLISECONDS)
+                    || !vacuumMutex.tryLock(settings.getLockThreshold(), TimeUnit.MILLISECONDS))
+                throw new OverloadException("FATAL: Timeout on lock to splice blocks, system locked or overloaded");
+
+            var rejected = new ArrayList<LogBlock<K, V>>();
+            // the whole batch is a single version, snapshot sees all of it or nothing
+            int epoch = versions.enter();
+            long sequence = versions.next();
+            try {
+                for (var block : blocks) {
+                    var prev = blockIndex.floorEntry(block.getBlockEnd());
+                    boolean taken = prev != null && prev.getValue().getBlockEnd() >= block.getBlockStart();
+                    if (taken || blockIndex.higherKey(block.getBlockEnd()) == null) rejected.add(block);
+                    else {
+                        block.commitUnsafe(sequence);
+                        linkUnsafe(block);
+                    }
+                }
+            } finally {
+                versions.exit(epoch);
+            }
+            return rejected;
+        } catch (InterruptedException e) {
+            throw new DatabaseGenericException("Command Thread interrupted!");
+        } finally {
+            if (vacuumMutex.isHeldByCurrentThread()) vacuumMutex.unlock();
+            if (newBlockMutex.isHeldByCurrentThread()) newBlockMutex.unlock();
+        }
+    }
+
+    /**
+     * Link a block from the past into the chain and the index. NOT thread-safe, both chain locks MUST be held.
+     *
+     * @param newBlock Block, MUST fit the gap between existing blocks, there MUST be a block after it
+     */
+    private void linkUnsafe(LogBlock<K, V> newBlock) {
+        // find the place, first block which starts after the new one. It always exists, current block at least
+        LogBlock<K, V> prev = null;
+        var next = head;
+        while (next.getBlockStart() < newBlock.getBlockStart()) {
+            prev = next;
+            next = next.getNextBlock();
+        }
+
+        // link the tail first, so any reader sees a complete chain
+        newBlock.setNextBlockUnsafe(next);
+        if (prev == null) head = newBlock;
+        else prev.setNextBlockUnsafe(newBlock);
+        blockIndex.put(newBlock.getBlockStart(), newBlock);
+    }
+
+    /**
+     * Bounds of a new block from the past which holds the time mark: nominal aligned bounds, clipped to the gap
+     * between the neighbours, their sizes may be anything.
+     *
+     * @param time Time mark
+     * @return [start, end] or empty, if time is taken by a block or it is not in the past of the Log
+     */
+    long[] freeRange(long time) {
+        if (findBlock(time) != null) return NO_RANGE;
+        var next = blockIndex.higherEntry(time);
+        if (next == null) return NO_RANGE;
+
+        long start = LogBlock.calculateBlockStart(LogBlock.calculateBlockId(time, blockSize), blockSize);
+        long end = LogBlock.calculateBlockEnd(LogBlock.calculateBlockId(time, blockSize), blockSize);
+        var prev = blockIndex.floorEntry(time);
+        if (prev != null) start = Math.max(start, prev.getValue().getBlockEnd() + 1);
+        end = Math.min(end, next.getKey() - 1);
+        return new long[]{start, end};
+    }
+
+    /**
+     * New block of this Log, not linked anywhere
+     *
+     * @param start First millisecond, inclusive
+     * @param end   Last millisecond, inclusive
+     * @return Block
+     */
+    LogBlock<K, V> newBlock(long start, long end) {
+        return new LogBlock<>(settings, start, end, this::notifyExpire, labels, versions, metric, distinct);
+    }
+
+    /**
+     * Index an item which is already in its block, see {@link BulkLoader}. Index points to the newest version. In
+     * upsert mode the older version is retired, it could be the item itself.
+     *
+     * @param item Item, already in a linked block
+     */
+    void indexLoaded(LogItem<K, V> item) {
+        long time = item.getRegisterTime();
+        var indexed = sessionIndex.compute(item.getId(), (key, previous) -> {
+            if (previous == null || previous == time) return time;
+            long older = Math.min(previous, time);
+            if (upsert) {
+                var olderBlock = findBlock(older);
+                if (olderBlock != null) olderBlock.remove(key, older);
+            }
+            return Math.max(previous, time);
+        });
+
+        if (!upsert || indexed == time) notifyAdd(item);
+    }
+
+    /**
+     * Log clock, for whoever works with the Log from aside
+     *
+     * @return Current time, ms
+     */
+    long currentTimeMillis() {
+        return timeSource.currentTimeMillis();
+    }
+
+    /**
+     * Log clock, for those who stamp Log operations outside, e.g. replication
+     *
+     * @return Time source from settings
+     */
+    public TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    /**
+     * Blocks of the range, oldest first, for whoever reads the Log from aside
+     *
+     * @param startTimeMillis Start of the range
+     * @param endTimeMillis   End of the range
+     * @return Lazy iterator over blocks
+     */
+    Iterator<LogBlock<K, V>> blocks(long startTimeMillis, long endTimeMillis) {
+        long start = Math.max(startTimeMillis, head.getBlockStart());
+        return new ChainIterator<>(findOldestAvailableBlock(start, endTimeMillis), endTimeMillis);
+    }
+
+    /**
+     * Version clock and store of the Log, see {@link Snapshot}
+     *
+     * @return Versions
+     */
+    Versions<K, V> versions() {
+        return versions;
+    }
+
+    /**
+     * Point-in-time view of the Log. Writes go on as usual, snapshot keeps seeing the Log as of this call. Items
+     * removed after it are kept aside while the snapshot is open, so close it as soon as possible.
+     *
+     * @return Snapshot, close it when done
+     */
+    public Snapshot<K, V> snapshot() {
+        return Snapshot.open(this);
+    }
+
+    /**
+     * Register operations listener
+     *
+     * @param listener Listener, see type for the contract
+     */
+    public void addListener(LogListener<K, V> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Deregister operations listener
+     *
+     * @param listener Listener
+     */
+    public void removeListener(LogListener<K, V> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Subscribe to Log changes. New items are pushed to subscriber as they come, optionally with removals and
+     * expirations, see settings. Subscriber sees only what happened after this call, use range query for history.
+     *
+     * @param subscriber Subscriber, called from subscription's own thread
+     * @param settings   Buffer, batch and slow consumer settings, see type for details
+     * @return Subscription, close it to stop delivery
+     */
+    public Subscription<K, V> subscribe(Subscriber<K, V> subscriber, SubscriptionProperties settings) {
+        return Subscription.start(this, subscriber, settings);
+    }
+
+    /**
+     * Loader of historical data: builds sealed blocks aside, in parallel, and splices them into the chain at once.
+     * Much faster than add for millions of items from the past, see type for details.
+     *
+     * @param parallelism Threads to build blocks with
+     * @return Loader, reusable
+     */
+    public BulkLoader<K, V> bulkLoader(int parallelism) {
+        return BulkLoader.create(this, parallelism);
+    }
+
+    private void notifyAdd(LogItem<K, V> item) {
+        // no iterator allocation on the hot path if nobody listens
+        if (listeners.isEmpty()) return;
+        for (var listener : listeners) listener.onAdd(item);
+    }
+
+    private void notifyExpire(LogItem<K, V> item) {
+        for (var listener : listeners) listener.onExpire(item);
+    }
+
     /**
      * Generate and append a new block. NOT thread-safe. Invoker is responsible for synchronization.
      */
     private void rotateTheBlockUnsafe() {
-        var newBlock = new LogBlock<K, V>(settings);
+        long now = timeSource.currentTimeMillis();
+        int size = chooseBlockSize(current);
+
+        // aligned to own size, so blocks of the same size land on the same grid, but never before the current end
+        long start = Math.max(current.getBlockEnd() + 1, now - Math.floorMod(now, size));
+        var newBlock = newBlock(start, start + size - 1);
         current.setNextBlockUnsafe(newBlock);
         current = newBlock;
-        blockIndex.put(newBlock.getBlockId(), newBlock);
+        blockIndex.put(newBlock.getBlockStart(), newBlock);
+    }
+
+    /**
+     * Pick the size of the next block. Fixed size unless adaptive size is on, otherwise it is the time the recent
+     * ingest rate needs to fill the block with target items, within bounds. Quiet hours get a few long blocks instead
+     * of a chain of empty ones, peak hours get short blocks with cooler buckets. NOT thread-safe, rotation only.
+     *
+     * @param outgoing Block which is being rotated out
+     * @return Block size in ms
+     */
+    private int chooseBlockSize(LogBlock<K, V> outgoing) {
+        if (maxBlockSize <= 0) return blockSize;
+
+        // items registered between block generation and its end. Removed ones are not counted, it's an estimate
+        double rate = (double) outgoing.size() / (outgoing.getBlockEnd() - outgoing.getBlockGen() + 1);
+        // smoothed, one odd block must not swing the size
+        ingestRate = ingestRate < 0 ? rate : (ingestRate + rate) / 2;
+
+        if (ingestRate <= 0) return maxBlockSize;
+        return (int) Math.max(minBlockSize, Math.min(maxBlockSize, Math.round(targetBlockItems / ingestRate)));
     }
 
     /**
@@ -150,12 +709,11 @@ public class Log<K,V> implements ItemRepository<K, V> {
         // We don't need any synchronization here, we copy the reference and if block is good - write it
         LogBlock<K, V> targetBlock = current;
         // create timemark
-        long registerTime = System.currentTimeMillis();
+        long registerTime = timeSource.currentTimeMillis();
 
         // if block good - write it to the block and index!
         if (targetBlock.isBlockGoodFor(registerTime)) {
-            sessionIndex.put(sessionKey, registerTime);
-            targetBlock.add(sessionKey, registerTime, expiryTimeMillis, payload);
+            register(targetBlock, new LogItem<>(sessionKey, registerTime, expiryTimeMillis, payload));
             return true;
         }
 
@@ -179,9 +737,11 @@ public class Log<K,V> implements ItemRepository<K, V> {
         // nothing in index means nothing in data
         if (registerTime == null) return;
         // get target block
-        var targetBlock = blockIndex.get(LogBlock.calculateBlockId(registerTime, this.blockSize));
+        var targetBlock = findBlock(registerTime);
         // if block alive - remove session
         if (targetBlock != null) targetBlock.remove(sessionKey, registerTime);
+
+        for (var listener : listeners) listener.onRemove(sessionKey);
     }
 
     /**
@@ -194,10 +754,30 @@ public class Log<K,V> implements ItemRepository<K, V> {
      */
     @Override
     public Collection<LogItem<K, V>> get(long startTimeMillis, long endTimeMillis) throws DatabaseGenericException {
+        return get(startTimeMillis, endTimeMillis, Collections.emptyMap());
+    }
+
+    /**
+     * Returns data for specified period which has all the labels. Blocks use bitmap index, so only matching items are
+     * touched, no matter how much other data is in the range.
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis end of the time range in milliseconds
+     * @param labels Label name to value, all must match. Empty for no filter
+     * @return Log items
+     * @throws DatabaseGenericException On repo internal error
+     * @throws IllegalArgumentException If label is not registered with the Log
+     */
+    public Collection<LogItem<K, V>> get(long startTimeMillis, long endTimeMillis, Map<String, String> labels)
+            throws DatabaseGenericException {
+        for (var label : labels.keySet()) {
+            if (!this.labels.containsKey(label)) throw new IllegalArgumentException("Label is not indexed: " + label);
+        }
+
         // Okay, we have another code duplicate with FLUSH. Unfortunately, any my attempts to move this to the function
         // do more complications than resolves. So be it
 
-        long commandTime = System.currentTimeMillis();
+        long commandTime = timeSource.currentTimeMillis();
 
         // no any sense to query beyond command time
         endTimeMillis = Math.min(endTimeMillis, commandTime);
@@ -205,25 +785,360 @@ public class Log<K,V> implements ItemRepository<K, V> {
         // no any sense to query before log's oldest block
         startTimeMillis = Math.max(startTimeMillis, headBlock.getBlockStart());
 
-        var startBlockId = LogBlock.calculateBlockId(startTimeMillis, this.blockSize);
-        var endBlockId = LogBlock.calculateBlockId(endTimeMillis, this.blockSize);
-
-        // Yes, like I said, I would prefer something tree-based rather than plain map as block index.
-        // But for now it is what it is
-        var targetBlock = findOldestAvailableBlock(startBlockId, endBlockId);
+        var targetBlock = findOldestAvailableBlock(startTimeMillis, endTimeMillis);
 
         var result = new LinkedList<LogItem<K,V>>();
 
         // walk through the block chain 'till the end OR end block
-        while (targetBlock != null && targetBlock.getBlockId() <= endBlockId) {
+        while (targetBlock != null && targetBlock.getBlockStart() <= endTimeMillis) {
             if (!targetBlock.isObsolete())
-                result.addAll(targetBlock.get(startTimeMillis, endTimeMillis, commandTime));
+                result.addAll(targetBlock.get(startTimeMillis, endTimeMillis, commandTime, labels));
             targetBlock = targetBlock.getNextBlock();
         }
 
         return result;
     }
 
+    /**
+     * Returns data for specified period which matches the filter. Filter is evaluated inside the block scan, so items
+     * which don't match are never copied, and its bounds skip whole blocks and buckets, see {@link ItemFilter}.
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis end of the time range in milliseconds
+     * @param filter Filter
+     * @return Log items
+     */
+    public Collection<LogItem<K, V>> get(long startTimeMillis, long endTimeMillis,
+                                         ItemFilter<? super K, ? super V> filter) {
+        long commandTime = timeSource.currentTimeMillis();
+
+        long end = Math.min(Math.min(endTimeMillis, filter.getMaxRegisterTime()), commandTime);
+        long start = Math.max(Math.max(startTimeMillis, filter.getMinRegisterTime()), head.getBlockStart());
+
+        var result = new LinkedList<LogItem<K, V>>();
+        var blocks = new ChainIterator<>(findOldestAvailableBlock(start, end), end);
+        while (blocks.hasNext()) result.addAll(blocks.next().get(start, end, commandTime, filter));
+
+        return result;
+    }
+
+    /**
+     * Quantiles of the metric over the items of the range, see {@link #Log(LogProperties, Map, MetricExtractor)}.
+     * Blocks fully inside the range answer with their sketches, only partially covered edge blocks, the current one
+     * and blocks with FLUSH pending or items expiring are scanned. Result is within relative accuracy of
+     * {@link LogProperties#getQuantileAccuracy()}.
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis end of the time range in milliseconds
+     * @param q Quantiles, between 0 and 1, e.g. 0.5, 0.99
+     * @return Values, one per quantile, NaN if no item in range has the metric
+     * @throws IllegalStateException If Log has no metric
+     * @throws IllegalArgumentException If quantile is out of range
+     */
+    public double[] quantiles(long startTimeMillis, long endTimeMillis, double... q) {
+        if (metric == null) throw new IllegalStateException("Log has no metric extractor");
+        for (double quantile : q) {
+            if (!(quantile >= 0 && quantile <= 1)) throw new IllegalArgumentException("Bad quantile: " + quantile);
+        }
+
+        long commandTime = timeSource.currentTimeMillis();
+
+        long end = Math.min(endTimeMillis, commandTime);
+        long start = Math.max(startTimeMillis, head.getBlockStart());
+
+        var merged = new QuantileSketch(settings.getQuantileAccuracy());
+        ItemVisitor<K, V> scan = (itemId, registerTime, ttl, payload) -> {
+            if (payload != null) merged.add(metric.extract(payload));
+            return true;
+        };
+
+        var blocks = new ChainIterator<>(findOldestAvailableBlock(start, end), end);
+        while (blocks.hasNext()) {
+            var block = blocks.next();
+            // all expired or empty, nothing to count
+            if (!block.mightHoldTtl(commandTime, Long.MAX_VALUE)) continue;
+            var sketch = start <= block.getBlockStart() && block.getBlockEnd() <= end
+                    ? block.quantiles(commandTime) : null;
+            if (sketch != null) merged.merge(sketch);
+            else block.scan(start, end, commandTime, scan);
+        }
+
+        var result = new double[q.length];
+        for (int i = 0; i < q.length; i++) result[i] = merged.quantile(q[i]);
+        return result;
+    }
+
+    /**
+     * Estimated count of distinct keys (or whatever the distinct extractor gives) over the items of the range, see
+     * {@link #Log(LogProperties, Map, MetricExtractor, DistinctExtractor)}. Blocks fully inside the range answer with
+     * their HyperLogLog sketches, the rest are scanned into the same sketch, so memory is constant whatever the
+     * cardinality is. Sketch can't forget, so a block some item has left is scanned as well. Standard error is about
+     * 1.04 / sqrt(2^{@link LogProperties#getDistinctPrecision()}).
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis end of the time range in milliseconds
+     * @return Estimated count
+     * @throws IllegalStateException If Log keeps no distinct sketches
+     */
+    public long distinctCount(long startTimeMillis, long endTimeMillis) {
+        if (distinct == null) throw new IllegalStateException("Log has no distinct sketches");
+
+        long commandTime = timeSource.currentTimeMillis();
+
+        long end = Math.min(endTimeMillis, commandTime);
+        long start = Math.max(startTimeMillis, head.getBlockStart());
+
+        var merged = new DistinctSketch(settings.getDistinctPrecision());
+        ItemVisitor<K, V> scan = (itemId, registerTime, ttl, payload) -> {
+            merged.add(distinct.extract(itemId, payload));
+            return true;
+        };
+
+        var blocks = new ChainIterator<>(findOldestAvailableBlock(start, end), end);
+        while (blocks.hasNext()) {
+            var block = blocks.next();
+            // all expired or empty, nothing to count
+            if (!block.mightHoldTtl(commandTime, Long.MAX_VALUE)) continue;
+            var sketch = start <= block.getBlockStart() && block.getBlockEnd() <= end
+                    ? block.distinct(commandTime) : null;
+            if (sketch != null) merged.merge(sketch);
+            else block.scan(start, end, commandTime, scan);
+        }
+
+        return merged.estimate();
+    }
+
+    /**
+     * Returns data for specified period lazily. Blocks and buckets are visited only while invoker iterates, so range
+     * of any size costs constant memory. Command time is fixed at the call, same as for {@link #get(long, long)}.
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis end of the time range in milliseconds
+     * @return Lazy iterator over log items
+     */
+    @Override
+    public Iterator<LogItem<K, V>> iterator(long startTimeMillis, long endTimeMillis) {
+        long commandTime = timeSource.currentTimeMillis();
+
+        long end = Math.min(endTimeMillis, commandTime);
+        long start = Math.max(startTimeMillis, head.getBlockStart());
+
+        var firstBlock = findOldestAvailableBlock(start, end);
+
+        return new RangeIterator<>(new ChainIterator<>(firstBlock, end), start, end, commandTime, false);
+    }
+
+    /**
+     * Same as {@link #iterator(long, long)}, but newest first: blocks and buckets are walked from the end of the range
+     * to the start. Items of the same millisecond come in no particular order.
+     * <p>
+     * Chain is linked forward only, so block references of the range are collected first, which is cheap. Items are
+     * still read lazily.
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis end of the time range in milliseconds
+     * @return Lazy iterator over log items, newest first
+     */
+    public Iterator<LogItem<K, V>> descendingIterator(long startTimeMillis, long endTimeMillis) {
+        long commandTime = timeSource.currentTimeMillis();
+
+        long end = Math.min(endTimeMillis, commandTime);
+        long start = Math.max(startTimeMillis, head.getBlockStart());
+
+        var blocks = new ArrayList<LogBlock<K, V>>();
+        new ChainIterator<>(findOldestAvailableBlock(start, end), end).forEachRemaining(blocks::add);
+        Collections.reverse(blocks);
+
+        return new RangeIterator<>(blocks.iterator(), start, end, commandTime, true);
+    }
+
+    /**
+     * Range as a reactive stream with backpressure: blocks and buckets are walked only as subscriber demand arrives,
+     * cancel stops the walk. Long exports to slow sinks cost constant memory. See type for details.
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis end of the time range in milliseconds
+     * @return Cold publisher, every subscriber gets its own walk
+     */
+    public RangePublisher<K, V> publisher(long startTimeMillis, long endTimeMillis) {
+        return RangePublisher.create(this, startTimeMillis, endTimeMillis);
+    }
+
+    /**
+     * Visit items of the range, oldest first, for in-process aggregation loops. Unlike {@link #iterator(long, long)}
+     * no item object is handed out and nothing is allocated per item, visitor gets the fields and may stop the walk.
+     * Command time is fixed at the call.
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis end of the time range in milliseconds
+     * @param visitor Visitor, called in this thread
+     * @return True if the whole range was visited, false if visitor stopped it
+     */
+    public boolean scan(long startTimeMillis, long endTimeMillis, ItemVisitor<? super K, ? super V> visitor) {
+        long commandTime = timeSource.currentTimeMillis();
+
+        long end = Math.min(endTimeMillis, commandTime);
+        long start = Math.max(startTimeMillis, head.getBlockStart());
+
+        var blocks = new ChainIterator<>(findOldestAvailableBlock(start, end), end);
+        while (blocks.hasNext()) {
+            if (!blocks.next().scan(start, end, commandTime, visitor)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * {@link #scan(long, long, ItemVisitor)} for Logs keyed by Long, Id goes to the visitor unboxed
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis end of the time range in milliseconds
+     * @param visitor Visitor, called in this thread
+     * @return True if the whole range was visited, false if visitor stopped it
+     * @throws ClassCastException If Ids are not Long
+     */
+    public boolean scanLong(long startTimeMillis, long endTimeMillis, LongItemVisitor<? super V> visitor) {
+        return scan(startTimeMillis, endTimeMillis,
+                (itemId, registerTime, ttl, payload) -> visitor.visit((Long) itemId, registerTime, ttl, payload));
+    }
+
+    /**
+     * The latest items of the range, newest first. Walk stops as soon as there are enough items, so cost depends on
+     * n, not on the range.
+     *
+     * @param n               Max items
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @return Up to n items, newest first
+     */
+    public List<LogItem<K, V>> latest(int n, long startTimeMillis, long endTimeMillis) {
+        var result = new ArrayList<LogItem<K, V>>(Math.min(n, 1024));
+        var items = descendingIterator(startTimeMillis, endTimeMillis);
+        while (result.size() < n && items.hasNext()) result.add(items.next());
+        return result;
+    }
+
+    /**
+     * Top items of the range by register time or TTL, greatest first. By register time it is {@link #latest(int,
+     * long, long)}. By TTL the whole range is read, but only n items are kept at a time.
+     *
+     * @param n               Max items
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @param order           What to rank by
+     * @return Up to n items, greatest first
+     */
+    public List<LogItem<K, V>> top(int n, long startTimeMillis, long endTimeMillis, ItemOrder order) {
+        if (order == ItemOrder.REGISTER_TIME) return latest(n, startTimeMillis, endTimeMillis);
+
+        Comparator<LogItem<K, V>> comparator = order.comparator();
+        // min-heap of the best n so far, its head is the one to kick out
+        var heap = new PriorityQueue<>(Math.min(n, 1024) + 1, comparator);
+        var items = iterator(startTimeMillis, endTimeMillis);
+        while (items.hasNext() && n > 0) {
+            heap.add(items.next());
+            if (heap.size() > n) heap.poll();
+        }
+
+        var result = new ArrayList<>(heap);
+        result.sort(comparator.reversed());
+        return result;
+    }
+
+    /**
+     * First page of a range. Unlike {@link #get(long, long)}, memory is bounded by the page size, the rest is read
+     * with the token, see {@link #page(String, int)}. Command time is fixed here for all the pages, so TTL cut is the
+     * same for the whole read.
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @param limit           Max items per page
+     * @return Page with the next token, if there is more
+     */
+    public Page<K, V> page(long startTimeMillis, long endTimeMillis, int limit) {
+        long commandTime = timeSource.currentTimeMillis();
+        long end = Math.min(endTimeMillis, commandTime);
+        long start = Math.max(startTimeMillis, head.getBlockStart());
+
+        return page(new PageCursor(start, end, commandTime, start), limit);
+    }
+
+    /**
+     * Next page of a range. Resume starts right at the block, bucket and position of the token, earlier blocks are
+     * not touched.
+     * <p>
+     * If the block of the token is vacuumed in between, read continues from the next available block. VACUUM drops
+     * expired items only, so the only loss is items which expired after the first page. Items removed or added in
+     * the past meanwhile may shift the position in their bucket: one item may be skipped or returned twice.
+     *
+     * @param token Token from the previous page
+     * @param limit Max items per page
+     * @return Page with the next token, if there is more
+     * @throws IllegalArgumentException If token is broken
+     */
+    public Page<K, V> page(String token, int limit) {
+        return page(PageCursor.decode(token), limit);
+    }
+
+    private Page<K, V> page(PageCursor cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Page limit must be positive");
+
+        long end = cursor.endTimeMillis;
+        // no any sense to look before log's oldest block, its block may be gone long ago
+        var block = findOldestAvailableBlock(Math.max(cursor.blockStart, head.getBlockStart()), end);
+        if (block != null && block.getBlockStart() != cursor.blockStart) cursor.moveTo(block.getBlockStart());
+
+        var items = new ArrayList<LogItem<K, V>>(Math.min(limit, 1024));
+        while (block != null && block.getBlockStart() <= end) {
+            if (!block.page(cursor, items, limit)) return new Page<>(items, cursor.encode());
+
+            block = block.getNextBlock();
+            if (block == null || block.getBlockStart() > end) break;
+            cursor.moveTo(block.getBlockStart());
+            // page is full exactly at the block border
+            if (items.size() >= limit) return new Page<>(items, cursor.encode());
+        }
+
+        return new Page<>(items, null);
+    }
+
+    /**
+     * Set a new TTL of an item in place. Item stays in its block and bucket, nothing is allocated and the index is
+     * not touched, so it is the way for keep-alive heartbeats instead of remove plus add.
+     * <p>
+     * Expired item can't be touched, it is gone. Item expiring at the very moment of touch may still be taken by a
+     * concurrent VACUUM.
+     *
+     * @param itemId           Item Id
+     * @param expiryTimeMillis New absolute expiration time in milliseconds
+     * @return True if item was found and touched
+     */
+    public boolean touch(K itemId, long expiryTimeMillis) {
+        var registerTime = sessionIndex.get(itemId);
+        if (registerTime == null) return false;
+
+        var block = findBlock(registerTime);
+        var item = block == null ? null : block.touch(itemId, registerTime, expiryTimeMillis);
+        if (item == null) return false;
+
+        for (var listener : listeners) listener.onTouch(item);
+        return true;
+    }
+
+    /**
+     * Batch {@link #touch(Object, long)}, the same new TTL for all the items
+     *
+     * @param itemIds          Item Ids
+     * @param expiryTimeMillis New absolute expiration time in milliseconds
+     * @return Items touched
+     */
+    public int touch(Collection<K> itemIds, long expiryTimeMillis) {
+        int counter = 0;
+        for (var itemId : itemIds) {
+            if (touch(itemId, expiryTimeMillis)) counter++;
+        }
+        return counter;
+    }
+
     /**
      * Returns specific record by Id
      *
@@ -236,7 +1151,7 @@ public class Log<K,V> implements ItemRepository<K, V> {
         var time = sessionIndex.get(itemId);
         if (time == null) return null;
 
-        var block = blockIndex.get(LogBlock.calculateBlockId(time, blockSize));
+        var block = findBlock(time);
         if (block == null) {
             sessionIndex.remove(itemId);
             return null;
@@ -252,26 +1167,76 @@ public class Log<K,V> implements ItemRepository<K, V> {
     }
 
     /**
-     * Search for oldest available block in a range
+     * Find item walking the whole chain, without the session index. For recovery and for those who don't trust the
+     * index. Key filters skip blocks which can't hold the key, so only a few blocks are really searched.
      *
-     * @param startBlockId Start block Id (inclusive)
-     * @param endBlockId End block Id (inclusive)
-     * @return Oldest block in a range or null, if not found
+     * @param itemId Item Id
+     * @return The most recent item with the Id or null, if not found
+     */
+    public LogItem<K, V> scan(K itemId) {
+        LogItem<K, V> result = null;
+        for (var block = head; block != null; block = block.getNextBlock()) {
+            var item = block.find(itemId);
+            if (item != null) result = item;
+        }
+        return result;
+    }
+
+    /**
+     * Remove item from every block and from the session index, without trusting the index. Same block skipping as
+     * {@link #scan(Object)}.
+     *
+     * @param itemId Item Id
+     * @return Blocks the item was removed from
      */
-    private LogBlock<K, V> findOldestAvailableBlock(long startBlockId, long endBlockId) {
+    public int purge(K itemId) {
+        sessionIndex.remove(itemId);
 
-        for (long id = startBlockId; id <= endBlockId; id++) {
-            var candidate = blockIndex.get(id);
-            // We SHOULD not to check here for obsolete block. Scan through chain is cheaper than through index and
-            // I can prove it.
-            if (candidate != null) return candidate;
+        int counter = 0;
+        for (var block = head; block != null; block = block.getNextBlock()) {
+            if (!block.isObsolete() && block.remove(itemId)) counter++;
         }
 
-        return null;
+        if (counter > 0) for (var listener : listeners) listener.onRemove(itemId);
+        return counter;
+    }
+
+    /**
+     * Find a block which holds the time mark
+     *
+     * @param time Time mark, usually register time from the session index
+     * @return Block or null, if block is not in the index (vacuumed or never existed)
+     */
+    LogBlock<K, V> findBlock(long time) {
+        var entry = blockIndex.floorEntry(time);
+        return entry != null && entry.getValue().isBlockGoodFor(time) ? entry.getValue() : null;
     }
 
     /**
-     * Flushes records created in this timerange
+     * Search for oldest available block in a range: block which holds the start or the first one after it. One
+     * lookup in the boundary index, no matter how wide the range is.
+     *
+     * @param startTimeMillis Start of the range (inclusive)
+     * @param endTimeMillis End of the range (inclusive)
+     * @return Oldest block in a range or null, if not found
+     */
+    private LogBlock<K, V> findOldestAvailableBlock(long startTimeMillis, long endTimeMillis) {
+        // We SHOULD not to check here for obsolete block. Scan through chain is cheaper than through index and
+        // I can prove it.
+        var candidate = findBlock(startTimeMillis);
+        if (candidate != null) return candidate;
+
+        var next = blockIndex.higherEntry(startTimeMillis);
+        return next != null && next.getKey() <= endTimeMillis ? next.getValue() : null;
+    }
+
+    /**
+     * Flushes records created in this timerange. FLUSH is a range tombstone per block, so it costs the same for an hour
+     * of data as for a millisecond: reads honor tombstones at once, VACUUM deletes the data physically. Blocks fully
+     * covered by the range are dropped from the chain right here.
+     * <p>
+     * Whole FLUSH is a single version: items committed before it are gone, items after it stay, even of the same
+     * millisecond.
      *
      * @param startTimeMillis start of the time range in milliseconds
      * @param endTimeMillis end of the time range in milliseconds
@@ -282,7 +1247,10 @@ public class Log<K,V> implements ItemRepository<K, V> {
         // Okay, we have another code duplicate with GET. Unfortunately, any my attempts to move this to the function
         // do more complications than resolves. So be it
 
-        long commandTime = System.currentTimeMillis();
+        long commandTime = timeSource.currentTimeMillis();
+        // listeners get the range as it was requested, it is clamped below
+        long requestedStart = startTimeMillis;
+        long requestedEnd = endTimeMillis;
 
         // no any sense to query beyond command time
         endTimeMillis = Math.min(endTimeMillis, commandTime);
@@ -290,35 +1258,112 @@ public class Log<K,V> implements ItemRepository<K, V> {
         // no any sense to query before log's oldest block
         startTimeMillis = Math.max(startTimeMillis, headBlock.getBlockStart());
 
-        var startBlockId = LogBlock.calculateBlockId(startTimeMillis, this.blockSize);
-        var endBlockId = LogBlock.calculateBlockId(endTimeMillis, this.blockSize);
+        // late items may still come to a block until the watermark passes it, such block is never dropped
+        long watermark = getWatermark();
+        var wholeBlocks = new ArrayList<LogBlock<K, V>>();
+        int epoch = versions.enter();
+        long sequence = versions.next();
+        try {
+            var targetBlock = findOldestAvailableBlock(startTimeMillis, endTimeMillis);
 
-        // Yes, like I said, I would prefer something tree-based rather than plain map as block index.
-        // But for now it is what it is
-        var targetBlock = findOldestAvailableBlock(startBlockId, endBlockId);
+            // walk through the block chain 'till the end OR end block
+            while (targetBlock != null && targetBlock.getBlockStart() <= endTimeMillis) {
+                boolean whole = !targetBlock.isObsolete()
+                        && targetBlock.flush(startTimeMillis, endTimeMillis, commandTime, sequence);
+                if (whole && targetBlock != current && targetBlock.getBlockEnd() < watermark)
+                    wholeBlocks.add(targetBlock);
+                // once, however many FLUSHes hit it before VACUUM
+                if (targetBlock.queueForPurge()) flushedBlocks.add(targetBlock);
+                targetBlock = targetBlock.getNextBlock();
+            }
+        } finally {
+            versions.exit(epoch);
+        }
 
-        // walk through the block chain 'till the end OR end block
-        while (targetBlock != null && targetBlock.getBlockId() <= endBlockId) {
-            if (!targetBlock.isObsolete())
-                targetBlock.flush(startTimeMillis, endTimeMillis, commandTime, sessionIndex);
-            targetBlock = targetBlock.getNextBlock();
+        if (!wholeBlocks.isEmpty()) dropBlocks(wholeBlocks);
+
+        for (var listener : listeners) listener.onFlush(requestedStart, requestedEnd);
+    }
+
+    /**
+     * Exclude flushed blocks from the chain and the index at once. Items are purged later by VACUUM, see
+     * {@link #flushedBlocks}.
+     *
+     * @param blocks Blocks fully covered by tombstones, none of them is current
+     * @throws DatabaseGenericException If interrupted while locking
+     */
+    private void dropBlocks(List<LogBlock<K, V>> blocks) throws DatabaseGenericException {
+        try {
+            // VACUUM is the other one who shortcuts the chain. If it takes too long, tombstones hide the blocks anyway
+            // and VACUUM removes them as empty later
+            if (!vacuumMutex.tryLock(settings.getLockThreshold(), TimeUnit.MILLISECONDS)) return;
+
+            var drop = new HashSet<>(blocks);
+            LogBlock<K, V> prev = null;
+            for (var block = head; block != null && block != current; ) {
+                var next = block.getNextBlock();
+                if (drop.contains(block)) {
+                    block.markObsolete();
+                    blockIndex.remove(block.getBlockStart(), block);
+                    // same shortcut as VACUUM does, dropped block keeps its link, so readers on it move on
+                    if (prev == null) head = next;
+                    else prev.setNextBlockUnsafe(next);
+                } else prev = block;
+                block = next;
+            }
+        } catch (InterruptedException e) {
+            throw new DatabaseGenericException("Command Thread interrupted!");
+        } finally {
+            if (vacuumMutex.isHeldByCurrentThread()) vacuumMutex.unlock();
         }
     }
 
+    /**
+     * Blocks waiting for purge of range tombstones, see {@link Snapshot}
+     *
+     * @return Blocks, weakly consistent
+     */
+    Iterable<LogBlock<K, V>> flushedBlocks() {
+        return flushedBlocks;
+    }
+
     /**
      * Vacuums blocks and items in blocks
      * <p>
      * Method MUST be thread-safe otherwise this will damage block chain.
      * Nevertheless, VACUUM does not affect other operations as well as block chain change.
+     * <p>
+     * Log has no scheduler of its own, whoever embeds or serves the Log is responsible to call it periodically.
+     * <p>
+     * Blocks behind the current one and behind the lateness watermark are sealed here as well, see
+     * {@link LogBlock#sealUnsafe()}.
      *
      * @return Blocks removed
      */
-    protected int vacuum() {
+    public int vacuum() {
         int counter = 0;
 
         try {
             if (!vacuumMutex.tryLock()) return 0;
 
+            // closed blocks get compact key filters, it's cheap enough to be a part of VACUUM. Late items may still come
+            // to a block until the watermark passes it
+            long watermark = getWatermark();
+            for (var block = head; block != null && block != current && block.getBlockEnd() < watermark;
+                 block = block.getNextBlock()) block.sealUnsafe();
+
+            // physical part of FLUSH. Block leaves the queue after the purge, so snapshots find its items somewhere.
+            // Block which got a tombstone meanwhile goes to the end of the queue, for the next run
+            for (int left = flushedBlocks.size(); left > 0; left--) {
+                var block = flushedBlocks.peek();
+                if (block == null) break;
+                if (block.purgeUnsafe(sessionIndex)) flushedBlocks.add(block);
+                flushedBlocks.remove(block);
+            }
+
+            // removed items nobody can see anymore, including ones from the previous run
+            versions.prune();
+
             var prev = head.getNextBlock();
 
             // no enough block to clean
@@ -341,7 +1386,7 @@ public class Log<K,V> implements ItemRepository<K, V> {
 
                 if (targetBlock.isObsolete()) {
                     // remove obsolete block from index, no harm in it even if we will stop here
-                    blockIndex.remove(targetBlock.getBlockId());
+                    blockIndex.remove(targetBlock.getBlockStart(), targetBlock);
                     // exclude obsolete block from the chain
                     prev.setNextBlockUnsafe(targetBlock.getNextBlock());
                     counter++;
@@ -354,7 +1399,10 @@ public class Log<K,V> implements ItemRepository<K, V> {
             var targetBlock = head;
             if (targetBlock.getNextBlock() != null && targetBlock.getNextBlock().getNextBlock() != null && targetBlock.getNextBlock().getNextBlock() != current && targetBlock.isVacuumable()) {
                 targetBlock.vacuumUnsafe(sessionIndex);
-                if (targetBlock.isObsolete()) head = targetBlock.getNextBlock();
+                if (targetBlock.isObsolete()) {
+                    head = targetBlock.getNextBlock();
+                    blockIndex.remove(targetBlock.getBlockStart(), targetBlock);
+                }
             }
             return counter;
 
@@ -363,4 +1411,66 @@ public class Log<K,V> implements ItemRepository<K, V> {
         }
 
     }
+
+    /**
+     * Walk through the block chain 'till the end OR end block
+     */
+    private static final class ChainIterator<K, V> implements Iterator<LogBlock<K, V>> {
+        private final long endTimeMillis;
+        private LogBlock<K, V> nextBlock;
+
+        private ChainIterator(LogBlock<K, V> firstBlock, long endTimeMillis) {
+            this.nextBlock = firstBlock;
+            this.endTimeMillis = endTimeMillis;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextBlock != null && nextBlock.getBlockStart() <= endTimeMillis;
+        }
+
+        @Override
+        public LogBlock<K, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            var block = nextBlock;
+            nextBlock = block.getNextBlock();
+            return block;
+        }
+    }
+
+    /**
+     * Lazy walk through the blocks, see {@link #iterator(long, long)} and {@link #descendingIterator(long, long)}
+     */
+    private static final class RangeIterator<K, V> implements Iterator<LogItem<K, V>> {
+        private final Iterator<LogBlock<K, V>> blocks;
+        private final long startTimeMillis;
+        private final long endTimeMillis;
+        private final long commandTime;
+        private final boolean descending;
+        private Iterator<LogItem<K, V>> blockItems = Collections.emptyIterator();
+
+        private RangeIterator(Iterator<LogBlock<K, V>> blocks, long startTimeMillis, long endTimeMillis,
+                              long commandTime, boolean descending) {
+            this.blocks = blocks;
+            this.startTimeMillis = startTimeMillis;
+            this.endTimeMillis = endTimeMillis;
+            this.commandTime = commandTime;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!blockItems.hasNext()) {
+                if (!blocks.hasNext()) return false;
+                blockItems = blocks.next().iterator(startTimeMillis, endTimeMillis, commandTime, descending);
+            }
+            return true;
+        }
+
+        @Override
+        public LogItem<K, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return blockItems.next();
+        }
+    }
 }
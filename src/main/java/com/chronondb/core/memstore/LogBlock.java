@@ -1,12 +1,15 @@
 package com.chronondb.core.memstore;
 
 import com.chronondb.core.properties.LogProperties;
+import com.chronondb.core.time.TimeSource;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
- * Log Block, for now fixed size only.
+ * Log Block. Block covers a continuous time range of its own, sizes of neighbour blocks may differ.
  *
  * @param <K> recordId type
  * @param <V> Payload type
@@ -14,17 +17,12 @@ import java.util.concurrent.ConcurrentHashMap;
 public class LogBlock<K, V> {
 
     /**
-     * Block id which is generated from the time. If blockSize is 100, then time 105 belongs to block id 2
-     */
-    private final long blockId;
-
-    /**
-     * Block time start, ms. Derived from block id, obviously. Block 2 of size 100 will handle time starting 100ms
+     * Block time start, ms, inclusive. Block start is also a block identity, blocks never overlap
      */
     private final long blockStart;
 
     /**
-     * Block time start, ms. Derived from block id, obviously. Block 2 of size 100 will handle time till 199ms
+     * Block time end, ms, inclusive
      */
     private final long blockEnd;
 
@@ -39,19 +37,91 @@ public class LogBlock<K, V> {
     private final long vacuumableAfter;
 
     /**
-     * Block size. Now only static size supported, but dynamic block size is also possible with proper
-     * - calculateBlockId()
-     * - calculateBlockStart()
-     * - calculateBlockEnd()
+     * Block size, ms. Fixed for the block, but not for the Log: rotation may pick another size for the next one.
+     * Static calculateBlockId()/calculateBlockStart()/calculateBlockEnd() are for the nominal aligned grid only.
      */
     private final int blockSize;
 
+    /**
+     * Clock, the same one as Log uses. Block must never have its own idea of time
+     */
+    private final TimeSource timeSource;
+
     /**
      * Buckets, per ms. We are NOT going to change this beyond constructor, so no changes - no problems
      * Key is session Id, value is TTL
      */
     private final ArrayList<Map<K, LogItem<K, V>>> buckets;
 
+    /**
+     * Who wants to know about items dropped by TTL. Called by whoever removed the item, VACUUM or a read
+     */
+    private final Consumer<LogItem<K, V>> expiryListener;
+
+    /**
+     * Version clock and store of the Log, see {@link Snapshot}
+     */
+    private final Versions<K, V> versions;
+
+    /**
+     * Secondary index by labels, null if Log has no labels
+     */
+    private final LabelIndex<K, V> labelIndex;
+
+    /**
+     * Key membership filter, null if disabled. Open block filter is sized by settings, sealed one by the content
+     */
+    private volatile KeyFilter keyFilter;
+
+    /**
+     * Filter is rebuilt for the actual content, block is not expected to grow anymore
+     */
+    private volatile boolean sealed = false;
+
+    /**
+     * Range tombstones of FLUSH which are not purged yet. Immutable list, replaced on change. Reads check it on every
+     * item, so the empty list is the fast path
+     */
+    private volatile List<RangeTombstone> tombstones = List.of();
+    private final Object tombstonesMutex = new Object();
+
+    /**
+     * Block is in the purge queue of the Log, see {@link #queueForPurge()}. Guarded by tombstones mutex
+     */
+    private boolean queuedForPurge = false;
+
+    /**
+     * Bounds of TTLs ever set in the block, on add and on touch. Never shrink, so they may be wider than the content,
+     * but never narrower: filtered GET skips a block whose bounds don't meet the filter, see {@link ItemFilter}
+     */
+    private final AtomicLong minTtl = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxTtl = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Metric of the quantile sketch, null if Log has none
+     */
+    private final MetricExtractor<V> metric;
+
+    /**
+     * Quantile sketch of the metric over the items in the block, follows adds and removals, null if Log has no metric
+     */
+    private final QuantileSketch quantiles;
+
+    /**
+     * What distinct sketch counts, null if Log keeps no such sketches
+     */
+    private final DistinctExtractor<K, V> distinctExtractor;
+
+    /**
+     * HyperLogLog of distinct values over the items ever added, null if Log keeps no such sketches
+     */
+    private final DistinctSketch distinct;
+
+    /**
+     * Some item left the block: removed, expired or flushed. Distinct sketch can't forget it, so block is scanned
+     */
+    private volatile boolean departed = false;
+
     /**
      * We have a block chain to speed-up navigation after the first block found and to skip a dead blocks.
      * <p>
@@ -81,30 +151,108 @@ public class LogBlock<K, V> {
     }
 
     /**
-     * Block constructor
+     * Block constructor, block for the current time
      *
      * @param settings Initial settings, see interface for details
      */
     protected LogBlock(LogProperties settings) {
+        this(settings, settings.getTimeSource().currentTimeMillis());
+    }
+
+    /**
+     * Block constructor, block which holds given time. Not necessarily the current one, replay needs blocks from the
+     * past.
+     *
+     * @param settings  Initial settings, see interface for details
+     * @param blockTime Any time mark inside the block
+     */
+    protected LogBlock(LogProperties settings, long blockTime) {
+        this(settings, blockTime, item -> { });
+    }
+
+    /**
+     * Block constructor, block which holds given time and reports expired items.
+     *
+     * @param settings       Initial settings, see interface for details
+     * @param blockTime      Any time mark inside the block
+     * @param expiryListener Invoked for every item removed by TTL, must be fast
+     */
+    protected LogBlock(LogProperties settings, long blockTime, Consumer<LogItem<K, V>> expiryListener) {
+        this(settings, blockTime, expiryListener, Collections.emptyMap(), new Versions<>(), null, null);
+    }
+
+    /**
+     * Block constructor, block which holds given time, reports expired items and indexes labels. Bounds are aligned
+     * to the nominal block size from the settings.
+     *
+     * @param settings       Initial settings, see interface for details
+     * @param blockTime      Any time mark inside the block
+     * @param expiryListener Invoked for every item removed by TTL, must be fast
+     * @param labels         Label extractors, label name to extractor, empty for no secondary index
+     * @param versions       Version clock and store of the Log
+     * @param metric         Metric of the quantile sketch, null for no sketch
+     * @param distinct       What distinct sketch counts, null for no sketch
+     */
+    protected LogBlock(LogProperties settings, long blockTime, Consumer<LogItem<K, V>> expiryListener,
+                       Map<String, LabelExtractor<V>> labels, Versions<K, V> versions, MetricExtractor<V> metric,
+                       DistinctExtractor<K, V> distinct) {
+        this(settings,
+                calculateBlockStart(calculateBlockId(blockTime, settings.getBlockSize()), settings.getBlockSize()),
+                calculateBlockEnd(calculateBlockId(blockTime, settings.getBlockSize()), settings.getBlockSize()),
+                expiryListener, labels, versions, metric, distinct);
+    }
+
+    /**
+     * Block constructor with explicit bounds. Log picks bounds itself when block size is adaptive.
+     *
+     * @param settings       Initial settings, see interface for details
+     * @param blockStart     First millisecond of the block, inclusive
+     * @param blockEnd       Last millisecond of the block, inclusive
+     * @param expiryListener Invoked for every item removed by TTL, must be fast
+     * @param labels         Label extractors, label name to extractor, empty for no secondary index
+     * @param versions       Version clock and store of the Log
+     * @param metric         Metric of the quantile sketch, null for no sketch
+     * @param distinct       What distinct sketch counts, null for no sketch
+     */
+    protected LogBlock(LogProperties settings, long blockStart, long blockEnd, Consumer<LogItem<K, V>> expiryListener,
+                       Map<String, LabelExtractor<V>> labels, Versions<K, V> versions, MetricExtractor<V> metric,
+                       DistinctExtractor<K, V> distinct) {
+
+        if (blockEnd < blockStart || blockEnd - blockStart >= Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Bad block bounds: " + blockStart + ".." + blockEnd);
 
         // maybe you read it through RMI, don't you? I'll cache in variable just in case
-        this.blockSize = settings.getBlockSize();
+        this.blockSize = (int) (blockEnd - blockStart + 1);
+        this.timeSource = settings.getTimeSource();
+        this.expiryListener = expiryListener;
+        this.versions = versions;
+        this.labelIndex = labels.isEmpty() ? null : new LabelIndex<>(labels);
+        this.metric = metric;
+        this.quantiles = metric == null ? null : new QuantileSketch(settings.getQuantileAccuracy());
+        this.distinctExtractor = distinct;
+        this.distinct = distinct == null ? null : new DistinctSketch(settings.getDistinctPrecision());
+        this.keyFilter = settings.getKeyFilterExpectedItems() > 0
+                ? KeyFilter.create(settings.getKeyFilterExpectedItems()) : null;
 
         // init block header
-        this.blockGen = System.currentTimeMillis();
-        this.blockId = calculateBlockId(this.blockGen, blockSize);
-        this.blockStart = calculateBlockStart(this.blockId, blockSize);
-        this.blockEnd = calculateBlockEnd(this.blockId, blockSize);
-        this.vacuumableAfter = this.blockEnd + Math.max(
+        this.blockStart = blockStart;
+        this.blockEnd = blockEnd;
+        // Rotation registers an item at the generation time, so it MUST be inside the block even if clock already
+        // ticked to the next one. For a block from the past it is just the block end.
+        this.blockGen = Math.min(Math.max(timeSource.currentTimeMillis(), blockStart), blockEnd);
+        // vacuum delay in blocks is measured in this block's own size. Delay counts from the lateness watermark, late
+        // items may still come until it passes the block
+        this.vacuumableAfter = this.blockEnd + settings.getAllowedLatenessMs() + Math.max(
                 settings.getBlockVacuumDelayInMs(),
-                blockSize * settings.getBlockVacuumDelayInBlockSize()
+                (long) blockSize * settings.getBlockVacuumDelayInBlockSize()
         );
 
         // Init buckets. Since no changes to buckets holder after constructor - it's a thread-safe
         this.buckets = new ArrayList<>(blockSize);
-        // Create thread-safe buckets
+        // Create thread-safe buckets, striped ones if many writers share a millisecond
+        int stripes = StripedBucket.stripes(settings.getWriteStripes());
         for (int i = 0; i < blockSize; i++) {
-            buckets.add(new ConcurrentHashMap<K, LogItem<K, V>>());
+            buckets.add(stripes > 1 ? new StripedBucket<>(stripes) : new ConcurrentHashMap<K, LogItem<K, V>>());
         }
     }
 
@@ -192,7 +340,7 @@ public class LogBlock<K, V> {
         if (!isVacuumable() || this.nextBlock == null) return false;
 
         // we need this cache var for optimization only, it's not for any consistency purpose
-        long time = System.currentTimeMillis();
+        long time = timeSource.currentTimeMillis();
 
         // Way to detect empty block to remove it from the chain. Empty block is not a big time waster 'cause we can
         // compact it on the fly, thanks to in-memory vs disk. Nevertheless, in will slow down chain navigation.
@@ -209,7 +357,7 @@ public class LogBlock<K, V> {
                 // if it is expired - remove from bucket and index, otherwise block is not empty.
                 if (time > entry.getValue().getTtl()) {
                     // safe by definition, ConcurrentHashMap under the hood
-                    bucket.remove(entry.getKey());
+                    if (unlink(bucket, entry.getValue())) expired(entry.getValue());
                     globalItemIndex.remove(entry.getKey());
                 } else emptyBlock = false;
             }
@@ -220,13 +368,105 @@ public class LogBlock<K, V> {
         return true;
     }
 
+    /**
+     * Take an item out of its bucket. Removal is stamped first and item is kept for live snapshots, see
+     * {@link Versions#retire(LogItem)}
+     *
+     * @param bucket Bucket of the item
+     * @param item   Item
+     * @return True if this call removed it
+     */
+    private boolean unlink(Map<K, LogItem<K, V>> bucket, LogItem<K, V> item) {
+        if (!versions.retire(item) || !bucket.remove(item.getId(), item)) return false;
+        unsample(item);
+        return true;
+    }
+
+    /**
+     * Item came to the block, count its metric. BEFORE the bucket, so whoever removes it finds it counted
+     *
+     * @param item New item
+     */
+    private void sample(LogItem<K, V> item) {
+        if (quantiles != null && item.getPayLoad() != null) quantiles.add(metric.extract(item.getPayLoad()));
+        if (distinct != null) distinct.add(distinctExtractor.extract(item.getId(), item.getPayLoad()));
+    }
+
+    /**
+     * Distinct sketch to answer for the whole block as is. Only if nothing ever left the block, no FLUSH is pending and
+     * nothing could have expired by the command time, otherwise the block must be scanned.
+     *
+     * @param commandTime Command time
+     * @return Sketch or null, if block must be scanned or Log keeps no distinct sketches
+     */
+    DistinctSketch distinct(long commandTime) {
+        return distinct != null && !departed && !isObsolete() && tombstones.isEmpty() && minTtl.get() >= commandTime
+                ? distinct : null;
+    }
+
+    /**
+     * Item left the block, take its metric out
+     *
+     * @param item Removed item
+     */
+    private void unsample(LogItem<K, V> item) {
+        if (quantiles != null && item.getPayLoad() != null) quantiles.remove(metric.extract(item.getPayLoad()));
+    }
+
+    /**
+     * Quantile sketch to answer for the whole block as is. Only if it matches what a scan would see: no FLUSH pending
+     * and nothing in the block could have expired by the command time, otherwise the block must be scanned.
+     *
+     * @param commandTime Command time
+     * @return Sketch or null, if block must be scanned or Log has no metric
+     */
+    QuantileSketch quantiles(long commandTime) {
+        return quantiles != null && !isObsolete() && tombstones.isEmpty() && minTtl.get() >= commandTime
+                ? quantiles : null;
+    }
+
+    /**
+     * Take an item out of its bucket by key, see {@link #unlink(Map, LogItem)}
+     *
+     * @param bucket Bucket
+     * @param itemId Item Id
+     * @return Removed item or null, if there was nothing to remove
+     */
+    private LogItem<K, V> unlink(Map<K, LogItem<K, V>> bucket, K itemId) {
+        var item = bucket.get(itemId);
+        return item != null && unlink(bucket, item) ? item : null;
+    }
+
+    /**
+     * Item left the block by TTL
+     *
+     * @param item Expired item
+     */
+    private void expired(LogItem<K, V> item) {
+        dropped(item);
+        expiryListener.accept(item);
+    }
+
+    /**
+     * Item left the block, release whatever refers to it
+     *
+     * @param item Removed item or null, if nothing was removed
+     * @return Was anything removed
+     */
+    private boolean dropped(LogItem<K, V> item) {
+        if (item == null) return false;
+        departed = true;
+        if (labelIndex != null) labelIndex.forget(item);
+        return true;
+    }
+
     /**
      * Is block vacuumable?
      *
      * @return Block vacuum delay passed and we have next block
      */
     protected boolean isVacuumable() {
-        return System.currentTimeMillis() > this.vacuumableAfter && this.nextBlock != null;
+        return timeSource.currentTimeMillis() > this.vacuumableAfter && this.nextBlock != null;
     }
 
     /**
@@ -236,7 +476,7 @@ public class LogBlock<K, V> {
      * @return Target bucket index
      */
     int calculateBucketIndex(long registerTime) {
-        return (int) (registerTime % blockSize);
+        return (int) (registerTime - blockStart);
     }
 
     /**
@@ -262,14 +502,48 @@ public class LogBlock<K, V> {
      * @param registerTime Time at which session registered to choose proper bucket.
      * @param expiryTime   TTL, absolute time
      * @param payload      Payload
+     * @return Registered item
      */
-    protected void add(K itemId, long registerTime, long expiryTime, V payload) {
+    protected LogItem<K, V> add(K itemId, long registerTime, long expiryTime, V payload) {
+        return add(new LogItem<>(itemId, registerTime, expiryTime, payload));
+    }
+
+    /**
+     * Add a new item to the block. Item must be fresh, not registered anywhere else.
+     * <p>
+     * WARNING: LogBlock is not responsible for any SessionIndex updates.
+     *
+     * @param item New item
+     * @return The same item
+     */
+    protected LogItem<K, V> add(LogItem<K, V> item) {
         // yes, this is thread safe
-        if (!isBlockGoodFor(registerTime))
+        if (!isBlockGoodFor(item.getRegisterTime()))
             throw new IllegalStateException("Attempt to register in a wrong block!");
 
         // register session in Log
-        buckets.get(calculateBucketIndex(registerTime)).put(itemId, new LogItem<>(itemId, registerTime, expiryTime, payload));
+        if (labelIndex != null) labelIndex.add(item);
+        extendTtlBounds(item.getTtl());
+        sample(item);
+        var bucket = buckets.get(calculateBucketIndex(item.getRegisterTime()));
+        // version of the same millisecond is replaced, snapshots may still need it
+        var previous = bucket.get(item.getId());
+        if (previous != null && versions.retire(previous)) {
+            unsample(previous);
+            // it leaves the block as any removed item, its sketch share and index slot go with it
+            dropped(previous);
+        }
+        int epoch = versions.enter();
+        try {
+            item.sequence = versions.stamp();
+            bucket.put(item.getId(), item);
+        } finally {
+            versions.exit(epoch);
+        }
+        // AFTER the bucket, so seal never misses it, see sealUnsafe()
+        var filter = keyFilter;
+        if (filter != null) filter.add(item.getId());
+        return item;
     }
 
     /**
@@ -289,14 +563,80 @@ public class LogBlock<K, V> {
         // This optimization, by the way, mess up results for obsolete block
         if (isObsolete()) return true;
 
-        // I hate to do this, but if index failed for some reason, you can run wide search
+        // I hate to do this, but if index failed for some reason, you can run wide search. Filter saves the most of it
+        if (!mightContain(sessionKey)) return false;
         for (var bucket : buckets) {
-            if (bucket.remove(sessionKey) != null) return true;
+            if (dropped(unlink(bucket, sessionKey))) return true;
         }
 
         return false;
     }
 
+    /**
+     * Find item without register time, block-wide search. Same as {@link #remove(Object)}, filter says "no" for the
+     * most of the blocks, so search across the chain is cheap.
+     *
+     * @param itemId Item Id
+     * @return Item or null, if not found, expired or block obsolete
+     */
+    protected LogItem<K, V> find(K itemId) {
+        if (isObsolete() || !mightContain(itemId)) return null;
+
+        long time = timeSource.currentTimeMillis();
+        for (var bucket : buckets) {
+            var item = bucket.get(itemId);
+            if (item != null) return item.getTtl() < time || isFlushed(item, Long.MAX_VALUE) ? null : item;
+        }
+
+        return null;
+    }
+
+    /**
+     * Can block hold the key. False is for sure, true is "maybe"
+     *
+     * @param itemId Item Id
+     * @return False if block has no such key for sure
+     */
+    protected boolean mightContain(K itemId) {
+        var filter = keyFilter;
+        return filter == null || filter.mightContain(itemId);
+    }
+
+    /**
+     * Seal the block: rebuild key filter for the actual content, trim the quantile sketch. Block still accepts late
+     * items, they just make the filter a bit less precise. NOT thread-safe with itself, invoker is responsible for synchronization.
+     */
+    protected void sealUnsafe() {
+        if (sealed) return;
+        // not expected to grow anymore, sketch takes as much as it needs
+        if (quantiles != null) quantiles.compact();
+
+        var filter = keyFilter;
+        if (filter == null) return;
+
+        int count = 0;
+        for (var bucket : buckets) count += bucket.size();
+
+        // New filter answers together with the old one until it is complete. Adds write to the new one from now on,
+        // anything added before is in the buckets already, so scan catches it.
+        var compact = KeyFilter.replace(count, filter);
+        keyFilter = compact;
+        for (var bucket : buckets) {
+            for (var key : bucket.keySet()) compact.add(key);
+        }
+        compact.complete();
+        sealed = true;
+    }
+
+    /**
+     * Is block sealed
+     *
+     * @return True if key filter was rebuilt for the block content
+     */
+    protected boolean isSealed() {
+        return sealed;
+    }
+
     /**
      * Remove session from the Log by index data
      *
@@ -308,7 +648,7 @@ public class LogBlock<K, V> {
         if (isObsolete()) return false;
 
         // Buckets list and bucket's maps are initialized in constructor and MUST not be touched (replaced with null etc.)
-        return buckets.get(calculateBucketIndex(registerTime)).remove(sessionKey) != null;
+        return dropped(unlink(buckets.get(calculateBucketIndex(registerTime)), sessionKey));
     }
 
     /**
@@ -321,7 +661,7 @@ public class LogBlock<K, V> {
      *                        records A and B with the same TTL, it is possible that one will be included and another one not.
      * @param sessionIndex    SessionIndex to do clean-up
      * @return Extracted data from the block. Due to concurrency, if you have records A and B with the same TTL, it is
-     * possible that one will be included and another one not.
+     * possible that one will be included and another one not. Use {@link Snapshot} for a consistent read.
      */
     Collection<LogItem<K, V>> getAndClean(long startTimeMillis, long endTimeMillis, long commandTime, Map<K, Long> sessionIndex) {
         // Okay, okay, I totally understand "Dmitry, why you've duplicated the code?".
@@ -339,7 +679,7 @@ public class LogBlock<K, V> {
         // Command time for inclusion, system for clean-ups. Think about long commands
         // I'd like to have a fresh time on each bucket, even each item to check TTL, but perfomance.
         // Let it be, VACUUM will do the rest
-        long systemTime = System.currentTimeMillis();
+        long systemTime = timeSource.currentTimeMillis();
 
         for (int i = calculateBucketIndex(start); i <= calculateBucketIndex(end); i++) {
             // thread safe, read only
@@ -349,10 +689,11 @@ public class LogBlock<K, V> {
                 // still not deleted? Wow!
                 if (entry == null || entry.getValue() == null) continue;
 
-                if (entry.getValue().getTtl() >= commandTime) result.add(entry.getValue());
+                if (entry.getValue().getTtl() >= commandTime && !isFlushed(entry.getValue(), Long.MAX_VALUE))
+                    result.add(entry.getValue());
 
                 if (entry.getValue().getTtl() < systemTime) {
-                    bucket.remove(entry.getKey());
+                    if (unlink(bucket, entry.getValue())) expired(entry.getValue());
                     sessionIndex.remove(entry.getKey());
                 }
             }
@@ -371,7 +712,7 @@ public class LogBlock<K, V> {
      *                        guaranteed, 'cause VACUUM can run concurrently and can remove some TTLs. So, if you have
      *                        records A and B with the same TTL, it is possible that one will be included and another one not.
      * @return Extracted data from the block. Due to concurrency, if you have records A and B with the same TTL, it is
-     * possible that one will be included and another one not.
+     * possible that one will be included and another one not. Use {@link Snapshot} for a consistent read.
      */
     Collection<LogItem<K, V>> get(long startTimeMillis, long endTimeMillis, long commandTime) {
         var result = new LinkedList<LogItem<K, V>>();
@@ -392,13 +733,287 @@ public class LogBlock<K, V> {
                 // technically I must never see null entry or null value
                 if (entry == null || entry.getValue() == null) continue;
                 // still not deleted? Wow!
-                if (entry.getValue().getTtl() >= commandTime) result.add(entry.getValue());
+                if (entry.getValue().getTtl() >= commandTime && !isFlushed(entry.getValue(), Long.MAX_VALUE))
+                    result.add(entry.getValue());
             }
         }
 
         return result;
     }
 
+    /**
+     * GET with a filter evaluated in place, only matching items are copied to the result. Register time bounds of the
+     * filter narrow the buckets to walk, TTL bounds skip the block if it can't hold a matching item.
+     *
+     * @param startTimeMillis Start time (can be outside of the block range, no problem)
+     * @param endTimeMillis   End time (can be outside of the block range, no problem)
+     * @param commandTime     Command time, see {@link #get(long, long, long)}
+     * @param filter          Filter
+     * @return Extracted data from the block
+     */
+    Collection<LogItem<K, V>> get(long startTimeMillis, long endTimeMillis, long commandTime,
+                                  ItemFilter<? super K, ? super V> filter) {
+        var result = new LinkedList<LogItem<K, V>>();
+
+        long start = Math.max(blockStart, Math.max(startTimeMillis, filter.getMinRegisterTime()));
+        long end = Math.min(blockEnd, Math.min(Math.min(endTimeMillis, filter.getMaxRegisterTime()), commandTime));
+        // expired ones don't match anyway
+        if (isObsolete() || start > end || !mightHoldTtl(Math.max(commandTime, filter.getMinTtl()), filter.getMaxTtl()))
+            return result;
+
+        for (int i = calculateBucketIndex(start); i <= calculateBucketIndex(end); i++) {
+            var bucket = buckets.get(i);
+            if (bucket.isEmpty()) continue;
+            for (var item : bucket.values()) {
+                long ttl = item.getTtl();
+                if (ttl >= commandTime && filter.test(item.getId(), item.getRegisterTime(), ttl, item.getPayLoad())
+                        && !isFlushed(item, Long.MAX_VALUE)) result.add(item);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * GET with label filter. Only items which have all the labels are touched, in the order they were added.
+     *
+     * @param startTimeMillis Start time (can be outside of the block range, no problem)
+     * @param endTimeMillis   End time (can be outside of the block range, no problem)
+     * @param commandTime     Command time, see {@link #get(long, long, long)}
+     * @param labels          Label name to value, all must match, all must be indexed. Empty for no filter
+     * @return Extracted data from the block
+     */
+    Collection<LogItem<K, V>> get(long startTimeMillis, long endTimeMillis, long commandTime, Map<String, String> labels) {
+        if (labels.isEmpty()) return get(startTimeMillis, endTimeMillis, commandTime);
+        if (labelIndex == null) throw new IllegalStateException("Block has no label index!");
+
+        var result = new LinkedList<LogItem<K, V>>();
+
+        // a bit of protection
+        if (isObsolete() || startTimeMillis > endTimeMillis || startTimeMillis > blockEnd || endTimeMillis < blockStart)
+            return result;
+
+        long start = Math.max(blockStart, startTimeMillis);
+        long end = Math.min(blockEnd, Math.min(endTimeMillis, commandTime));
+
+        var ordinals = labelIndex.match(labels);
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            var item = labelIndex.get(i);
+            if (item == null || item.getRegisterTime() < start || item.getRegisterTime() > end
+                    || item.getTtl() < commandTime || isFlushed(item, Long.MAX_VALUE)) continue;
+            // slot is released after the bucket, so double check item is still there
+            if (buckets.get(calculateBucketIndex(item.getRegisterTime())).get(item.getId()) == item) result.add(item);
+        }
+
+        return result;
+    }
+
+    /**
+     * Set a new TTL of the item in place
+     *
+     * @param itemId       Item Id
+     * @param registerTime Register time from the index
+     * @param expiryTime   New TTL, absolute
+     * @return Touched item or null, if not found or expired already
+     */
+    protected LogItem<K, V> touch(K itemId, long registerTime, long expiryTime) {
+        var item = get(itemId, registerTime);
+        if (item != null) {
+            // bounds first, so a filtered GET never skips the block for the new TTL
+            extendTtlBounds(expiryTime);
+            item.touch(expiryTime);
+        }
+        return item;
+    }
+
+    private void extendTtlBounds(long ttl) {
+        // TTLs mostly grow, so the max is the one to move, and only when it really moves
+        long current = maxTtl.get();
+        while (ttl > current && !maxTtl.compareAndSet(current, ttl)) current = maxTtl.get();
+        current = minTtl.get();
+        while (ttl < current && !minTtl.compareAndSet(current, ttl)) current = minTtl.get();
+    }
+
+    /**
+     * Can the block hold an item with TTL within the bounds
+     *
+     * @param fromMillis Min TTL, inclusive
+     * @param toMillis   Max TTL, inclusive
+     * @return False if surely not, e.g. block is empty
+     */
+    boolean mightHoldTtl(long fromMillis, long toMillis) {
+        return fromMillis <= maxTtl.get() && toMillis >= minTtl.get() && fromMillis <= toMillis;
+    }
+
+    /**
+     * Paged GET. Appends items of the range to the page starting from the cursor, until the page is full or the block
+     * is over. Cursor is moved to the first item which didn't fit.
+     *
+     * @param cursor Cursor, its block MUST be this one
+     * @param page   Page to fill
+     * @param limit  Page size
+     * @return True if the block is over, false if the page is full
+     */
+    boolean page(PageCursor cursor, List<LogItem<K, V>> page, int limit) {
+        // a bit of protection
+        if (isObsolete() || cursor.startTimeMillis > cursor.endTimeMillis || cursor.startTimeMillis > blockEnd
+                || cursor.endTimeMillis < blockStart)
+            return true;
+
+        long start = Math.max(blockStart, cursor.startTimeMillis);
+        long end = Math.min(blockEnd, Math.min(cursor.endTimeMillis, cursor.commandTime));
+
+        int firstBucket = Math.max(calculateBucketIndex(start), cursor.bucketIndex);
+        for (int i = firstBucket; i <= calculateBucketIndex(end); i++) {
+            // resume position counts live items only, so cleanup of expired ones doesn't shift it
+            int skip = i == cursor.bucketIndex ? cursor.position : 0;
+            int position = 0;
+            for (var item : buckets.get(i).values()) {
+                if (item == null || item.getTtl() < cursor.commandTime || isFlushed(item, Long.MAX_VALUE)) continue;
+                if (position++ < skip) continue;
+                if (page.size() >= limit) {
+                    cursor.bucketIndex = i;
+                    cursor.position = position - 1;
+                    return false;
+                }
+                page.add(item);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Lazy GET. Same as {@link #get(long, long, long)}, but buckets are read one by one while invoker iterates, so
+     * nothing is materialized. Same consistency caveats apply, moreover, iterator sees the bucket as is at the moment
+     * it reaches it.
+     *
+     * @param startTimeMillis Start time (can be outside of the block range, no problem)
+     * @param endTimeMillis   End time (can be outside of the block range, no problem)
+     * @param commandTime     Command time, items expired before it are skipped
+     * @return Iterator over block items in range
+     */
+    Iterator<LogItem<K, V>> iterator(long startTimeMillis, long endTimeMillis, long commandTime) {
+        return iterator(startTimeMillis, endTimeMillis, commandTime, false);
+    }
+
+    /**
+     * Lazy GET in either direction, see {@link #iterator(long, long, long)}. Descending walks buckets from the newest
+     * to the oldest, items of the same millisecond come in no particular order.
+     *
+     * @param startTimeMillis Start time (can be outside of the block range, no problem)
+     * @param endTimeMillis   End time (can be outside of the block range, no problem)
+     * @param commandTime     Command time, items expired before it are skipped
+     * @param descending      Newest first
+     * @return Iterator over block items in range
+     */
+    Iterator<LogItem<K, V>> iterator(long startTimeMillis, long endTimeMillis, long commandTime, boolean descending) {
+        return iterator(startTimeMillis, endTimeMillis, commandTime, descending, Long.MAX_VALUE);
+    }
+
+    /**
+     * Lazy GET as of a version, see {@link Snapshot}. Items added after the version or removed at or before it are
+     * skipped, items removed after it are gone from the buckets and are in the version store.
+     *
+     * @param startTimeMillis Start time (can be outside of the block range, no problem)
+     * @param endTimeMillis   End time (can be outside of the block range, no problem)
+     * @param commandTime     Command time, items expired before it are skipped
+     * @param descending      Newest first
+     * @param version         Version, Long.MAX_VALUE for the latest one
+     * @return Iterator over block items in range
+     */
+    Iterator<LogItem<K, V>> iterator(long startTimeMillis, long endTimeMillis, long commandTime, boolean descending,
+                                     long version) {
+        // a bit of protection. Block dropped by FLUSH is obsolete, but snapshots before it still need the items
+        if (version == Long.MAX_VALUE && isObsolete() || startTimeMillis > endTimeMillis
+                || startTimeMillis > blockEnd || endTimeMillis < blockStart)
+            return Collections.emptyIterator();
+
+        long start = Math.max(blockStart, startTimeMillis);
+        long end = Math.min(blockEnd, Math.min(endTimeMillis, commandTime));
+
+        return new BucketIterator(calculateBucketIndex(start), calculateBucketIndex(end), commandTime, descending,
+                version);
+    }
+
+    /**
+     * Visitor walk over the range, see {@link Log#scan(long, long, ItemVisitor)}. Same filters as the iterator, but no
+     * iterator of its own and nothing per item: empty buckets are skipped, item fields go to the visitor as is.
+     *
+     * @param startTimeMillis Start time (can be outside of the block range, no problem)
+     * @param endTimeMillis   End time (can be outside of the block range, no problem)
+     * @param commandTime     Command time, items expired before it are skipped
+     * @param visitor         Visitor
+     * @return False if visitor asked to stop
+     */
+    boolean scan(long startTimeMillis, long endTimeMillis, long commandTime,
+                 ItemVisitor<? super K, ? super V> visitor) {
+        if (isObsolete() || startTimeMillis > endTimeMillis || startTimeMillis > blockEnd || endTimeMillis < blockStart)
+            return true;
+
+        int last = calculateBucketIndex(Math.min(blockEnd, Math.min(endTimeMillis, commandTime)));
+        for (int index = calculateBucketIndex(Math.max(blockStart, startTimeMillis)); index <= last; index++) {
+            var bucket = buckets.get(index);
+            if (bucket.isEmpty()) continue;
+            for (var item : bucket.values()) {
+                long ttl = item.getTtl();
+                if (ttl < commandTime || isFlushed(item, Long.MAX_VALUE)) continue;
+                if (!visitor.visit(item.getId(), item.getRegisterTime(), ttl, item.getPayLoad())) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find item version visible at a version, block-wide search, see {@link #find(Object)}
+     *
+     * @param itemId      Item Id
+     * @param commandTime Command time, expired item is not visible
+     * @param version     Version
+     * @return Item or null
+     */
+    LogItem<K, V> find(K itemId, long commandTime, long version) {
+        if (!mightContain(itemId)) return null;
+
+        for (var bucket : buckets) {
+            var item = bucket.get(itemId);
+            if (item != null && item.getTtl() >= commandTime && item.isVisibleAt(version) && !isFlushed(item, version))
+                return item;
+        }
+
+        return null;
+    }
+
+    /**
+     * Add an item to a block which is built aside and not linked yet. Item is invisible to snapshots until
+     * {@link #commitUnsafe(long)}.
+     *
+     * @param item New item
+     */
+    void addUncommitted(LogItem<K, V> item) {
+        if (!isBlockGoodFor(item.getRegisterTime()))
+            throw new IllegalStateException("Attempt to register in a wrong block!");
+
+        if (labelIndex != null) labelIndex.add(item);
+        extendTtlBounds(item.getTtl());
+        sample(item);
+        item.sequence = Long.MAX_VALUE;
+        buckets.get(calculateBucketIndex(item.getRegisterTime())).put(item.getId(), item);
+        var filter = keyFilter;
+        if (filter != null) filter.add(item.getId());
+    }
+
+    /**
+     * Stamp all uncommitted items with a sequence. NOT thread-safe, block MUST NOT be visible to writers.
+     *
+     * @param sequence Sequence, see {@link Versions#next()}
+     */
+    void commitUnsafe(long sequence) {
+        for (var bucket : buckets) {
+            for (var item : bucket.values()) if (item.sequence == Long.MAX_VALUE) item.sequence = sequence;
+        }
+    }
+
     /**
      * GET
      *
@@ -411,63 +1026,136 @@ public class LogBlock<K, V> {
         var bucket = buckets.get(calculateBucketIndex(registerTime));
         var item = bucket.get(itemId);
 
-        if (item != null && item.getTtl() < System.currentTimeMillis()) {
-            bucket.remove(itemId); // some self-cleaning, it's cheap
+        if (item != null && item.getTtl() < timeSource.currentTimeMillis()) {
+            if (unlink(bucket, item)) expired(item); // some self-cleaning, it's cheap
             item = null;
         }
 
-        return item;
+        return item == null || isFlushed(item, Long.MAX_VALUE) ? null : item;
     }
 
 
     /**
-     * FLUSH. I expect that FLUSH is a rare operation, so FLUSH actually scratches the data out from buckets and index,
-     * not just mark it for deletion. So, FLUSH is slow, but GET is fast.
+     * FLUSH. Records a range tombstone, O(1) no matter how much data is in range. Reads honor it at once, items stay
+     * in buckets and index until {@link #purgeUnsafe(Map)}, which VACUUM runs in background.
      * <p>
-     * FLUSH is trying to NOT touch the data which are in range, but arrived in parallel with FLUSH execution. Still
-     * there is a chance that we will remove something arrived in parallel with FLUSH the same millisecond.
-     * Can be mitigated by decreasing commandTime for 1ms.
+     * Tombstone hides items committed before its sequence only, so data arrived in parallel with FLUSH, even the same
+     * millisecond, survives. Nothing after command time is flushed either.
      *
-     * @param startTimeMillis    Start time (can be outside of the block range, no problem)
-     * @param endTimeMillis      End time (can be outside of the block range, no problem)
-     * @param commandTime        Command time to not flush anything which is in range, but after command time
-     * @param globalSessionIndex SessionIndex to do clean-up
+     * @param startTimeMillis Start time (can be outside of the block range, no problem)
+     * @param endTimeMillis   End time (can be outside of the block range, no problem)
+     * @param commandTime     Command time to not flush anything which is in range, but after command time
+     * @param sequence        Sequence of the FLUSH, see {@link Versions#next()}
+     * @return True if the tombstone covers the whole block
      */
-    protected void flush(long startTimeMillis, long endTimeMillis, long commandTime, Map<K, Long> globalSessionIndex) {
-        /* WARNING: If FLUSH is used more frequently, we will need obsoleteBucketsLog which will be honored by GET and
-        will be a task queue for VACUUM. */
-
+    protected boolean flush(long startTimeMillis, long endTimeMillis, long commandTime, long sequence) {
         // a bit of protection
         if (isObsolete() || startTimeMillis > endTimeMillis || startTimeMillis > blockEnd || endTimeMillis < blockStart)
-            return;
+            return false;
 
         // Fit query time frame to block time frame and limit frame my command time
         long start = Math.max(blockStart, startTimeMillis);
         // I'm NOT going to flush any records which are added AFTER flush command was issued.
         long end = Math.min(blockEnd, Math.min(endTimeMillis, commandTime));
+        if (start > end) return false;
+
+        synchronized (tombstonesMutex) {
+            var updated = new ArrayList<>(tombstones);
+            updated.add(new RangeTombstone(start, end, sequence));
+            tombstones = List.copyOf(updated);
+        }
+
+        return start == blockStart && end == blockEnd;
+    }
+
+    /**
+     * Claim a place in the purge queue of the Log. Only a block with tombstones needs it, and it needs a single one:
+     * purge takes all of its tombstones at once
+     *
+     * @return True if invoker MUST put the block to the queue, false if there is nothing to purge or it is there
+     * already
+     */
+    protected boolean queueForPurge() {
+        synchronized (tombstonesMutex) {
+            if (queuedForPurge || tombstones.isEmpty()) return false;
+            queuedForPurge = true;
+            return true;
+        }
+    }
 
-        // Reverse order is extremely important to flush the end of period ASAP to minimize loss of data which came
-        // concurrently with and after flush
-        for (int i = calculateBucketIndex(end); i >= calculateBucketIndex(start); i--) {
-            var targetBucket = buckets.get(i);
+    /**
+     * Is item hidden by a range tombstone
+     *
+     * @param item    Item
+     * @param version Version, Long.MAX_VALUE for the latest one
+     * @return True if item is flushed as of the version
+     */
+    private boolean isFlushed(LogItem<K, V> item, long version) {
+        var applied = tombstones;
+        if (applied.isEmpty()) return false;
+        for (var tombstone : applied) {
+            if (tombstone.hides(item, version)) return true;
+        }
+        return false;
+    }
 
-            // There is a chance that we will remove something arrived in parallel with FLUSH the same millisecond.
-            // If we want to avoid it, versioning must be implemented
-            for (var sessionKey : targetBucket.keySet()) {
-                globalSessionIndex.remove(sessionKey);
+    /**
+     * Physical part of FLUSH: items under range tombstones leave buckets and the index, tombstones are dropped. Removal
+     * is stamped with the tombstone sequence, so snapshots see it exactly as before the purge. NOT thread-safe with
+     * itself, invoker is responsible for synchronization.
+     * <p>
+     * Buckets are walked in reverse, as FLUSH always did, so the end of the range is released first.
+     *
+     * @param globalSessionIndex SessionIndex to do clean-up
+     * @return True if a tombstone came during the purge, block MUST stay in the purge queue for the next one
+     */
+    protected boolean purgeUnsafe(Map<K, Long> globalSessionIndex) {
+        var applied = tombstones;
+        for (var tombstone : applied) {
+            for (int i = calculateBucketIndex(tombstone.getEndTimeMillis());
+                 i >= calculateBucketIndex(tombstone.getStartTimeMillis()); i--) {
+                var bucket = buckets.get(i);
                 // Please DO NOT replace this with .clear(). Collection is live, you will have a race conditions.
-                targetBucket.remove(sessionKey);
+                for (var item : bucket.values()) {
+                    if (!tombstone.covers(item) || !versions.retire(item, tombstone.getSequence())
+                            || !bucket.remove(item.getId(), item)) continue;
+                    unsample(item);
+                    dropped(item);
+                    // index may point to a newer version already
+                    globalSessionIndex.remove(item.getId(), item.getRegisterTime());
+                }
             }
         }
+
+        // anything committed after a tombstone is not covered by it, so it has done its job
+        synchronized (tombstonesMutex) {
+            var left = new ArrayList<>(tombstones);
+            left.removeAll(applied);
+            tombstones = List.copyOf(left);
+            // FLUSH which found the block queued didn't queue it again
+            queuedForPurge = !left.isEmpty();
+            return queuedForPurge;
+        }
+    }
+
+    /**
+     * Block size, ms
+     *
+     * @return block size
+     */
+    public int getBlockSize() {
+        return blockSize;
     }
 
     /**
-     * Returns block id. Block id is generated from time in a pre-defined way
+     * Number of items in the block, live or expired but not vacuumed yet. Weakly consistent, for statistics only.
      *
-     * @return block Id
+     * @return item count
      */
-    protected long getBlockId() {
-        return blockId;
+    public int size() {
+        int size = 0;
+        for (var bucket : buckets) size += bucket.size();
+        return size;
     }
 
     /**
@@ -507,4 +1195,53 @@ public class LogBlock<K, V> {
         return registerTime >= blockStart && registerTime <= blockEnd;
     }
 
+    /**
+     * Walks buckets [first, last] of this block, either way. Buckets are never replaced, so iterator over a live
+     * bucket is safe.
+     */
+    private final class BucketIterator implements Iterator<LogItem<K, V>> {
+        private final long commandTime;
+        private final long version;
+        private final int step;
+        private int bucketIndex;
+        private int bucketsLeft;
+        private Iterator<LogItem<K, V>> bucketItems = Collections.emptyIterator();
+        private LogItem<K, V> nextItem;
+
+        private BucketIterator(int firstBucketIndex, int lastBucketIndex, long commandTime, boolean descending,
+                               long version) {
+            this.bucketIndex = descending ? lastBucketIndex : firstBucketIndex;
+            this.step = descending ? -1 : 1;
+            this.bucketsLeft = lastBucketIndex - firstBucketIndex + 1;
+            this.commandTime = commandTime;
+            this.version = version;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextItem == null) {
+                if (bucketItems.hasNext()) {
+                    var item = bucketItems.next();
+                    // still not deleted? Wow!
+                    if (item != null && item.getTtl() >= commandTime
+                            && (version == Long.MAX_VALUE || item.isVisibleAt(version))
+                            && !isFlushed(item, version)) nextItem = item;
+                } else if (bucketsLeft > 0) {
+                    // thread-safe iterator behind
+                    bucketItems = buckets.get(bucketIndex).values().iterator();
+                    bucketIndex += step;
+                    bucketsLeft--;
+                } else return false;
+            }
+            return true;
+        }
+
+        @Override
+        public LogItem<K, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            var item = nextItem;
+            nextItem = null;
+            return item;
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package com.chronondb.core.memstore;
+
+/**
+ * Event delivered to a {@link Subscriber}
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public final class LogEvent<K, V> {
+
+    /**
+     * Event type
+     */
+    public enum Type {
+        /**
+         * Item added, item is set
+         */
+        ADD,
+        /**
+         * Item removed, only item Id is set
+         */
+        REMOVE,
+        /**
+         * Item dropped by TTL, item is set
+         */
+        EXPIRE,
+        /**
+         * Range flushed, only range is set
+         */
+        FLUSH
+    }
+
+    private final Type type;
+    private final LogItem<K, V> item;
+    private final K itemId;
+    private final long startTimeMillis;
+    private final long endTimeMillis;
+
+    private LogEvent(Type type, LogItem<K, V> item, K itemId, long startTimeMillis, long endTimeMillis) {
+        this.type = type;
+        this.item = item;
+        this.itemId = itemId;
+        this.startTimeMillis = startTimeMillis;
+        this.endTimeMillis = endTimeMillis;
+    }
+
+    static <K, V> LogEvent<K, V> added(LogItem<K, V> item) {
+        return new LogEvent<>(Type.ADD, item, item.getId(), 0, 0);
+    }
+
+    static <K, V> LogEvent<K, V> removed(K itemId) {
+        return new LogEvent<>(Type.REMOVE, null, itemId, 0, 0);
+    }
+
+    static <K, V> LogEvent<K, V> expired(LogItem<K, V> item) {
+        return new LogEvent<>(Type.EXPIRE, item, item.getId(), 0, 0);
+    }
+
+    static <K, V> LogEvent<K, V> flushed(long startTimeMillis, long endTimeMillis) {
+        return new LogEvent<>(Type.FLUSH, null, null, startTimeMillis, endTimeMillis);
+    }
+
+    /**
+     * Event type
+     *
+     * @return Type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Item, for ADD and EXPIRE
+     *
+     * @return Item or null
+     */
+    public LogItem<K, V> getItem() {
+        return item;
+    }
+
+    /**
+     * Item Id, for everything but FLUSH
+     *
+     * @return Item Id or null
+     */
+    public K getItemId() {
+        return itemId;
+    }
+
+    /**
+     * Flushed range start, for FLUSH
+     *
+     * @return Start time, ms
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * Flushed range end, for FLUSH
+     *
+     * @return End time, ms
+     */
+    public long getEndTimeMillis() {
+        return endTimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.FLUSH ? type + "[" + startTimeMillis + ", " + endTimeMillis + "]" : type + " " + itemId;
+    }
+}
@@ -1,5 +1,7 @@
 package com.chronondb.core.memstore;
 
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 /**
  * Log item object
  *
@@ -7,11 +9,31 @@ package com.chronondb.core.memstore;
  * @param <V> Item payload
  */
 public class LogItem<K, V> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<LogItem> REMOVED =
+            AtomicLongFieldUpdater.newUpdater(LogItem.class, "removedSequence");
+
     private K id;
     private long registerTime;
-    private long ttl;
+    private volatile long ttl;
     private V payLoad;
 
+    /**
+     * Position in the block's label index, -1 if block has no index. Written once, before item is published
+     */
+    int ordinal = -1;
+
+    /**
+     * Version the item was added at, see {@link Snapshot}. Written before item is published, Long.MAX_VALUE while
+     * the block is built aside and not committed yet
+     */
+    long sequence;
+
+    /**
+     * Version the item was removed at, Long.MAX_VALUE while it is live
+     */
+    private volatile long removedSequence = Long.MAX_VALUE;
+
     /**
      * Constructor
      *
@@ -54,6 +76,54 @@ public class LogItem<K, V> {
         return ttl;
     }
 
+    /**
+     * Set a new TTL in place, see {@link Log#touch(Object, long)}
+     *
+     * @param ttl TTL, absolute
+     */
+    void touch(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Stamp removal version. The first remover wins, item is removed once.
+     *
+     * @param sequence Removal version
+     * @return False if item was removed already
+     */
+    @SuppressWarnings("unchecked")
+    boolean markRemoved(long sequence) {
+        return REMOVED.compareAndSet(this, Long.MAX_VALUE, sequence);
+    }
+
+    /**
+     * Is removal stamped
+     *
+     * @return True if item is removed or being removed
+     */
+    boolean isRemoved() {
+        return removedSequence != Long.MAX_VALUE;
+    }
+
+    /**
+     * Was item there at the version: added at or before it and not removed yet
+     *
+     * @param version Version, see {@link Snapshot}
+     * @return True if visible
+     */
+    boolean isVisibleAt(long version) {
+        return sequence <= version && removedSequence > version;
+    }
+
+    /**
+     * Version the item was removed at
+     *
+     * @return Removal version, Long.MAX_VALUE if item is live
+     */
+    long getRemovedSequence() {
+        return removedSequence;
+    }
+
     /**
      * Returns payload
      *
@@ -0,0 +1,59 @@
+package com.chronondb.core.memstore;
+
+/**
+ * Log operations listener, see {@link Log#addListener(LogListener)}.
+ * <p>
+ * Callbacks are invoked synchronously in the command thread right after the operation is applied, so they MUST be
+ * fast and thread-safe. Put the event to a queue and do the rest elsewhere. Callback exceptions are NOT caught, they
+ * go to the command invoker.
+ * <p>
+ * Order of events from different threads is the order of callbacks, which is not necessarily the order operations
+ * were applied to the Log.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public interface LogListener<K, V> {
+
+    /**
+     * Item added
+     *
+     * @param item Item, exactly as it was registered
+     */
+    default void onAdd(LogItem<K, V> item) {
+    }
+
+    /**
+     * Item removed by Id. Invoked only if item was known to the index
+     *
+     * @param itemId Item Id
+     */
+    default void onRemove(K itemId) {
+    }
+
+    /**
+     * Item TTL changed in place, see {@link Log#touch(Object, long)}
+     *
+     * @param item Item with the new TTL
+     */
+    default void onTouch(LogItem<K, V> item) {
+    }
+
+    /**
+     * Item dropped by TTL. Reported by whoever noticed it first, VACUUM or a read, at most once per item. Item which
+     * expired but was never touched again is not reported until VACUUM reaches its block.
+     *
+     * @param item Expired item
+     */
+    default void onExpire(LogItem<K, V> item) {
+    }
+
+    /**
+     * Range flushed
+     *
+     * @param startTimeMillis Start of the range as requested
+     * @param endTimeMillis   End of the range as requested
+     */
+    default void onFlush(long startTimeMillis, long endTimeMillis) {
+    }
+}
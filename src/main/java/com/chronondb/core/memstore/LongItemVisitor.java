@@ -0,0 +1,21 @@
+package com.chronondb.core.memstore;
+
+/**
+ * {@link ItemVisitor} for long Ids, Id is not boxed on the way, see {@link Log#scanLong(long, long, LongItemVisitor)}.
+ *
+ * @param <V> Payload type
+ */
+@FunctionalInterface
+public interface LongItemVisitor<V> {
+
+    /**
+     * Item of the range
+     *
+     * @param itemId       Item Id
+     * @param registerTime Register time, ms
+     * @param ttl          Expiration time, ms
+     * @param payload      Payload
+     * @return True to go on, false to stop the scan
+     */
+    boolean visit(long itemId, long registerTime, long ttl, V payload);
+}
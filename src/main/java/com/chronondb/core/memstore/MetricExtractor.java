@@ -0,0 +1,23 @@
+package com.chronondb.core.memstore;
+
+/**
+ * Extracts a numeric value (latency, size, price...) from the payload for per-block quantile sketches, see
+ * {@link Log#Log(com.chronondb.core.properties.LogProperties, java.util.Map, MetricExtractor)} and
+ * {@link Log#quantiles(long, long, double...)}.
+ * <p>
+ * Invoked in the command thread for every added and removed item, so it MUST be fast, side-effect free and give the
+ * same value for the same payload.
+ *
+ * @param <V> Payload type
+ */
+@FunctionalInterface
+public interface MetricExtractor<V> {
+
+    /**
+     * Extract metric value
+     *
+     * @param payload Payload, never null
+     * @return Value, NaN if item has no such metric
+     */
+    double extract(V payload);
+}
@@ -0,0 +1,48 @@
+package com.chronondb.core.memstore;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page of a range read, see {@link Log#page(long, long, int)}
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public final class Page<K, V> {
+
+    private final List<LogItem<K, V>> items;
+    private final String nextToken;
+
+    Page(List<LogItem<K, V>> items, String nextToken) {
+        this.items = items;
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * Items of the page, oldest block first
+     *
+     * @return Items, maybe empty even if there are more pages
+     */
+    public List<LogItem<K, V>> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Token to get the next page with {@link Log#page(String, int)}
+     *
+     * @return Opaque token or null, if this is the last page
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    /**
+     * Is there a next page
+     *
+     * @return True if there is a next token
+     */
+    public boolean hasMore() {
+        return nextToken != null;
+    }
+}
@@ -0,0 +1,77 @@
+package com.chronondb.core.memstore;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Position of a paged range read, see {@link Log#page(String, int)}. Travels to the client as an opaque token.
+ * <p>
+ * Token: [byte version][long start][long end][long commandTime][long blockStart][int bucketIndex][int position],
+ * Base64 URL-safe. Position is a number of live items of the bucket already returned.
+ */
+final class PageCursor {
+
+    private static final byte VERSION = 2;
+    private static final int TOKEN_SIZE = 1 + 4 * Long.BYTES + 2 * Integer.BYTES;
+
+    final long startTimeMillis;
+    final long endTimeMillis;
+    final long commandTime;
+
+    /**
+     * Start of the block to resume from, block start is the block identity
+     */
+    long blockStart;
+    /**
+     * Bucket to resume from, -1 for the first bucket of the range in the block
+     */
+    int bucketIndex = -1;
+    int position;
+
+    PageCursor(long startTimeMillis, long endTimeMillis, long commandTime, long blockStart) {
+        this.startTimeMillis = startTimeMillis;
+        this.endTimeMillis = endTimeMillis;
+        this.commandTime = commandTime;
+        this.blockStart = blockStart;
+    }
+
+    /**
+     * Move to the start of a block
+     *
+     * @param blockStart Block start
+     */
+    void moveTo(long blockStart) {
+        this.blockStart = blockStart;
+        this.bucketIndex = -1;
+        this.position = 0;
+    }
+
+    String encode() {
+        var buffer = ByteBuffer.allocate(TOKEN_SIZE)
+                .put(VERSION)
+                .putLong(startTimeMillis)
+                .putLong(endTimeMillis)
+                .putLong(commandTime)
+                .putLong(blockStart)
+                .putInt(bucketIndex)
+                .putInt(position);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    static PageCursor decode(String token) {
+        try {
+            var buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(token));
+            if (buffer.remaining() != TOKEN_SIZE || buffer.get() != VERSION)
+                throw new IllegalArgumentException("Unknown page token");
+
+            var cursor = new PageCursor(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+            cursor.bucketIndex = buffer.getInt();
+            cursor.position = buffer.getInt();
+            if (cursor.position < 0) throw new IllegalArgumentException("Broken page token");
+            return cursor;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Broken page token", e);
+        }
+    }
+}
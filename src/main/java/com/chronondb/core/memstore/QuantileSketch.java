@@ -0,0 +1,244 @@
+package com.chronondb.core.memstore;
+
+/**
+ * Mergeable quantile sketch, DDSketch style: a histogram over logarithmic bins, bin i holds values in
+ * (gamma^(i-1), gamma^i], gamma = (1 + a) / (1 - a). Any quantile it returns is within relative accuracy a of the
+ * true value, whatever the distribution is. Two sketches of the same accuracy merge by adding bin counts, and a value
+ * can be taken out the same way, so block sketch follows removals.
+ * <p>
+ * Bins are kept in two dense arrays, for positive and negative values, grown on demand. Array is capped, if values
+ * span more bins than that the lowest ones are collapsed together: small values lose accuracy, tail quantiles don't.
+ * <p>
+ * Thread-safe, a block sketch is updated by all the writers of the block.
+ */
+final class QuantileSketch {
+
+    /**
+     * Bins per sign. 2048 bins of 1% cover 18 orders of magnitude
+     */
+    static final int MAX_BINS = 2048;
+
+    private static final int INITIAL_BINS = 32;
+
+    private final double gamma;
+    private final double logGamma;
+
+    private final Bins positive = new Bins();
+    private final Bins negative = new Bins();
+    private long zeroCount;
+
+    /**
+     * @param accuracy Relative accuracy, between 0 and 1 exclusive
+     */
+    QuantileSketch(double accuracy) {
+        if (!(accuracy > 0 && accuracy < 1)) throw new IllegalArgumentException("Bad quantile accuracy: " + accuracy);
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    private double value(int index) {
+        // the point of the bin with the same relative distance to both bounds
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * Add a value, NaN and infinities are ignored
+     *
+     * @param value Value
+     */
+    void add(double value) {
+        if (!Double.isFinite(value)) return;
+        // log is the most expensive part, out of the lock
+        if (value >= Double.MIN_NORMAL) {
+            int index = index(value);
+            synchronized (this) {
+                positive.add(index, 1);
+            }
+        } else if (value <= -Double.MIN_NORMAL) {
+            int index = index(-value);
+            synchronized (this) {
+                negative.add(index, 1);
+            }
+        } else synchronized (this) {
+            zeroCount++;
+        }
+    }
+
+    /**
+     * Take a value added before out
+     *
+     * @param value Value
+     */
+    void remove(double value) {
+        if (!Double.isFinite(value)) return;
+        if (value >= Double.MIN_NORMAL) {
+            int index = index(value);
+            synchronized (this) {
+                positive.remove(index);
+            }
+        } else if (value <= -Double.MIN_NORMAL) {
+            int index = index(-value);
+            synchronized (this) {
+                negative.remove(index);
+            }
+        } else synchronized (this) {
+            if (zeroCount > 0) zeroCount--;
+        }
+    }
+
+    /**
+     * Add all the values of another sketch of the same accuracy
+     *
+     * @param other Sketch, not this one
+     */
+    void merge(QuantileSketch other) {
+        if (Double.compare(other.gamma, gamma) != 0) throw new IllegalArgumentException("Sketches of different accuracy");
+        // lock one at a time, no lock order to care about
+        long[] otherPositive;
+        long[] otherNegative;
+        int positiveOffset;
+        int negativeOffset;
+        long otherZero;
+        synchronized (other) {
+            otherPositive = other.positive.counts.clone();
+            positiveOffset = other.positive.offset;
+            otherNegative = other.negative.counts.clone();
+            negativeOffset = other.negative.offset;
+            otherZero = other.zeroCount;
+        }
+        synchronized (this) {
+            positive.addAll(otherPositive, positiveOffset);
+            negative.addAll(otherNegative, negativeOffset);
+            zeroCount += otherZero;
+        }
+    }
+
+    /**
+     * Values in the sketch
+     *
+     * @return Count
+     */
+    synchronized long count() {
+        return positive.total + negative.total + zeroCount;
+    }
+
+    /**
+     * Quantile of the values
+     *
+     * @param q Quantile, 0 for min, 0.5 for median, 1 for max
+     * @return Value within relative accuracy, NaN if sketch is empty
+     */
+    synchronized double quantile(double q) {
+        if (!(q >= 0 && q <= 1)) throw new IllegalArgumentException("Bad quantile: " + q);
+        long count = positive.total + negative.total + zeroCount;
+        if (count == 0) return Double.NaN;
+
+        long rank = (long) (q * (count - 1));
+        long seen = 0;
+        // negatives first, the largest magnitude is the smallest value
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) return -value(negative.offset + i);
+        }
+        seen += zeroCount;
+        if (seen > rank) return 0;
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) return value(positive.offset + i);
+        }
+        // not reachable, counts add up
+        return value(positive.offset + positive.counts.length - 1);
+    }
+
+    /**
+     * Trim unused bins, sketch of a sealed block is not expected to grow
+     */
+    synchronized void compact() {
+        positive.compact();
+        negative.compact();
+    }
+
+    /**
+     * Dense bins of one sign, counts[i] is bin offset + i. Guarded by the sketch
+     */
+    private static final class Bins {
+        private long[] counts = new long[0];
+        private int offset;
+        private long total;
+        /**
+         * Lowest bin after a collapse, anything below goes there
+         */
+        private int floor = Integer.MIN_VALUE;
+
+        void add(int index, long n) {
+            extend(Math.max(index, floor));
+            counts[Math.max(index, floor) - offset] += n;
+            total += n;
+        }
+
+        void remove(int index) {
+            if (counts.length == 0) return;
+            int at = Math.min(Math.max(index, floor), offset + counts.length - 1) - offset;
+            if (at < 0 || counts[at] == 0) return;
+            counts[at]--;
+            total--;
+        }
+
+        void addAll(long[] other, int otherOffset) {
+            for (int i = 0; i < other.length; i++) {
+                if (other[i] != 0) add(otherOffset + i, other[i]);
+            }
+        }
+
+        private void extend(int index) {
+            if (counts.length == 0) {
+                counts = new long[INITIAL_BINS];
+                offset = index - INITIAL_BINS / 2;
+                return;
+            }
+            int top = offset + counts.length - 1;
+            if (index >= offset && index <= top) return;
+
+            int low = Math.min(offset, index);
+            int high = Math.max(top, index);
+            int newOffset;
+            int size;
+            if (high - low + 1 > MAX_BINS) {
+                // collapse the lowest
+                size = MAX_BINS;
+                newOffset = high - MAX_BINS + 1;
+                floor = newOffset;
+            } else {
+                size = Math.min(MAX_BINS, Math.max(high - low + 1, counts.length * 2));
+                // room on the side we grow to
+                newOffset = index < offset ? high - size + 1 : low;
+            }
+
+            var grown = new long[size];
+            for (int i = 0; i < counts.length; i++) grown[Math.max(offset + i, newOffset) - newOffset] += counts[i];
+            counts = grown;
+            offset = newOffset;
+        }
+
+        void compact() {
+            int first = 0;
+            while (first < counts.length && counts[first] == 0) first++;
+            if (first == counts.length) {
+                counts = new long[0];
+                return;
+            }
+            int last = counts.length - 1;
+            while (counts[last] == 0) last--;
+            if (first == 0 && last == counts.length - 1) return;
+
+            var trimmed = new long[last - first + 1];
+            System.arraycopy(counts, first, trimmed, 0, trimmed.length);
+            counts = trimmed;
+            offset += first;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.chronondb.core.memstore;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Range query as a reactive stream, see {@link Log#publisher(long, long)}.
+ * <p>
+ * Cold publisher: every subscriber gets its own lazy walk through the chain, see {@link Log#iterator(long, long)},
+ * command time is fixed when it subscribes. Items are pulled from blocks and buckets only when subscriber requests
+ * them, so a slow sink holds the scan where it is and nothing piles up on the heap. Cancel stops the walk midway.
+ * <p>
+ * No threads of its own: items are emitted by whoever calls {@link Flow.Subscription#request(long)}, a request made
+ * from onNext doesn't go recursive, the running loop picks it up. Hand the subscriber to your executor if the sink
+ * must not run on the requesting thread.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public final class RangePublisher<K, V> implements Flow.Publisher<LogItem<K, V>> {
+
+    private final Log<K, V> log;
+    private final long startTimeMillis;
+    private final long endTimeMillis;
+
+    private RangePublisher(Log<K, V> log, long startTimeMillis, long endTimeMillis) {
+        this.log = log;
+        this.startTimeMillis = startTimeMillis;
+        this.endTimeMillis = endTimeMillis;
+    }
+
+    static <K, V> RangePublisher<K, V> create(Log<K, V> log, long startTimeMillis, long endTimeMillis) {
+        return new RangePublisher<>(log, startTimeMillis, endTimeMillis);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super LogItem<K, V>> subscriber) {
+        Objects.requireNonNull(subscriber, "Subscriber");
+        var subscription = new RangeSubscription<>(subscriber, log.iterator(startTimeMillis, endTimeMillis));
+        subscriber.onSubscribe(subscription);
+        // empty range completes without any demand
+        subscription.drain();
+    }
+
+    /**
+     * Demand-driven walk. Drain loop is entered by one thread at a time, the rest just leave a note in work counter.
+     */
+    private static final class RangeSubscription<K, V> implements Flow.Subscription {
+        private final Flow.Subscriber<? super LogItem<K, V>> subscriber;
+        private final Iterator<LogItem<K, V>> items;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile IllegalArgumentException badRequest;
+
+        private RangeSubscription(Flow.Subscriber<? super LogItem<K, V>> subscriber, Iterator<LogItem<K, V>> items) {
+            this.subscriber = subscriber;
+            this.items = items;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                // Long.MAX_VALUE is unbounded, stays so
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void drain() {
+            if (work.getAndIncrement() != 0) return;
+
+            int missed = 1;
+            do {
+                long requested = demand.get();
+                long emitted = 0;
+                while (true) {
+                    if (cancelled) return;
+                    if (badRequest != null) {
+                        fail(badRequest);
+                        return;
+                    }
+
+                    LogItem<K, V> item = null;
+                    try {
+                        if (!items.hasNext()) {
+                            cancelled = true;
+                            subscriber.onComplete();
+                            return;
+                        }
+                        if (emitted != requested) item = items.next();
+                    } catch (RuntimeException e) {
+                        fail(e);
+                        return;
+                    }
+                    if (item == null) break;
+
+                    subscriber.onNext(item);
+                    emitted++;
+                }
+                if (requested != Long.MAX_VALUE) demand.addAndGet(-emitted);
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void fail(Throwable e) {
+            cancelled = true;
+            subscriber.onError(e);
+        }
+    }
+}
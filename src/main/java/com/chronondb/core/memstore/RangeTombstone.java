@@ -0,0 +1,52 @@
+package com.chronondb.core.memstore;
+
+/**
+ * Range tombstone of a FLUSH, see {@link LogBlock#flush(long, long, long, long)}. Hides items of the time range
+ * committed before it, items which come after it stay, even of the same millisecond. Immutable.
+ */
+final class RangeTombstone {
+
+    private final long startTimeMillis;
+    private final long endTimeMillis;
+    private final long sequence;
+
+    RangeTombstone(long startTimeMillis, long endTimeMillis, long sequence) {
+        this.startTimeMillis = startTimeMillis;
+        this.endTimeMillis = endTimeMillis;
+        this.sequence = sequence;
+    }
+
+    long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    long getEndTimeMillis() {
+        return endTimeMillis;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Is item under the tombstone
+     *
+     * @param item Item
+     * @return True if item is in range and was committed before the tombstone
+     */
+    boolean covers(LogItem<?, ?> item) {
+        return item.sequence < sequence && item.getRegisterTime() >= startTimeMillis
+                && item.getRegisterTime() <= endTimeMillis;
+    }
+
+    /**
+     * Does the tombstone hide the item as of a version
+     *
+     * @param item    Item
+     * @param version Version, Long.MAX_VALUE for the latest one
+     * @return True if the tombstone is in the version and covers the item
+     */
+    boolean hides(LogItem<?, ?> item, long version) {
+        return sequence <= version && covers(item);
+    }
+}
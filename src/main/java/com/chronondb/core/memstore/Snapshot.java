@@ -0,0 +1,149 @@
+package com.chronondb.core.memstore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Point-in-time view of a Log, see {@link Log#snapshot()}.
+ * <p>
+ * Snapshot is a version of the Log's version clock and a command time. Item is visible if it was added at or before the
+ * version and was not removed at or before it. Items still in blocks are filtered by their stamps, items removed after
+ * the version are read from the version store of the Log, writers never wait for readers.
+ * <p>
+ * Not covered: TTL touch changes an item in place, so snapshot sees the latest TTL, and label queries are not
+ * supported. Thread-safe.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public final class Snapshot<K, V> implements AutoCloseable {
+
+    private static final Comparator<LogItem<?, ?>> BY_REGISTER_TIME =
+            Comparator.comparingLong(LogItem::getRegisterTime);
+
+    private final Log<K, V> log;
+    private final long version;
+    private final long time;
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    private Snapshot(Log<K, V> log) {
+        this.log = log;
+        this.version = log.versions().open();
+        // clock after the version, so nothing of the version is from the future
+        this.time = log.currentTimeMillis();
+    }
+
+    static <K, V> Snapshot<K, V> open(Log<K, V> log) {
+        return new Snapshot<>(log);
+    }
+
+    /**
+     * Version of the snapshot
+     *
+     * @return Version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Command time of the snapshot, items expired before it are not visible
+     *
+     * @return Time, ms
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Items of the range as of the snapshot, oldest first
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @return Log items
+     * @throws IllegalStateException If snapshot is closed
+     */
+    public List<LogItem<K, V>> get(long startTimeMillis, long endTimeMillis) {
+        checkOpen();
+        long end = Math.min(endTimeMillis, time);
+        var result = new ArrayList<LogItem<K, V>>();
+        if (startTimeMillis > end) return result;
+
+        // removed items which are still in blocks, they could be in the store as well
+        Set<LogItem<K, V>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<LogBlock<K, V>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        var blocks = log.blocks(startTimeMillis, end);
+        while (blocks.hasNext()) read(blocks.next(), startTimeMillis, end, visited, seen, result);
+
+        int fromChain = result.size();
+        // blocks dropped by FLUSH after the snapshot, their items are not purged yet
+        for (var block : log.flushedBlocks()) read(block, startTimeMillis, end, visited, seen, result);
+
+        for (var item : log.versions().retired()) {
+            if (item.getRegisterTime() >= startTimeMillis && item.getRegisterTime() <= end && isVisible(item)
+                    && !seen.contains(item)) result.add(item);
+        }
+        if (result.size() > fromChain) result.sort(BY_REGISTER_TIME);
+
+        return result;
+    }
+
+    private void read(LogBlock<K, V> block, long start, long end, Set<LogBlock<K, V>> visited,
+                      Set<LogItem<K, V>> seen, List<LogItem<K, V>> result) {
+        if (!visited.add(block)) return;
+        var items = block.iterator(start, end, time, false, version);
+        while (items.hasNext()) {
+            var item = items.next();
+            if (item.isRemoved()) seen.add(item);
+            result.add(item);
+        }
+    }
+
+    /**
+     * Item by id as of the snapshot, the latest version if there are many. Log index is of the latest version only,
+     * so this is a block-wide search with key filters, see {@link LogBlock#find(Object, long, long)}
+     *
+     * @param itemId Item Id
+     * @return Item or null
+     * @throws IllegalStateException If snapshot is closed
+     */
+    public LogItem<K, V> get(K itemId) {
+        checkOpen();
+        LogItem<K, V> found = null;
+        var blocks = log.blocks(Long.MIN_VALUE, time);
+        while (blocks.hasNext()) found = newest(found, blocks.next().find(itemId, time, version));
+        for (var block : log.flushedBlocks()) found = newest(found, block.find(itemId, time, version));
+
+        for (var item : log.versions().retired()) {
+            if (Objects.equals(item.getId(), itemId) && isVisible(item)) found = newest(found, item);
+        }
+
+        return found;
+    }
+
+    private static <K, V> LogItem<K, V> newest(LogItem<K, V> found, LogItem<K, V> item) {
+        return item != null && (found == null || item.getRegisterTime() > found.getRegisterTime()) ? item : found;
+    }
+
+    private boolean isVisible(LogItem<K, V> item) {
+        return item.isVisibleAt(version) && item.getTtl() >= time && item.getRegisterTime() <= time;
+    }
+
+    private void checkOpen() {
+        if (!open.get()) throw new IllegalStateException("Snapshot is closed");
+    }
+
+    /**
+     * Release the snapshot, removed items it kept are dropped
+     */
+    @Override
+    public void close() {
+        if (open.compareAndSet(true, false)) log.versions().close(version);
+    }
+}
@@ -0,0 +1,144 @@
+package com.chronondb.core.memstore;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bucket split by key hash into independent concurrent maps, see
+ * {@link com.chronondb.core.properties.LogProperties#getWriteStripes()}.
+ * <p>
+ * All writers of a millisecond come to the same bucket. With a single map they share one table, resize it together
+ * and bounce its cache lines between cores. Every stripe has its own table, so they fight N times less. Key lives in
+ * one stripe only, so get, put and remove are a single map operation as before. Iteration walks stripes one by one,
+ * weakly consistent, same as the map.
+ * <p>
+ * Stripes are created on the first write, the most of milliseconds of a block get a few items or nothing.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+final class StripedBucket<K, V> extends AbstractMap<K, V> {
+
+    private final AtomicReferenceArray<Map<K, V>> stripes;
+    private final int shift;
+
+    /**
+     * @param stripes Stripes, MUST be a power of 2, 2 at least
+     */
+    StripedBucket(int stripes) {
+        this.stripes = new AtomicReferenceArray<>(stripes);
+        this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(stripes);
+    }
+
+    /**
+     * Stripes for a setting, power of 2
+     *
+     * @param stripes Stripes from settings
+     * @return Stripes rounded up to a power of 2, 1 at least
+     */
+    static int stripes(int stripes) {
+        return stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+    }
+
+    private int index(Object key) {
+        // Fibonacci hashing, top bits: sequential ids spread evenly, map takes lower bits for its own table
+        return key.hashCode() * 0x9E3779B9 >>> shift;
+    }
+
+    private Map<K, V> stripe(Object key) {
+        return stripes.get(index(key));
+    }
+
+    private Map<K, V> stripeForWrite(Object key) {
+        int index = index(key);
+        var stripe = stripes.get(index);
+        if (stripe != null) return stripe;
+        stripes.compareAndSet(index, null, new ConcurrentHashMap<>());
+        return stripes.get(index);
+    }
+
+    @Override
+    public V get(Object key) {
+        var stripe = stripe(key);
+        return stripe == null ? null : stripe.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        var stripe = stripe(key);
+        return stripe != null && stripe.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return stripeForWrite(key).put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        var stripe = stripe(key);
+        return stripe == null ? null : stripe.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        var stripe = stripe(key);
+        return stripe != null && stripe.remove(key, value);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < stripes.length(); i++) {
+            var stripe = stripes.get(i);
+            if (stripe != null) size += stripe.size();
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new StripeIterator();
+            }
+
+            @Override
+            public int size() {
+                return StripedBucket.this.size();
+            }
+        };
+    }
+
+    /**
+     * Walk through stripes, entries of a stripe come from its own weakly consistent iterator
+     */
+    private final class StripeIterator implements Iterator<Entry<K, V>> {
+        private int index;
+        private Iterator<Entry<K, V>> entries = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!entries.hasNext()) {
+                if (index >= stripes.length()) return false;
+                var stripe = stripes.get(index++);
+                if (stripe != null) entries = stripe.entrySet().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return entries.next();
+        }
+    }
+}
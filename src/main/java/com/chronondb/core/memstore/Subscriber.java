@@ -0,0 +1,29 @@
+package com.chronondb.core.memstore;
+
+import java.util.List;
+
+/**
+ * Log subscriber, see {@link Log#subscribe}.
+ * <p>
+ * Called from the subscription's own delivery thread, never from the command thread, so it may take its time. Slow
+ * subscriber is handled by the slow consumer policy of the subscription.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public interface Subscriber<K, V> {
+
+    /**
+     * Batch of events, in the order they were captured
+     *
+     * @param events Events, never empty
+     */
+    void onEvents(List<LogEvent<K, V>> events);
+
+    /**
+     * Subscription was closed by the Log, not by the owner: slow consumer was disconnected or {@link #onEvents(List)}
+     * failed. Called once, from the thread which noticed it, could be a command thread.
+     */
+    default void onDisconnect() {
+    }
+}
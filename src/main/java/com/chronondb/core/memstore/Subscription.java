@@ -0,0 +1,181 @@
+package com.chronondb.core.memstore;
+
+import com.chronondb.core.properties.SubscriptionProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live subscription to Log changes, see {@link Log#subscribe(Subscriber, SubscriptionProperties)}.
+ * <p>
+ * Command thread only puts an event to a bounded buffer (array ring under the hood), delivery thread takes everything
+ * available up to the batch size and hands it to the subscriber. So a consumer costs O(new events), no range scans,
+ * and nothing falls between two polls at a block boundary.
+ * <p>
+ * Full buffer is handled according to {@link SubscriptionProperties#getSlowConsumerPolicy()}.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public final class Subscription<K, V> implements LogListener<K, V>, AutoCloseable {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private final Log<K, V> log;
+    private final Subscriber<K, V> subscriber;
+    private final SubscriptionProperties settings;
+    private final BlockingQueue<LogEvent<K, V>> buffer;
+    private final Thread thread;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    private Subscription(Log<K, V> log, Subscriber<K, V> subscriber, SubscriptionProperties settings) {
+        this.log = log;
+        this.subscriber = subscriber;
+        this.settings = settings;
+        this.buffer = new ArrayBlockingQueue<>(settings.getBufferSize());
+        this.thread = new Thread(this::deliveryLoop, "chronondb-subscriber-" + COUNTER.incrementAndGet());
+        this.thread.setDaemon(true);
+    }
+
+    static <K, V> Subscription<K, V> start(Log<K, V> log, Subscriber<K, V> subscriber,
+                                           SubscriptionProperties settings) {
+        var subscription = new Subscription<>(log, subscriber, settings);
+        subscription.thread.start();
+        log.addListener(subscription);
+        return subscription;
+    }
+
+    /**
+     * Is subscription still delivering
+     *
+     * @return False if closed by owner or disconnected
+     */
+    public boolean isOpen() {
+        return open.get();
+    }
+
+    /**
+     * Events handed to subscriber so far
+     *
+     * @return Events count
+     */
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    /**
+     * Events lost due to slow consumer policy
+     *
+     * @return Events count
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Events buffered and not delivered yet
+     *
+     * @return Events count
+     */
+    public int getPending() {
+        return buffer.size();
+    }
+
+    @Override
+    public void onAdd(LogItem<K, V> item) {
+        publish(LogEvent.added(item));
+    }
+
+    @Override
+    public void onRemove(K itemId) {
+        if (settings.isDeliverRemovals()) publish(LogEvent.removed(itemId));
+    }
+
+    @Override
+    public void onFlush(long startTimeMillis, long endTimeMillis) {
+        if (settings.isDeliverRemovals()) publish(LogEvent.flushed(startTimeMillis, endTimeMillis));
+    }
+
+    @Override
+    public void onExpire(LogItem<K, V> item) {
+        if (settings.isDeliverExpirations()) publish(LogEvent.expired(item));
+    }
+
+    private void publish(LogEvent<K, V> event) {
+        // fast path, the one we want all the time
+        if (!open.get() || buffer.offer(event)) return;
+
+        switch (settings.getSlowConsumerPolicy()) {
+            case DROP_NEWEST:
+                dropped.incrementAndGet();
+                break;
+            case DROP_OLDEST:
+                // delivery thread competes for the same slots, so loop until we win one
+                while (!buffer.offer(event)) {
+                    if (buffer.poll() != null) dropped.incrementAndGet();
+                }
+                break;
+            case BLOCK:
+                try {
+                    if (!buffer.offer(event, settings.getBlockTimeoutMs(), TimeUnit.MILLISECONDS)) disconnect();
+                } catch (InterruptedException e) {
+                    // writer's interruption is writer's business, keep the flag and lose the event
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                }
+                break;
+            default:
+                disconnect();
+        }
+    }
+
+    private void deliveryLoop() {
+        try {
+            while (open.get()) {
+                var first = buffer.take();
+                var batch = new ArrayList<LogEvent<K, V>>(Math.min(settings.getBatchSize(), buffer.size() + 1));
+                batch.add(first);
+                buffer.drainTo(batch, settings.getBatchSize() - 1);
+
+                subscriber.onEvents(Collections.unmodifiableList(batch));
+                delivered.addAndGet(batch.size());
+            }
+        } catch (InterruptedException ignored) {
+            // closed
+        } catch (RuntimeException e) {
+            // broken subscriber is the same as a slow one, it can't take events anymore
+            disconnect();
+        }
+    }
+
+    private void disconnect() {
+        if (shutdown()) subscriber.onDisconnect();
+    }
+
+    /**
+     * Stop delivery. Buffered events are discarded
+     */
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    private boolean shutdown() {
+        // the first one wins, it's important for disconnect notification
+        if (!open.compareAndSet(true, false)) return false;
+        log.removeListener(this);
+        thread.interrupt();
+        buffer.clear();
+        return true;
+    }
+}
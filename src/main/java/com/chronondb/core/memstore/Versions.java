@@ -0,0 +1,227 @@
+package com.chronondb.core.memstore;
+
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version clock and version store of a Log, see {@link Snapshot}.
+ * <p>
+ * Every add and every removal is stamped with a version of the clock. While a snapshot is open, a change takes a new
+ * version, so it is after the snapshot. Otherwise it is stamped with the current version as is, nobody needs anything
+ * finer, and writers don't even share a counter. Writers never wait for each other.
+ * <p>
+ * Snapshot needs everything stamped up to its version in place. Each change runs inside an epoch: it registers in a
+ * striped in-flight counter of the current epoch. Snapshot opening takes the version, flips the epoch and waits for
+ * changes of the old epoch, which are a single bucket write each, a FLUSH walk at most. Changes of the new epoch are
+ * stamped after the version anyway. So the only one who waits is the snapshot being opened, and a preempted writer
+ * holds up nothing but that.
+ * <p>
+ * Removed item goes to the version store if there is a live snapshot, otherwise it is just stamped. Store is pruned
+ * when no live snapshot needs the item anymore.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+final class Versions<K, V> {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * Current epoch, 0 or 1. Flipped by snapshot opening only, under mutex
+     */
+    private final AtomicInteger epoch = new AtomicInteger();
+
+    /**
+     * Snapshots open or being opened. Writers check it without any lock
+     */
+    private final AtomicInteger snapshots = new AtomicInteger();
+
+    /**
+     * Versions of live snapshots, version to count. Guarded by mutex, snapshots are opened rarely
+     */
+    private final TreeMap<Long, Integer> liveVersions = new TreeMap<>();
+    private final Object mutex = new Object();
+
+    private final Queue<LogItem<K, V>> retired = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Slots of the counter of changes in flight per epoch, see {@link #enter()}. Power of 2
+     */
+    private static final int SLOTS = 64;
+
+    /**
+     * Longs per slot, slot takes a cache line of its own
+     */
+    private static final int PADDING = 8;
+
+    /**
+     * Changes in flight, per epoch, a slot per thread hash. NOT a LongAdder: thread must increment and decrement the
+     * same slot, otherwise sum may miss a change in flight
+     */
+    private final AtomicLongArray inFlight = new AtomicLongArray(2 * SLOTS * PADDING);
+
+    /**
+     * Start a change. MUST be followed by {@link #exit(int)}, in finally, with nothing slow in between
+     *
+     * @return Epoch of the change, for {@link #exit(int)}
+     */
+    int enter() {
+        int slot = slot();
+        while (true) {
+            int current = epoch.get();
+            inFlight.incrementAndGet(current * SLOTS * PADDING + slot);
+            // epoch flipped in between: snapshot may have checked the old one already, go to the new one
+            if (epoch.get() == current) return current;
+            inFlight.decrementAndGet(current * SLOTS * PADDING + slot);
+        }
+    }
+
+    /**
+     * Finish a change
+     *
+     * @param epoch Epoch from {@link #enter()}
+     */
+    void exit(int epoch) {
+        inFlight.decrementAndGet(epoch * SLOTS * PADDING + slot());
+    }
+
+    /**
+     * Version of an add or removal, inside {@link #enter()}: a new one while a snapshot is open, the current one
+     * otherwise
+     *
+     * @return Version
+     */
+    long stamp() {
+        return snapshots.get() > 0 ? clock.incrementAndGet() : clock.get();
+    }
+
+    /**
+     * New version, inside {@link #enter()}. For changes which must be after everything stamped so far, e.g. range
+     * tombstones
+     *
+     * @return Version
+     */
+    long next() {
+        return clock.incrementAndGet();
+    }
+
+    private static int slot() {
+        return (int) (Thread.currentThread().getId() & (SLOTS - 1)) * PADDING;
+    }
+
+    private boolean isInFlight(int epoch) {
+        int base = epoch * SLOTS * PADDING;
+        for (int slot = 0; slot < SLOTS * PADDING; slot += PADDING) {
+            if (inFlight.get(base + slot) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Current version
+     *
+     * @return Version where everything before is stamped
+     */
+    long current() {
+        return clock.get();
+    }
+
+    /**
+     * Stamp removal of an item and keep it for live snapshots. MUST be called BEFORE item leaves its bucket, so a
+     * snapshot reader finds it in one place or another.
+     *
+     * @param item Item which is about to be removed
+     * @return False if item is removed by someone else already
+     */
+    boolean retire(LogItem<K, V> item) {
+        int epoch = enter();
+        boolean first;
+        try {
+            first = item.markRemoved(stamp());
+        } finally {
+            exit(epoch);
+        }
+        // snapshot opened after this point has a version at or after the removal, it doesn't need the item
+        if (first && snapshots.get() > 0) retired.add(item);
+        return first;
+    }
+
+    /**
+     * Same as {@link #retire(LogItem)}, but removal is stamped with a version taken already, e.g. of a range
+     * tombstone, see {@link RangeTombstone}
+     *
+     * @param item     Item which is about to be removed
+     * @param sequence Committed sequence of the removal
+     * @return False if item is removed by someone else already
+     */
+    boolean retire(LogItem<K, V> item, long sequence) {
+        boolean first = item.markRemoved(sequence);
+        if (first && snapshots.get() > 0) retired.add(item);
+        return first;
+    }
+
+    /**
+     * Register a snapshot
+     *
+     * @return Snapshot version
+     */
+    long open() {
+        synchronized (mutex) {
+            // counter goes first: change which misses it is stamped at or before the version
+            snapshots.incrementAndGet();
+            long version = clock.get();
+            // changes stamped up to the version are in the current epoch, later ones go to the new one
+            int old = epoch.get();
+            epoch.set(old ^ 1);
+            while (isInFlight(old)) Thread.yield();
+            liveVersions.merge(version, 1, Integer::sum);
+            return version;
+        }
+    }
+
+    /**
+     * Deregister a snapshot and release what nobody needs anymore
+     *
+     * @param version Snapshot version
+     */
+    void close(long version) {
+        synchronized (mutex) {
+            liveVersions.computeIfPresent(version, (key, count) -> count == 1 ? null : count - 1);
+            snapshots.decrementAndGet();
+        }
+        prune();
+    }
+
+    /**
+     * Drop retired items removed at or before the oldest live snapshot, every snapshot sees them as removed
+     */
+    void prune() {
+        long oldest;
+        synchronized (mutex) {
+            oldest = liveVersions.isEmpty() ? clock.get() : liveVersions.firstKey();
+        }
+        retired.removeIf(item -> item.getRemovedSequence() <= oldest);
+    }
+
+    /**
+     * Retired items, weakly consistent
+     *
+     * @return Retired items
+     */
+    Iterable<LogItem<K, V>> retired() {
+        return retired;
+    }
+
+    /**
+     * Retired items count, for statistics and tests
+     *
+     * @return Count
+     */
+    int retiredCount() {
+        return retired.size();
+    }
+}
@@ -0,0 +1,27 @@
+package com.chronondb.core.net;
+
+/**
+ * Binary codec for keys and payloads sent over the wire.
+ * <p>
+ * Implementation MUST be thread-safe, the same codec is used by all connections.
+ *
+ * @param <T> Value type
+ */
+public interface Codec<T> {
+
+    /**
+     * Encode value
+     *
+     * @param value Value, never null
+     * @return Bytes
+     */
+    byte[] encode(T value);
+
+    /**
+     * Decode value
+     *
+     * @param bytes Bytes, never null
+     * @return Value
+     */
+    T decode(byte[] bytes);
+}
@@ -0,0 +1,144 @@
+package com.chronondb.core.net;
+
+import com.chronondb.core.memstore.LogItem;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Growable buffer to put several frames one after another and send them with a single write. NOT thread-safe.
+ */
+final class FrameWriter {
+
+    private final int initialCapacity;
+
+    private ByteBuffer buffer;
+
+    private int frameStart = -1;
+
+    /**
+     * Create writer
+     *
+     * @param initialCapacity Initial buffer size, bytes
+     */
+    FrameWriter(int initialCapacity) {
+        this.initialCapacity = initialCapacity;
+        this.buffer = ByteBuffer.allocate(initialCapacity);
+    }
+
+    /**
+     * Start a new frame. Previous one must be ended.
+     *
+     * @param requestId Request Id
+     * @param code      Operation or status
+     * @return Instance
+     */
+    FrameWriter beginFrame(long requestId, byte code) {
+        if (frameStart >= 0) throw new IllegalStateException("Previous frame is not ended");
+        ensure(Protocol.LENGTH_SIZE + Protocol.HEADER_SIZE);
+        frameStart = buffer.position();
+        buffer.putInt(0);
+        buffer.putLong(requestId);
+        buffer.put(code);
+        return this;
+    }
+
+    /**
+     * Finish current frame, fills the length prefix
+     *
+     * @return Instance
+     */
+    FrameWriter endFrame() {
+        buffer.putInt(frameStart, buffer.position() - frameStart - Protocol.LENGTH_SIZE);
+        frameStart = -1;
+        return this;
+    }
+
+    /**
+     * Drop current frame as it never existed, if any
+     */
+    void abortFrame() {
+        if (frameStart < 0) return;
+        buffer.position(frameStart);
+        frameStart = -1;
+    }
+
+    /**
+     * Is there a frame started and not ended
+     *
+     * @return Is frame open
+     */
+    boolean isFrameOpen() {
+        return frameStart >= 0;
+    }
+
+    FrameWriter putLong(long value) {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+        return this;
+    }
+
+    FrameWriter putBytes(byte[] bytes) {
+        if (bytes == null) {
+            ensure(Integer.BYTES);
+            buffer.putInt(-1);
+            return this;
+        }
+        ensure(Integer.BYTES + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+        return this;
+    }
+
+    FrameWriter putString(String value) {
+        return putBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    <V> FrameWriter putPayload(V payload, Codec<V> payloadCodec) {
+        return putBytes(payload == null ? null : payloadCodec.encode(payload));
+    }
+
+    <K, V> FrameWriter putItem(LogItem<K, V> item, Codec<K> keyCodec, Codec<V> payloadCodec) {
+        putBytes(keyCodec.encode(item.getId()));
+        putLong(item.getRegisterTime());
+        putLong(item.getTtl());
+        return putPayload(item.getPayLoad(), payloadCodec);
+    }
+
+    /**
+     * Bytes written so far, including open frame
+     *
+     * @return Bytes written
+     */
+    int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Take all completed frames out. Open frame, if any, stays in the writer.
+     *
+     * @return Buffer ready to be written to channel
+     */
+    ByteBuffer drain() {
+        var result = buffer;
+        buffer = ByteBuffer.allocate(initialCapacity);
+
+        if (frameStart >= 0) {
+            // move open frame to the new buffer
+            int openFrameSize = result.position() - frameStart;
+            ensure(openFrameSize);
+            buffer.put(result.array(), frameStart, openFrameSize);
+            result.position(frameStart);
+            frameStart = 0;
+        }
+
+        return result.flip();
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes) return;
+        var bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        bigger.put(buffer.flip());
+        buffer = bigger;
+    }
+}
@@ -0,0 +1,585 @@
+package com.chronondb.core.net;
+
+import com.chronondb.core.AsyncItemRepository;
+import com.chronondb.core.ItemRepository;
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.exception.OverloadException;
+import com.chronondb.core.memstore.LogItem;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client for {@link LogServer}. Thread-safe, a single connection is shared by all invokers.
+ * <p>
+ * Requests are pipelined: async methods return immediately after the request is written, a reader thread completes
+ * futures as responses arrive. Sync methods are just async ones plus wait, so many threads calling sync methods also
+ * share the pipe.
+ * <p>
+ * Range results arrive as a stream of frames, {@link #iterator(long, long)} decodes them while you iterate. Until the
+ * stream is consumed, its frames wait in a buffer of {@link #STREAM_BUFFER_BYTES}. The reader thread is shared by all
+ * the requests and never waits for a range consumer: if consumer doesn't keep up and the buffer is full, this stream
+ * fails and is cancelled on server, other requests go on. Stream which is not read to the end must be closed, see
+ * {@link RangeStream}. {@link #getAsync(long, long)} collects the whole range in the reader thread instead, nobody
+ * has to wait for it.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public class LogClient<K, V> implements ItemRepository<K, V>, AsyncItemRepository<K, V>, AutoCloseable {
+
+    /**
+     * Default response timeout, ms
+     */
+    public static final long DEFAULT_TIMEOUT_MS = 30 * 1000L;
+
+    /**
+     * Range bytes buffered per stream, consumer which is that far behind loses the stream
+     */
+    public static final int STREAM_BUFFER_BYTES = 8 * 1024 * 1024;
+
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    private final SocketChannel channel;
+    private final Codec<K> keyCodec;
+    private final Codec<V> payloadCodec;
+    private final long timeoutMs;
+
+    private final Map<Long, ResponseHandler> pending = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+    private final Object writeLock = new Object();
+    private final Thread reader;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Reader thread callback, one per request
+     */
+    private interface ResponseHandler {
+        /**
+         * Response frame arrived
+         *
+         * @param status Status
+         * @param body   Frame body
+         * @return Is response complete, no more frames expected
+         */
+        boolean onFrame(byte status, ByteBuffer body);
+
+        /**
+         * Connection is broken, no more frames will arrive
+         *
+         * @param message Reason
+         */
+        void onFailure(String message);
+    }
+
+    /**
+     * Single frame response
+     */
+    private static final class Response {
+        private final byte status;
+        private final ByteBuffer body;
+
+        private Response(byte status, ByteBuffer body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private LogClient(SocketChannel channel, Codec<K> keyCodec, Codec<V> payloadCodec, long timeoutMs) {
+        this.channel = channel;
+        this.keyCodec = keyCodec;
+        this.payloadCodec = payloadCodec;
+        this.timeoutMs = timeoutMs;
+        this.reader = new Thread(this::readLoop, "chronondb-client-reader");
+        this.reader.setDaemon(true);
+    }
+
+    /**
+     * Connect to the server with default timeout
+     *
+     * @param address      Server address
+     * @param keyCodec     Item Id codec
+     * @param payloadCodec Payload codec
+     * @param <K>          Item Id type
+     * @param <V>          Payload type
+     * @return Connected client
+     * @throws IOException If can't connect
+     */
+    public static <K, V> LogClient<K, V> connect(InetSocketAddress address, Codec<K> keyCodec, Codec<V> payloadCodec)
+            throws IOException {
+        return connect(address, keyCodec, payloadCodec, DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * Connect to the server
+     *
+     * @param address      Server address
+     * @param keyCodec     Item Id codec
+     * @param payloadCodec Payload codec
+     * @param timeoutMs    How long sync methods and range streams wait for the server, ms
+     * @param <K>          Item Id type
+     * @param <V>          Payload type
+     * @return Connected client
+     * @throws IOException If can't connect
+     */
+    public static <K, V> LogClient<K, V> connect(InetSocketAddress address, Codec<K> keyCodec, Codec<V> payloadCodec,
+                                                 long timeoutMs) throws IOException {
+        var channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+        var client = new LogClient<>(channel, keyCodec, payloadCodec, timeoutMs);
+        client.reader.start();
+        return client;
+    }
+
+    /**
+     * Round trip to the server
+     *
+     * @throws DatabaseGenericException If server is not available
+     */
+    public void ping() throws DatabaseGenericException {
+        long requestId = requestIds.incrementAndGet();
+        var request = new FrameWriter(32).beginFrame(requestId, Protocol.OP_PING).endFrame();
+        await(forgetOnAbort(requestId,
+                call(requestId, request).thenApply(response -> expect(response, Protocol.ST_OK)), false));
+    }
+
+    /**
+     * Pipelined ADD
+     *
+     * @param itemId           unique key
+     * @param expiryTimeMillis absolute expiration time in milliseconds
+     * @param payload          Payload to keep
+     * @return Completes when server executed the request
+     */
+    @Override
+    public CompletableFuture<Void> addAsync(K itemId, long expiryTimeMillis, V payload) {
+        long requestId = requestIds.incrementAndGet();
+        var request = new FrameWriter(64).beginFrame(requestId, Protocol.OP_ADD)
+                .putBytes(keyCodec.encode(itemId))
+                .putLong(expiryTimeMillis)
+                .putPayload(payload, payloadCodec)
+                .endFrame();
+        return forgetOnAbort(requestId,
+                call(requestId, request).thenApply(response -> expect(response, Protocol.ST_OK)), false);
+    }
+
+    /**
+     * Pipelined REMOVE
+     *
+     * @param itemId unique key
+     * @return Completes when server executed the request
+     */
+    @Override
+    public CompletableFuture<Void> removeAsync(K itemId) {
+        long requestId = requestIds.incrementAndGet();
+        var request = new FrameWriter(32).beginFrame(requestId, Protocol.OP_REMOVE)
+                .putBytes(keyCodec.encode(itemId))
+                .endFrame();
+        return forgetOnAbort(requestId,
+                call(requestId, request).thenApply(response -> expect(response, Protocol.ST_OK)), false);
+    }
+
+    /**
+     * Pipelined GET by Id
+     *
+     * @param itemId Item Id
+     * @return Log item or null, if not found
+     */
+    @Override
+    public CompletableFuture<LogItem<K, V>> getAsync(K itemId) {
+        long requestId = requestIds.incrementAndGet();
+        var request = new FrameWriter(32).beginFrame(requestId, Protocol.OP_GET)
+                .putBytes(keyCodec.encode(itemId))
+                .endFrame();
+        return forgetOnAbort(requestId, call(requestId, request).thenApply(response -> {
+            if (response.status == Protocol.ST_NOT_FOUND) return null;
+            expect(response, Protocol.ST_ITEM);
+            return Protocol.getItem(response.body, keyCodec, payloadCodec);
+        }), false);
+    }
+
+    /**
+     * Pipelined range, items are collected as frames arrive and the future completes on the end of the stream
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @return Log items
+     */
+    @Override
+    public CompletableFuture<Collection<LogItem<K, V>>> getAsync(long startTimeMillis, long endTimeMillis) {
+        long requestId = requestIds.incrementAndGet();
+        var request = new FrameWriter(32).beginFrame(requestId, Protocol.OP_RANGE)
+                .putLong(startTimeMillis)
+                .putLong(endTimeMillis)
+                .endFrame();
+
+        var future = new CompletableFuture<Collection<LogItem<K, V>>>();
+        var items = new LinkedList<LogItem<K, V>>();
+        pending.put(requestId, new ResponseHandler() {
+            @Override
+            public boolean onFrame(byte status, ByteBuffer body) {
+                if (status == Protocol.ST_ITEMS) {
+                    while (body.hasRemaining()) items.add(Protocol.getItem(body, keyCodec, payloadCodec));
+                    return false;
+                }
+                if (status == Protocol.ST_END) {
+                    future.complete(items);
+                } else {
+                    try {
+                        expect(new Response(status, body), Protocol.ST_END);
+                    } catch (CompletionException e) {
+                        future.completeExceptionally(e.getCause());
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void onFailure(String message) {
+                future.completeExceptionally(new DatabaseGenericException(message));
+            }
+        });
+
+        try {
+            send(request);
+        } catch (IOException e) {
+            pending.remove(requestId);
+            future.completeExceptionally(new DatabaseGenericException("Can't send request: " + e.getMessage()));
+        }
+        return forgetOnAbort(requestId, future, true);
+    }
+
+    /**
+     * Pipelined FLUSH
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @return Completes when server executed the request
+     */
+    @Override
+    public CompletableFuture<Void> flushAsync(long startTimeMillis, long endTimeMillis) {
+        long requestId = requestIds.incrementAndGet();
+        var request = new FrameWriter(32).beginFrame(requestId, Protocol.OP_FLUSH)
+                .putLong(startTimeMillis)
+                .putLong(endTimeMillis)
+                .endFrame();
+        return forgetOnAbort(requestId,
+                call(requestId, request).thenApply(response -> expect(response, Protocol.ST_OK)), false);
+    }
+
+    @Override
+    public void add(K itemId, long expiryTimeMillis, V payload) throws DatabaseGenericException {
+        await(addAsync(itemId, expiryTimeMillis, payload));
+    }
+
+    @Override
+    public void remove(K itemId) throws DatabaseGenericException {
+        await(removeAsync(itemId));
+    }
+
+    @Override
+    public LogItem<K, V> get(K itemId) throws DatabaseGenericException {
+        return await(getAsync(itemId));
+    }
+
+    @Override
+    public void flush(long startTimeMillis, long endTimeMillis) throws DatabaseGenericException {
+        await(flushAsync(startTimeMillis, endTimeMillis));
+    }
+
+    @Override
+    public Collection<LogItem<K, V>> get(long startTimeMillis, long endTimeMillis) throws DatabaseGenericException {
+        var result = new LinkedList<LogItem<K, V>>();
+        var stream = iterator(startTimeMillis, endTimeMillis);
+        try {
+            stream.forEachRemaining(result::add);
+        } catch (IllegalStateException e) {
+            throw new DatabaseGenericException(e.getMessage());
+        } finally {
+            stream.close();
+        }
+        return result;
+    }
+
+    /**
+     * Streamed range. Items are decoded while you iterate, frames arrive in background. Close the stream if you don't
+     * read it to the end.
+     * <p>
+     * If the stream breaks in the middle (server error, timeout, connection loss, consumer too slow), iterator throws
+     * {@link IllegalStateException}.
+     *
+     * @param startTimeMillis start of the time range in milliseconds
+     * @param endTimeMillis   end of the time range in milliseconds
+     * @return Lazy iterator
+     * @throws DatabaseGenericException If request can't be sent
+     */
+    @Override
+    public RangeStream<K, V> iterator(long startTimeMillis, long endTimeMillis) throws DatabaseGenericException {
+        long requestId = requestIds.incrementAndGet();
+        var request = new FrameWriter(32).beginFrame(requestId, Protocol.OP_RANGE)
+                .putLong(startTimeMillis)
+                .putLong(endTimeMillis)
+                .endFrame();
+
+        var stream = new Stream(requestId);
+        pending.put(requestId, stream);
+        try {
+            send(request);
+        } catch (IOException e) {
+            pending.remove(requestId);
+            throw new DatabaseGenericException("Can't send request: " + e.getMessage());
+        }
+        return stream;
+    }
+
+    private CompletableFuture<Response> call(long requestId, FrameWriter request) {
+        var future = new CompletableFuture<Response>();
+        pending.put(requestId, new ResponseHandler() {
+            @Override
+            public boolean onFrame(byte status, ByteBuffer body) {
+                future.complete(new Response(status, body));
+                return true;
+            }
+
+            @Override
+            public void onFailure(String message) {
+                future.completeExceptionally(new DatabaseGenericException(message));
+            }
+        });
+
+        try {
+            send(request);
+        } catch (IOException e) {
+            pending.remove(requestId);
+            future.completeExceptionally(new DatabaseGenericException("Can't send request: " + e.getMessage()));
+        }
+        return future;
+    }
+
+    /**
+     * Forget the request once its future is cancelled or timed out by invoker, e.g. by a sync method or
+     * {@link CompletableFuture#orTimeout}. Otherwise it stays pending until the server answers, and the answer goes
+     * to nobody
+     *
+     * @param range Cancel the rest of the range on server as well
+     */
+    private <T> CompletableFuture<T> forgetOnAbort(long requestId, CompletableFuture<T> future, boolean range) {
+        future.whenComplete((result, error) -> {
+            boolean aborted = error instanceof CancellationException || error instanceof TimeoutException;
+            if (aborted && pending.remove(requestId) != null && range) cancel(requestId);
+        });
+        return future;
+    }
+
+    /**
+     * Tell server the rest of the range is not needed. Fire and forget, there is no answer
+     */
+    private void cancel(long requestId) {
+        try {
+            send(new FrameWriter(16).beginFrame(requestId, Protocol.OP_CANCEL).endFrame());
+        } catch (IOException ignored) {
+            // connection is gone, and the range with it
+        }
+    }
+
+    private void send(FrameWriter request) throws IOException {
+        if (closed) throw new IOException("Client is closed");
+        var buffer = request.drain();
+        synchronized (writeLock) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    /**
+     * Check response status, turn errors into exceptions for futures
+     */
+    private static <T> T expect(Response response, byte status) {
+        if (response.status == status) return null;
+
+        var message = response.status == Protocol.ST_ERROR || response.status == Protocol.ST_OVERLOAD
+                ? Protocol.getString(response.body)
+                : "Unexpected response status " + response.status;
+
+        throw new CompletionException(response.status == Protocol.ST_OVERLOAD
+                ? new OverloadException(message)
+                : new DatabaseGenericException(message));
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws DatabaseGenericException {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseGenericException("Command Thread interrupted!");
+        } catch (TimeoutException e) {
+            // the answer goes to nobody now, see forgetOnAbort()
+            future.cancel(false);
+            throw new OverloadException("Timeout waiting for the server");
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof DatabaseGenericException) throw (DatabaseGenericException) cause;
+            throw new DatabaseGenericException(String.valueOf(cause));
+        }
+    }
+
+    private void readLoop() {
+        var lengthBuffer = ByteBuffer.allocate(Protocol.LENGTH_SIZE);
+        String reason = "Connection closed";
+        try {
+            while (!closed) {
+                readFully(lengthBuffer.clear());
+                var frame = ByteBuffer.allocate(lengthBuffer.flip().getInt());
+                readFully(frame);
+                frame.flip();
+
+                long requestId = frame.getLong();
+                byte status = frame.get();
+                var handler = pending.get(requestId);
+                if (handler != null && handler.onFrame(status, frame.slice())) pending.remove(requestId);
+            }
+        } catch (IOException | RuntimeException e) {
+            // runtime ones are a bad length prefix or a frame handler can't decode, the stream is out of sync
+            reason = "Connection broken: " + e.getMessage();
+        } finally {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // it is broken anyway
+            }
+            for (var requestId : pending.keySet()) {
+                var handler = pending.remove(requestId);
+                if (handler != null) handler.onFailure(reason);
+            }
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException("Server closed connection");
+        }
+    }
+
+    /**
+     * Close connection. Pending requests fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            channel.close();
+            reader.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ignored) {
+            // we are closing anyway
+        }
+    }
+
+    /**
+     * Range stream, both reader callback and consumer iterator
+     */
+    private final class Stream implements ResponseHandler, RangeStream<K, V> {
+        private final long requestId;
+        private final BlockingQueue<ByteBuffer> frames = new LinkedBlockingQueue<>();
+        private final AtomicLong bufferedBytes = new AtomicLong();
+        private volatile String failure;
+        private ByteBuffer current = END_OF_STREAM;
+        private boolean finished = false;
+
+        private Stream(long requestId) {
+            this.requestId = requestId;
+        }
+
+        @Override
+        public boolean onFrame(byte status, ByteBuffer body) {
+            if (status == Protocol.ST_ITEMS) {
+                // reader thread serves the whole connection, it never waits for a consumer
+                if (bufferedBytes.addAndGet(body.remaining()) <= STREAM_BUFFER_BYTES) {
+                    frames.add(body);
+                    return false;
+                }
+                cancel(requestId);
+                onFailure("Range consumer is too slow, stream dropped");
+                return true;
+            }
+
+            if (status != Protocol.ST_END) {
+                failure = status == Protocol.ST_ERROR || status == Protocol.ST_OVERLOAD
+                        ? Protocol.getString(body)
+                        : "Unexpected response status " + status;
+            }
+            frames.add(END_OF_STREAM);
+            return true;
+        }
+
+        @Override
+        public void onFailure(String message) {
+            failure = message;
+            // consumer will not get the rest anyway
+            frames.clear();
+            frames.add(END_OF_STREAM);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasRemaining()) {
+                if (finished) return false;
+                try {
+                    var frame = frames.poll(timeoutMs, TimeUnit.MILLISECONDS);
+                    if (frame == null) {
+                        // nobody is going to read the rest
+                        finished = true;
+                        if (pending.remove(requestId) != null) cancel(requestId);
+                        throw new IllegalStateException("Timeout waiting for range frame");
+                    }
+                    if (frame == END_OF_STREAM) {
+                        finished = true;
+                        if (failure != null) throw new IllegalStateException(failure);
+                        return false;
+                    }
+                    bufferedBytes.addAndGet(-frame.remaining());
+                    current = frame;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for range frame", e);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public LogItem<K, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return Protocol.getItem(current, keyCodec, payloadCodec);
+        }
+
+        @Override
+        public void close() {
+            if (finished) return;
+            finished = true;
+            current = END_OF_STREAM;
+            // still pending means server is still sending
+            if (pending.remove(requestId) != null) cancel(requestId);
+            frames.clear();
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.chronondb.core.net;
+
+import com.chronondb.core.ItemRepository;
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.exception.OverloadException;
+import com.chronondb.core.http.HttpQueryServer;
+import com.chronondb.core.http.TextCodecs;
+import com.chronondb.core.memstore.Log;
+import com.chronondb.core.properties.DefaultLogProperties;
+import com.chronondb.core.properties.DefaultServerProperties;
+import com.chronondb.core.properties.ServerProperties;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-alone server, exposes {@link ItemRepository} over binary TCP protocol, see {@link Protocol}.
+ * <p>
+ * One selector thread accepts connections and reads requests, a fixed pool of workers executes them. Requests of a
+ * single connection are executed in order, responses are batched, range results are streamed in frames straight from
+ * the block walk.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public class LogServer<K, V> implements AutoCloseable {
+
+    private final ItemRepository<K, V> repository;
+    private final Codec<K> keyCodec;
+    private final Codec<V> payloadCodec;
+    private final ServerProperties settings;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Thread selectorThread;
+
+    private volatile boolean running = true;
+
+    private LogServer(ItemRepository<K, V> repository, Codec<K> keyCodec, Codec<V> payloadCodec,
+                      ServerProperties settings) throws IOException {
+        this.repository = repository;
+        this.keyCodec = keyCodec;
+        this.payloadCodec = payloadCodec;
+        this.settings = settings;
+
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        var address = settings.getBindAddress() == null || settings.getBindAddress().isEmpty()
+                ? new InetSocketAddress(settings.getPort())
+                : new InetSocketAddress(settings.getBindAddress(), settings.getPort());
+        this.serverChannel.bind(address);
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        this.workers = Executors.newFixedThreadPool(settings.getWorkerThreads(), daemonThreads("chronondb-worker-"));
+        this.selectorThread = new Thread(this::selectorLoop, "chronondb-selector");
+        this.selectorThread.setDaemon(true);
+    }
+
+    /**
+     * Start the server
+     *
+     * @param repository   Repository to serve
+     * @param keyCodec     Item Id codec
+     * @param payloadCodec Payload codec
+     * @param settings     Settings, see type for details
+     * @param <K>          Item Id type
+     * @param <V>          Payload type
+     * @return Running server
+     * @throws IOException If can't bind
+     */
+    public static <K, V> LogServer<K, V> start(ItemRepository<K, V> repository, Codec<K> keyCodec,
+                                               Codec<V> payloadCodec, ServerProperties settings) throws IOException {
+        var server = new LogServer<>(repository, keyCodec, payloadCodec, settings);
+        server.selectorThread.start();
+        return server;
+    }
+
+    /**
+     * Actual bound port, useful with ephemeral port
+     *
+     * @return TCP port
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void selectorLoop() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException | ClosedSelectorException e) {
+                // selector itself is broken or closed, nothing we can do
+                running = false;
+                return;
+            }
+            var keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                var key = keys.next();
+                keys.remove();
+                if (key.attachment() instanceof ServerConnection)
+                    handleKey(key, (ServerConnection) key.attachment());
+                else if (key.isValid() && key.isAcceptable())
+                    accept();
+            }
+        }
+    }
+
+    private static void handleKey(SelectionKey key, ServerConnection connection) {
+        try {
+            if (key.isValid() && key.isReadable()) connection.onReadable();
+            if (key.isValid() && key.isWritable()) connection.onWritable();
+        } catch (IOException | RuntimeException e) {
+            // one broken client must not affect others. Includes the key cancelled by a worker after the check above
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel = null;
+        try {
+            channel = serverChannel.accept();
+            if (channel == null) return;
+
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            var key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new ServerConnection(channel, key, this::handle, workers,
+                    settings.getMaxFrameSize(), settings.getMaxPendingOutputBytes(), settings.getWriteTimeoutMs()));
+        } catch (IOException e) {
+            // e.g. out of file descriptors: this client is refused, the server goes on
+            if (channel != null) closeQuietly(channel);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // refused anyway
+        }
+    }
+
+    /**
+     * Worker: execute a single request
+     */
+    private void handle(ByteBuffer request, FrameWriter out, ServerConnection connection) throws IOException {
+        long requestId = request.getLong();
+        byte operation = request.get();
+
+        try {
+            switch (operation) {
+                case Protocol.OP_PING:
+                    out.beginFrame(requestId, Protocol.ST_OK).endFrame();
+                    break;
+                case Protocol.OP_ADD:
+                    K addKey = Protocol.getKey(request, keyCodec);
+                    long ttl = request.getLong();
+                    repository.add(addKey, ttl, Protocol.getPayload(request, payloadCodec));
+                    out.beginFrame(requestId, Protocol.ST_OK).endFrame();
+                    break;
+                case Protocol.OP_REMOVE:
+                    repository.remove(Protocol.getKey(request, keyCodec));
+                    out.beginFrame(requestId, Protocol.ST_OK).endFrame();
+                    break;
+                case Protocol.OP_GET:
+                    var item = repository.get(Protocol.getKey(request, keyCodec));
+                    if (item == null) out.beginFrame(requestId, Protocol.ST_NOT_FOUND).endFrame();
+                    else out.beginFrame(requestId, Protocol.ST_ITEM).putItem(item, keyCodec, payloadCodec).endFrame();
+                    break;
+                case Protocol.OP_RANGE:
+                    streamRange(requestId, request.getLong(), request.getLong(), out, connection);
+                    break;
+                case Protocol.OP_FLUSH:
+                    repository.flush(request.getLong(), request.getLong());
+                    out.beginFrame(requestId, Protocol.ST_OK).endFrame();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operation " + operation);
+            }
+        } catch (OverloadException e) {
+            out.abortFrame();
+            out.beginFrame(requestId, Protocol.ST_OVERLOAD).putString(e.getMessage()).endFrame();
+        } catch (DatabaseGenericException | RuntimeException e) {
+            // includes malformed requests, client must know what happened
+            out.abortFrame();
+            out.beginFrame(requestId, Protocol.ST_ERROR).putString(String.valueOf(e.getMessage())).endFrame();
+        }
+    }
+
+    /**
+     * Stream range as a series of frames. Items are taken from the block walk one by one, so only a batch of frames
+     * lives in memory, and a slow reader pauses the walk, see {@link ServerConnection#write(FrameWriter)}. Range
+     * cancelled by client stops at the next frame, without the end frame, nobody waits for it
+     */
+    private void streamRange(long requestId, long start, long end, FrameWriter out, ServerConnection connection)
+            throws DatabaseGenericException, IOException {
+        var items = repository.iterator(start, end);
+        try {
+            int frameSize = settings.getRangeFrameSize();
+            int inFrame = 0;
+
+            while (items.hasNext()) {
+                if (inFrame == 0) {
+                    if (connection.isCancelled(requestId)) return;
+                    out.beginFrame(requestId, Protocol.ST_ITEMS);
+                }
+                out.putItem(items.next(), keyCodec, payloadCodec);
+
+                if (++inFrame == frameSize) {
+                    out.endFrame();
+                    inFrame = 0;
+                    if (out.size() >= ServerConnection.BATCH_BYTES) connection.write(out);
+                }
+            }
+
+            if (inFrame > 0) out.endFrame();
+            out.beginFrame(requestId, Protocol.ST_END).endFrame();
+        } finally {
+            connection.endStream(requestId);
+            // served repository may be remote itself
+            if (items instanceof RangeStream) ((RangeStream<?, ?>) items).close();
+        }
+    }
+
+    /**
+     * Stop accepting connections and executing requests. Repository is not touched, it is yours.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        workers.shutdownNow();
+        try {
+            selectorThread.join(1000);
+            for (var key : selector.keys()) {
+                if (key.attachment() instanceof ServerConnection) ((ServerConnection) key.attachment()).close();
+            }
+            selector.close();
+            serverChannel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ignored) {
+            // we are closing anyway
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Run stand-alone server with String Ids and String payloads.
+     * <p>
+     * Usage: {@code LogServer [port] [blockSizeMs] [httpPort]}, HTTP front end is started only if port is given
+     *
+     * @param args Command line arguments
+     * @throws IOException          If can't bind
+     * @throws InterruptedException If interrupted while serving
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var serverSettings = new DefaultServerProperties();
+        if (args.length > 0) serverSettings.setPort(Integer.parseInt(args[0]));
+
+        var logSettings = new DefaultLogProperties();
+        if (args.length > 1) logSettings.setBlockSize(Integer.parseInt(args[1]));
+
+        var log = new Log<String, String>(logSettings);
+        var server = LogServer.start(log, Codecs.STRING, Codecs.STRING, serverSettings);
+        var http = args.length > 2
+                ? HttpQueryServer.start(log, TextCodecs.STRING, TextCodecs.STRING,
+                new DefaultServerProperties().setPort(Integer.parseInt(args[2])))
+                : null;
+
+        ScheduledExecutorService vacuum = Executors.newSingleThreadScheduledExecutor(daemonThreads("chronondb-vacuum-"));
+        if (serverSettings.getVacuumPeriodMs() > 0) {
+            vacuum.scheduleWithFixedDelay(log::vacuum, serverSettings.getVacuumPeriodMs(),
+                    serverSettings.getVacuumPeriodMs(), TimeUnit.MILLISECONDS);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            vacuum.shutdownNow();
+            if (http != null) http.close();
+            server.close();
+        }));
+
+        System.out.println("ChrononDB is listening on port " + server.getPort());
+        if (http != null) System.out.println("ChrononDB HTTP is listening on port " + http.getPort());
+
+        // all server threads are daemons, so hold the JVM here
+        server.selectorThread.join();
+    }
+}
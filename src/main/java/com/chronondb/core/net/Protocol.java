@@ -0,0 +1,123 @@
+package com.chronondb.core.net;
+
+import com.chronondb.core.memstore.LogItem;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire protocol. Everything is a frame:
+ * <pre>
+ * [int length][long requestId][byte code][body]
+ * </pre>
+ * where length covers everything after itself. Request code is an operation, response code is a status.
+ * <p>
+ * Requests are pipelined: client may send as many requests as it wants without waiting for responses. Server executes
+ * requests of a connection strictly in order and answers with the same request Id. Range answer is a series of
+ * {@link #ST_ITEMS} frames terminated by {@link #ST_END} or {@link #ST_ERROR}, all other answers are a single frame.
+ * <p>
+ * {@link #OP_CANCEL} with the request Id of a range stops the range at the next frame. It is the only request which
+ * is not executed in order, it would wait for the very range otherwise, and it has no answer. Frames sent before the
+ * server noticed it still arrive, client ignores them.
+ * <p>
+ * Bytes are length-prefixed, -1 length is null. Item is [bytes id][long registerTime][long ttl][bytes payload].
+ */
+final class Protocol {
+
+    /**
+     * Frame length prefix
+     */
+    static final int LENGTH_SIZE = Integer.BYTES;
+
+    /**
+     * Request Id and code, minimal frame length
+     */
+    static final int HEADER_SIZE = Long.BYTES + 1;
+
+    static final byte OP_PING = 0;
+    static final byte OP_ADD = 1;
+    static final byte OP_REMOVE = 2;
+    static final byte OP_GET = 3;
+    static final byte OP_RANGE = 4;
+    static final byte OP_FLUSH = 5;
+    static final byte OP_CANCEL = 6;
+
+    static final byte ST_OK = 0;
+    static final byte ST_ITEM = 1;
+    static final byte ST_NOT_FOUND = 2;
+    static final byte ST_ITEMS = 3;
+    static final byte ST_END = 4;
+    static final byte ST_ERROR = 5;
+    static final byte ST_OVERLOAD = 6;
+
+    private Protocol() {
+    }
+
+    /**
+     * Read bytes of a known length
+     *
+     * @param buffer Source
+     * @param length Length, read from the length prefix
+     * @return Bytes
+     */
+    private static byte[] getBytes(ByteBuffer buffer, int length) {
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read length-prefixed UTF-8 string
+     *
+     * @param buffer Source
+     * @return String or null
+     */
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        return length < 0 ? null : new String(getBytes(buffer, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read key, key is mandatory
+     *
+     * @param buffer   Source
+     * @param keyCodec Key codec
+     * @param <K>      Key type
+     * @return Key
+     */
+    static <K> K getKey(ByteBuffer buffer, Codec<K> keyCodec) {
+        int length = buffer.getInt();
+        if (length < 0) throw new IllegalArgumentException("Item Id is mandatory");
+        return keyCodec.decode(getBytes(buffer, length));
+    }
+
+    /**
+     * Read nullable payload
+     *
+     * @param buffer       Source
+     * @param payloadCodec Payload codec
+     * @param <V>          Payload type
+     * @return Payload or null
+     */
+    static <V> V getPayload(ByteBuffer buffer, Codec<V> payloadCodec) {
+        int length = buffer.getInt();
+        return length < 0 ? null : payloadCodec.decode(getBytes(buffer, length));
+    }
+
+    /**
+     * Read item
+     *
+     * @param buffer       Source
+     * @param keyCodec     Key codec
+     * @param payloadCodec Payload codec
+     * @param <K>          Key type
+     * @param <V>          Payload type
+     * @return Item
+     */
+    static <K, V> LogItem<K, V> getItem(ByteBuffer buffer, Codec<K> keyCodec, Codec<V> payloadCodec) {
+        K key = getKey(buffer, keyCodec);
+        long registerTime = buffer.getLong();
+        long ttl = buffer.getLong();
+        return new LogItem<>(key, registerTime, ttl, getPayload(buffer, payloadCodec));
+    }
+}
@@ -0,0 +1,24 @@
+package com.chronondb.core.net;
+
+import com.chronondb.core.memstore.LogItem;
+
+import java.util.Iterator;
+
+/**
+ * Range streamed from a server, see {@link LogClient#iterator(long, long)}. Items are decoded while you iterate,
+ * frames arrive in background.
+ * <p>
+ * Stream which is not read to the end MUST be closed: close cancels the rest of it on the server and drops frames
+ * buffered so far. Closing a finished stream does nothing.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public interface RangeStream<K, V> extends Iterator<LogItem<K, V>>, AutoCloseable {
+
+    /**
+     * Cancel the rest of the stream, idempotent
+     */
+    @Override
+    void close();
+}
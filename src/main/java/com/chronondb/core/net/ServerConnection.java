@@ -0,0 +1,305 @@
+package com.chronondb.core.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server side of a single client connection.
+ * <p>
+ * Selector thread reads and splits frames, worker executes them. Only one worker at a time serves a connection, so
+ * pipelined requests are executed strictly in order. Worker drains everything arrived so far and answers with a
+ * batched write.
+ */
+final class ServerConnection {
+
+    /**
+     * Request executor, see {@link LogServer}
+     */
+    interface RequestHandler {
+        /**
+         * Execute the request and put answer frames into output
+         *
+         * @param request    Request frame without length prefix
+         * @param output     Output to put response frames
+         * @param connection Connection, to flush output while streaming
+         * @throws IOException If connection is broken
+         */
+        void handle(ByteBuffer request, FrameWriter output, ServerConnection connection) throws IOException;
+    }
+
+    /**
+     * Flush batched responses when this size is reached
+     */
+    static final int BATCH_BYTES = 64 * 1024;
+
+    /**
+     * Stop reading from the socket when so many requests are waiting for execution
+     */
+    private static final int MAX_QUEUED_REQUESTS = 4096;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final RequestHandler handler;
+    private final Executor executor;
+    private final int maxFrameSize;
+    private final int maxPendingOutputBytes;
+    private final long writeTimeoutMs;
+
+    private ByteBuffer input = ByteBuffer.allocate(BATCH_BYTES);
+
+    private final Queue<ByteBuffer> requests = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedRequests = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Ranges cancelled by client, see {@link Protocol#OP_CANCEL}
+     */
+    private final Set<Long> cancelled = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Output queue, guarded by itself
+     */
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+    private long pendingOutputBytes = 0;
+    private long lastProgressMs = 0;
+
+    private boolean readPaused = false;
+    private boolean writePending = false;
+
+    private volatile boolean closed = false;
+
+    ServerConnection(SocketChannel channel, SelectionKey key, RequestHandler handler, Executor executor,
+                     int maxFrameSize, int maxPendingOutputBytes, long writeTimeoutMs) {
+        this.channel = channel;
+        this.key = key;
+        this.handler = handler;
+        this.executor = executor;
+        this.maxFrameSize = maxFrameSize;
+        this.maxPendingOutputBytes = maxPendingOutputBytes;
+        this.writeTimeoutMs = writeTimeoutMs;
+    }
+
+    /**
+     * Selector thread: socket is readable
+     *
+     * @throws IOException On broken connection or protocol violation
+     */
+    void onReadable() throws IOException {
+        if (channel.read(input) < 0) {
+            close();
+            return;
+        }
+
+        input.flip();
+        boolean received = false;
+
+        while (input.remaining() >= Protocol.LENGTH_SIZE) {
+            int length = input.getInt(input.position());
+            if (length < Protocol.HEADER_SIZE || length > maxFrameSize)
+                throw new IOException("Protocol violation, frame size " + length);
+
+            if (input.remaining() < Protocol.LENGTH_SIZE + length) {
+                // frame doesn't fit, give it more space
+                if (input.capacity() < Protocol.LENGTH_SIZE + length) {
+                    var bigger = ByteBuffer.allocate(Protocol.LENGTH_SIZE + length);
+                    bigger.put(input);
+                    input = bigger.flip();
+                }
+                break;
+            }
+
+            input.position(input.position() + Protocol.LENGTH_SIZE);
+            var request = ByteBuffer.allocate(length);
+            request.put(input.slice().limit(length)).flip();
+            input.position(input.position() + length);
+
+            if (request.get(Long.BYTES) == Protocol.OP_CANCEL) {
+                // right here, not in order: the range it cancels is being executed by a worker now
+                cancelled.add(request.getLong(0));
+                continue;
+            }
+            requests.add(request);
+            queuedRequests.incrementAndGet();
+            received = true;
+        }
+
+        input.compact();
+
+        if (received) {
+            if (queuedRequests.get() > MAX_QUEUED_REQUESTS) pauseReading(true);
+            schedule();
+        }
+    }
+
+    /**
+     * Selector thread: socket is writable again
+     *
+     * @throws IOException On broken connection
+     */
+    void onWritable() throws IOException {
+        synchronized (output) {
+            flushOutput();
+            output.notifyAll();
+        }
+    }
+
+    private void schedule() {
+        if (closed || !scheduled.compareAndSet(false, true)) return;
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // server is shutting down
+            close();
+        }
+    }
+
+    /**
+     * Worker: execute everything received so far, answer with batched writes
+     */
+    private void drain() {
+        var out = new FrameWriter(BATCH_BYTES);
+        try {
+            ByteBuffer request;
+            while (!closed && (request = requests.poll()) != null) {
+                queuedRequests.decrementAndGet();
+                handler.handle(request, out, this);
+                if (out.size() >= BATCH_BYTES) write(out);
+            }
+            write(out);
+            if (queuedRequests.get() <= MAX_QUEUED_REQUESTS) pauseReading(false);
+        } catch (IOException e) {
+            close();
+        } finally {
+            scheduled.set(false);
+        }
+
+        // something arrived while we were finishing
+        if (!requests.isEmpty()) schedule();
+    }
+
+    /**
+     * Worker: is the range cancelled by client
+     *
+     * @param requestId Range request Id
+     * @return True if the rest of the range is not needed
+     */
+    boolean isCancelled(long requestId) {
+        return cancelled.contains(requestId);
+    }
+
+    /**
+     * Worker: range is over, forget its cancel. Cancels of earlier requests are stale, requests are executed in order,
+     * so they are forgotten as well. At worst such a range is streamed in full and ignored by client
+     *
+     * @param requestId Range request Id
+     */
+    void endStream(long requestId) {
+        if (!cancelled.isEmpty()) cancelled.removeIf(id -> id <= requestId);
+    }
+
+    /**
+     * Worker: send completed frames. Blocks while output is over the high water mark, so a slow reader pauses its own
+     * range streaming instead of filling the heap. Reader which takes nothing for the write timeout is dropped, it
+     * must not hold the worker, workers are shared by all connections.
+     *
+     * @param out Frames
+     * @throws IOException On broken connection or reader which doesn't read
+     */
+    void write(FrameWriter out) throws IOException {
+        var buffer = out.drain();
+        if (!buffer.hasRemaining()) return;
+
+        boolean stalled;
+        synchronized (output) {
+            output.add(buffer);
+            pendingOutputBytes += buffer.remaining();
+            flushOutput();
+
+            long since = System.currentTimeMillis();
+            try {
+                while (pendingOutputBytes > maxPendingOutputBytes && !closed) {
+                    // any progress means the reader is alive, just slow
+                    long idle = System.currentTimeMillis() - Math.max(since, lastProgressMs);
+                    if (idle >= writeTimeoutMs) break;
+                    output.wait(Math.min(writeTimeoutMs - idle, 100));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for slow reader", e);
+            }
+            stalled = pendingOutputBytes > maxPendingOutputBytes;
+        }
+
+        if (closed) throw new IOException("Connection closed");
+        if (stalled) {
+            close();
+            throw new IOException("Client doesn't read, connection dropped");
+        }
+    }
+
+    /**
+     * Write as much as socket takes. Invoker MUST hold output lock
+     *
+     * @throws IOException On broken connection
+     */
+    private void flushOutput() throws IOException {
+        while (!output.isEmpty()) {
+            long written = channel.write(output.toArray(new ByteBuffer[0]));
+            pendingOutputBytes -= written;
+            if (written > 0) lastProgressMs = System.currentTimeMillis();
+            while (!output.isEmpty() && !output.peekFirst().hasRemaining()) output.pollFirst();
+            if (written == 0) break;
+        }
+        setWritePending(!output.isEmpty());
+    }
+
+    private synchronized void setWritePending(boolean writePending) {
+        if (this.writePending == writePending) return;
+        this.writePending = writePending;
+        updateInterest();
+    }
+
+    private synchronized void pauseReading(boolean readPaused) {
+        if (this.readPaused == readPaused) return;
+        this.readPaused = readPaused;
+        updateInterest();
+    }
+
+    private synchronized void updateInterest() {
+        try {
+            key.interestOps((readPaused ? 0 : SelectionKey.OP_READ) | (writePending ? SelectionKey.OP_WRITE : 0));
+            key.selector().wakeup();
+        } catch (CancelledKeyException ignored) {
+            // connection is closed by another thread, there is no interest anymore
+        }
+    }
+
+    /**
+     * Close connection, idempotent
+     */
+    void close() {
+        closed = true;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing to do, connection is dead anyway
+        }
+        synchronized (output) {
+            output.clear();
+            output.notifyAll();
+        }
+    }
+}
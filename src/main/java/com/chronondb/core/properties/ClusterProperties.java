@@ -0,0 +1,29 @@
+package com.chronondb.core.properties;
+
+/**
+ * Cluster client properties provider.
+ */
+public interface ClusterProperties {
+    /**
+     * Points of every node on the hash ring. More points spread keys more evenly and move less of them when a node
+     * joins or leaves
+     *
+     * @return Virtual nodes per node
+     */
+    int getVirtualNodes();
+
+    /**
+     * How long to wait for a node, ms, see {@link com.chronondb.core.net.LogClient}
+     *
+     * @return Timeout, ms
+     */
+    long getTimeoutMs();
+
+    /**
+     * Range query with a node down: false to fail the query, true to return what the other nodes have. Point
+     * operations of keys of a node which is down always fail
+     *
+     * @return Are partial range results allowed
+     */
+    boolean isAllowPartialResults();
+}
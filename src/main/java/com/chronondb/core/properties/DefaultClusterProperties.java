@@ -0,0 +1,74 @@
+package com.chronondb.core.properties;
+
+/**
+ * Default and simple implementation of a ClusterProperties
+ */
+public class DefaultClusterProperties implements ClusterProperties {
+
+    /**
+     * Virtual nodes per node, keys spread within a few percent
+     */
+    public static final int VIRTUAL_NODES = 128;
+
+    /**
+     * Node timeout, ms
+     */
+    public static final long TIMEOUT_MS = 30 * 1000L;
+
+    /**
+     * Range query fails if any node fails
+     */
+    public static final boolean ALLOW_PARTIAL_RESULTS = false;
+
+    int virtualNodes = VIRTUAL_NODES;
+    long timeoutMs = TIMEOUT_MS;
+    boolean allowPartialResults = ALLOW_PARTIAL_RESULTS;
+
+    @Override
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    @Override
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    @Override
+    public boolean isAllowPartialResults() {
+        return allowPartialResults;
+    }
+
+    /**
+     * Set virtual nodes per node, see {@link ClusterProperties#getVirtualNodes()}
+     *
+     * @param virtualNodes Virtual nodes, 1 at least
+     * @return Instance
+     */
+    public DefaultClusterProperties setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+        return this;
+    }
+
+    /**
+     * Set node timeout, see {@link ClusterProperties#getTimeoutMs()}
+     *
+     * @param timeoutMs Timeout, ms
+     * @return Instance
+     */
+    public DefaultClusterProperties setTimeoutMs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        return this;
+    }
+
+    /**
+     * Set partial range results mode, see {@link ClusterProperties#isAllowPartialResults()}
+     *
+     * @param allowPartialResults True to return what the live nodes have
+     * @return Instance
+     */
+    public DefaultClusterProperties setAllowPartialResults(boolean allowPartialResults) {
+        this.allowPartialResults = allowPartialResults;
+        return this;
+    }
+}
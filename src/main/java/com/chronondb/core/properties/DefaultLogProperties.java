@@ -1,5 +1,8 @@
 package com.chronondb.core.properties;
 
+import com.chronondb.core.time.SystemTimeSource;
+import com.chronondb.core.time.TimeSource;
+
 /**
  * Default and simple implementation of a LogProperties
  */
@@ -10,6 +13,21 @@ public class DefaultLogProperties implements LogProperties {
      */
     public static final int BLOCK_SIZE = 1000;
 
+    /**
+     * Lower bound of adaptive block size, ms
+     */
+    public static final int MIN_BLOCK_SIZE = 100;
+
+    /**
+     * Upper bound of adaptive block size, ms. Fixed block size by default
+     */
+    public static final int MAX_BLOCK_SIZE = 0;
+
+    /**
+     * Items per block adaptive block size aims at
+     */
+    public static final int TARGET_BLOCK_ITEMS = 16 * 1024;
+
     /**
      * Delay for block to be vacuumed, ms
      */
@@ -25,16 +43,71 @@ public class DefaultLogProperties implements LogProperties {
      */
     public static final int LOCK_THRESHOLD_MS = 100;
 
+    /**
+     * Expected items per block for key membership filter, 64K items is 128KB of filter
+     */
+    public static final int KEY_FILTER_EXPECTED_ITEMS = 64 * 1024;
+
+    /**
+     * Upsert mode, off to keep add as cheap as possible
+     */
+    public static final boolean UPSERT = false;
+
+    /**
+     * Allowed lateness of event-time adds, ms. None by default, blocks are vacuumed as soon as delays allow
+     */
+    public static final int ALLOWED_LATENESS_MS = 0;
+
+    /**
+     * Write stripes per bucket. Plain buckets by default, stripes pay off with dozens of writers
+     */
+    public static final int WRITE_STRIPES = 1;
+
+    /**
+     * Relative accuracy of quantile sketches, 1% is what latency panels need
+     */
+    public static final double QUANTILE_ACCURACY = 0.01;
+
+    /**
+     * No distinct sketches by default, they cost 2^p bytes per block
+     */
+    public static final int DISTINCT_PRECISION = 0;
+
     int blockSize = BLOCK_SIZE;
+    int minBlockSize = MIN_BLOCK_SIZE;
+    int maxBlockSize = MAX_BLOCK_SIZE;
+    int targetBlockItems = TARGET_BLOCK_ITEMS;
     int blockVacuumDelayMs = BLOCK_VACUUM_DELAY_MS;
     int blockVacuumDelayBlocksize = BLOCK_VACUUM_DELAY_BLOCKSIZE;
     int lockThresholdMs = LOCK_THRESHOLD_MS;
+    TimeSource timeSource = SystemTimeSource.INSTANCE;
+    int keyFilterExpectedItems = KEY_FILTER_EXPECTED_ITEMS;
+    boolean upsert = UPSERT;
+    int allowedLatenessMs = ALLOWED_LATENESS_MS;
+    int writeStripes = WRITE_STRIPES;
+    double quantileAccuracy = QUANTILE_ACCURACY;
+    int distinctPrecision = DISTINCT_PRECISION;
 
     @Override
     public int getBlockSize() {
         return blockSize;
     }
 
+    @Override
+    public int getMinBlockSize() {
+        return minBlockSize;
+    }
+
+    @Override
+    public int getMaxBlockSize() {
+        return maxBlockSize;
+    }
+
+    @Override
+    public int getTargetBlockItems() {
+        return targetBlockItems;
+    }
+
     @Override
     public int getBlockVacuumDelayInMs() {
         return blockVacuumDelayMs;
@@ -50,10 +123,43 @@ public class DefaultLogProperties implements LogProperties {
         return lockThresholdMs;
     }
 
+    @Override
+    public TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    @Override
+    public int getKeyFilterExpectedItems() {
+        return keyFilterExpectedItems;
+    }
+
+    @Override
+    public boolean isUpsert() {
+        return upsert;
+    }
+
+    @Override
+    public int getAllowedLatenessMs() {
+        return allowedLatenessMs;
+    }
+
+    @Override
+    public int getWriteStripes() {
+        return writeStripes;
+    }
+
+    @Override
+    public double getQuantileAccuracy() {
+        return quantileAccuracy;
+    }
+
+    @Override
+    public int getDistinctPrecision() {
+        return distinctPrecision;
+    }
+
     /**
-     * Set's block size.
-     *
-     * WARNING: Changing this parameter on a fly will corrupt Log until dynamic block size is implemented
+     * Set's block size. Log reads it once, blocks are found by their own bounds, so a change affects new Logs only.
      *
      * @param blockSize Log block size in ms
      * @return Instance
@@ -63,6 +169,39 @@ public class DefaultLogProperties implements LogProperties {
         return this;
     }
 
+    /**
+     * Set lower bound of adaptive block size
+     *
+     * @param minBlockSize Min block size in ms
+     * @return Instance
+     */
+    public DefaultLogProperties setMinBlockSize(int minBlockSize) {
+        this.minBlockSize = minBlockSize;
+        return this;
+    }
+
+    /**
+     * Set upper bound of adaptive block size, see {@link LogProperties#getMaxBlockSize()}
+     *
+     * @param maxBlockSize Max block size in ms, 0 for fixed block size
+     * @return Instance
+     */
+    public DefaultLogProperties setMaxBlockSize(int maxBlockSize) {
+        this.maxBlockSize = maxBlockSize;
+        return this;
+    }
+
+    /**
+     * Set items per block adaptive block size aims at
+     *
+     * @param targetBlockItems Target items per block
+     * @return Instance
+     */
+    public DefaultLogProperties setTargetBlockItems(int targetBlockItems) {
+        this.targetBlockItems = targetBlockItems;
+        return this;
+    }
+
     /**
      * Define how long to wait before vacuuming the block
      *
@@ -95,4 +234,83 @@ public class DefaultLogProperties implements LogProperties {
         this.lockThresholdMs = lockThresholdMs;
         return this;
     }
+
+    /**
+     * Define clock for the Log. System clock by default.
+     * <p>
+     * WARNING: Changing this parameter on a fly will corrupt Log, clocks are not synchronized between each other
+     *
+     * @param timeSource Time source
+     * @return Instance
+     */
+    public DefaultLogProperties setTimeSource(TimeSource timeSource) {
+        this.timeSource = timeSource;
+        return this;
+    }
+
+    /**
+     * Set expected items per block for key membership filter
+     *
+     * @param keyFilterExpectedItems Expected items, 0 to disable filters
+     * @return Instance
+     */
+    public DefaultLogProperties setKeyFilterExpectedItems(int keyFilterExpectedItems) {
+        this.keyFilterExpectedItems = keyFilterExpectedItems;
+        return this;
+    }
+
+    /**
+     * Set upsert mode, see {@link LogProperties#isUpsert()}
+     *
+     * @param upsert True for upsert mode
+     * @return Instance
+     */
+    public DefaultLogProperties setUpsert(boolean upsert) {
+        this.upsert = upsert;
+        return this;
+    }
+
+    /**
+     * Set allowed lateness of event-time adds, see {@link LogProperties#getAllowedLatenessMs()}
+     *
+     * @param allowedLatenessMs Allowed lateness in ms
+     * @return Instance
+     */
+    public DefaultLogProperties setAllowedLatenessMs(int allowedLatenessMs) {
+        this.allowedLatenessMs = allowedLatenessMs;
+        return this;
+    }
+
+    /**
+     * Set write stripes per bucket, see {@link LogProperties#getWriteStripes()}
+     *
+     * @param writeStripes Stripes, 1 for a plain bucket
+     * @return Instance
+     */
+    public DefaultLogProperties setWriteStripes(int writeStripes) {
+        this.writeStripes = writeStripes;
+        return this;
+    }
+
+    /**
+     * Set relative accuracy of quantile sketches, see {@link LogProperties#getQuantileAccuracy()}
+     *
+     * @param quantileAccuracy Accuracy, between 0 and 1 exclusive
+     * @return Instance
+     */
+    public DefaultLogProperties setQuantileAccuracy(double quantileAccuracy) {
+        this.quantileAccuracy = quantileAccuracy;
+        return this;
+    }
+
+    /**
+     * Set precision of distinct sketches, see {@link LogProperties#getDistinctPrecision()}
+     *
+     * @param distinctPrecision Precision, 4 to 18, 0 for no sketches
+     * @return Instance
+     */
+    public DefaultLogProperties setDistinctPrecision(int distinctPrecision) {
+        this.distinctPrecision = distinctPrecision;
+        return this;
+    }
 }
@@ -0,0 +1,113 @@
+package com.chronondb.core.properties;
+
+/**
+ * Default and simple implementation of a ReplicationProperties
+ */
+public class DefaultReplicationProperties implements ReplicationProperties {
+
+    /**
+     * Default leader TCP port
+     */
+    public static final int PORT = 7071;
+
+    /**
+     * Operations per batch
+     */
+    public static final int BATCH_SIZE = 1024;
+
+    /**
+     * Max pending operations per follower
+     */
+    public static final int MAX_PENDING_OPERATIONS = 1024 * 1024;
+
+    /**
+     * Heartbeat period, ms
+     */
+    public static final int HEARTBEAT_MS = 100;
+
+    String bindAddress = null;
+    int port = PORT;
+    int batchSize = BATCH_SIZE;
+    int maxPendingOperations = MAX_PENDING_OPERATIONS;
+    int heartbeatMs = HEARTBEAT_MS;
+
+    @Override
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public int getMaxPendingOperations() {
+        return maxPendingOperations;
+    }
+
+    @Override
+    public int getHeartbeatMs() {
+        return heartbeatMs;
+    }
+
+    /**
+     * Set address leader binds to
+     *
+     * @param bindAddress Host name or IP, null for any local address
+     * @return Instance
+     */
+    public DefaultReplicationProperties setBindAddress(String bindAddress) {
+        this.bindAddress = bindAddress;
+        return this;
+    }
+
+    /**
+     * Set leader TCP port
+     *
+     * @param port TCP port, 0 for ephemeral
+     * @return Instance
+     */
+    public DefaultReplicationProperties setPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    /**
+     * Set max operations per batch
+     *
+     * @param batchSize Batch size
+     * @return Instance
+     */
+    public DefaultReplicationProperties setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set max pending operations per follower, after that follower is re-synced from a snapshot
+     *
+     * @param maxPendingOperations Max pending operations
+     * @return Instance
+     */
+    public DefaultReplicationProperties setMaxPendingOperations(int maxPendingOperations) {
+        this.maxPendingOperations = maxPendingOperations;
+        return this;
+    }
+
+    /**
+     * Set heartbeat period
+     *
+     * @param heartbeatMs Heartbeat period, ms
+     * @return Instance
+     */
+    public DefaultReplicationProperties setHeartbeatMs(int heartbeatMs) {
+        this.heartbeatMs = heartbeatMs;
+        return this;
+    }
+}
@@ -0,0 +1,179 @@
+package com.chronondb.core.properties;
+
+/**
+ * Default and simple implementation of a ServerProperties
+ */
+public class DefaultServerProperties implements ServerProperties {
+
+    /**
+     * Default TCP port
+     */
+    public static final int PORT = 7070;
+
+    /**
+     * Default worker threads count
+     */
+    public static final int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Items per range frame
+     */
+    public static final int RANGE_FRAME_SIZE = 1024;
+
+    /**
+     * Max frame size, bytes
+     */
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Output high water mark, bytes
+     */
+    public static final int MAX_PENDING_OUTPUT_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Slow reader write timeout, ms
+     */
+    public static final int WRITE_TIMEOUT_MS = 30 * 1000;
+
+    /**
+     * VACUUM period, ms
+     */
+    public static final int VACUUM_PERIOD_MS = 1000;
+
+    String bindAddress = null;
+    int port = PORT;
+    int workerThreads = WORKER_THREADS;
+    int rangeFrameSize = RANGE_FRAME_SIZE;
+    int maxFrameSize = MAX_FRAME_SIZE;
+    int maxPendingOutputBytes = MAX_PENDING_OUTPUT_BYTES;
+    int writeTimeoutMs = WRITE_TIMEOUT_MS;
+    int vacuumPeriodMs = VACUUM_PERIOD_MS;
+
+    @Override
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    @Override
+    public int getRangeFrameSize() {
+        return rangeFrameSize;
+    }
+
+    @Override
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    @Override
+    public int getMaxPendingOutputBytes() {
+        return maxPendingOutputBytes;
+    }
+
+    @Override
+    public int getWriteTimeoutMs() {
+        return writeTimeoutMs;
+    }
+
+    @Override
+    public int getVacuumPeriodMs() {
+        return vacuumPeriodMs;
+    }
+
+    /**
+     * Set address to bind to
+     *
+     * @param bindAddress Host name or IP, null for any local address
+     * @return Instance
+     */
+    public DefaultServerProperties setBindAddress(String bindAddress) {
+        this.bindAddress = bindAddress;
+        return this;
+    }
+
+    /**
+     * Set TCP port
+     *
+     * @param port TCP port, 0 for ephemeral
+     * @return Instance
+     */
+    public DefaultServerProperties setPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    /**
+     * Set worker threads count
+     *
+     * @param workerThreads Worker threads count
+     * @return Instance
+     */
+    public DefaultServerProperties setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+        return this;
+    }
+
+    /**
+     * Set max items in a single range response frame
+     *
+     * @param rangeFrameSize Items per frame
+     * @return Instance
+     */
+    public DefaultServerProperties setRangeFrameSize(int rangeFrameSize) {
+        this.rangeFrameSize = rangeFrameSize;
+        return this;
+    }
+
+    /**
+     * Set max frame size
+     *
+     * @param maxFrameSize Max frame size in bytes
+     * @return Instance
+     */
+    public DefaultServerProperties setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+        return this;
+    }
+
+    /**
+     * Set connection output high water mark
+     *
+     * @param maxPendingOutputBytes Bytes
+     * @return Instance
+     */
+    public DefaultServerProperties setMaxPendingOutputBytes(int maxPendingOutputBytes) {
+        this.maxPendingOutputBytes = maxPendingOutputBytes;
+        return this;
+    }
+
+    /**
+     * Set slow reader write timeout
+     *
+     * @param writeTimeoutMs Write timeout, ms
+     * @return Instance
+     */
+    public DefaultServerProperties setWriteTimeoutMs(int writeTimeoutMs) {
+        this.writeTimeoutMs = writeTimeoutMs;
+        return this;
+    }
+
+    /**
+     * Set VACUUM period
+     *
+     * @param vacuumPeriodMs VACUUM period in ms, 0 to disable
+     * @return Instance
+     */
+    public DefaultServerProperties setVacuumPeriodMs(int vacuumPeriodMs) {
+        this.vacuumPeriodMs = vacuumPeriodMs;
+        return this;
+    }
+}
@@ -0,0 +1,130 @@
+package com.chronondb.core.properties;
+
+/**
+ * Default and simple implementation of a SubscriptionProperties
+ */
+public class DefaultSubscriptionProperties implements SubscriptionProperties {
+
+    /**
+     * Events buffered per subscriber
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Events per delivery
+     */
+    public static final int BATCH_SIZE = 256;
+
+    /**
+     * Slow consumer policy. Timeseries consumer cares about the most recent data
+     */
+    public static final SlowConsumerPolicy SLOW_CONSUMER_POLICY = SlowConsumerPolicy.DROP_OLDEST;
+
+    /**
+     * Writer wait for buffer space with BLOCK policy, ms
+     */
+    public static final int BLOCK_TIMEOUT_MS = 1000;
+
+    int bufferSize = BUFFER_SIZE;
+    int batchSize = BATCH_SIZE;
+    SlowConsumerPolicy slowConsumerPolicy = SLOW_CONSUMER_POLICY;
+    int blockTimeoutMs = BLOCK_TIMEOUT_MS;
+    boolean deliverRemovals = false;
+    boolean deliverExpirations = false;
+
+    @Override
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    @Override
+    public int getBlockTimeoutMs() {
+        return blockTimeoutMs;
+    }
+
+    @Override
+    public boolean isDeliverRemovals() {
+        return deliverRemovals;
+    }
+
+    @Override
+    public boolean isDeliverExpirations() {
+        return deliverExpirations;
+    }
+
+    /**
+     * Set events buffered per subscriber
+     *
+     * @param bufferSize Buffer size
+     * @return Instance
+     */
+    public DefaultSubscriptionProperties setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Set max events per delivery
+     *
+     * @param batchSize Batch size
+     * @return Instance
+     */
+    public DefaultSubscriptionProperties setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set what to do when buffer is full
+     *
+     * @param slowConsumerPolicy Policy
+     * @return Instance
+     */
+    public DefaultSubscriptionProperties setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        return this;
+    }
+
+    /**
+     * Set writer wait for buffer space with BLOCK policy
+     *
+     * @param blockTimeoutMs Timeout, ms
+     * @return Instance
+     */
+    public DefaultSubscriptionProperties setBlockTimeoutMs(int blockTimeoutMs) {
+        this.blockTimeoutMs = blockTimeoutMs;
+        return this;
+    }
+
+    /**
+     * Set whether removals and flushes are delivered
+     *
+     * @param deliverRemovals True to deliver
+     * @return Instance
+     */
+    public DefaultSubscriptionProperties setDeliverRemovals(boolean deliverRemovals) {
+        this.deliverRemovals = deliverRemovals;
+        return this;
+    }
+
+    /**
+     * Set whether expirations are delivered
+     *
+     * @param deliverExpirations True to deliver
+     * @return Instance
+     */
+    public DefaultSubscriptionProperties setDeliverExpirations(boolean deliverExpirations) {
+        this.deliverExpirations = deliverExpirations;
+        return this;
+    }
+}
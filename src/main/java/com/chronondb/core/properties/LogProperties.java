@@ -1,5 +1,7 @@
 package com.chronondb.core.properties;
 
+import com.chronondb.core.time.TimeSource;
+
 /**
  * Log properties provider.
  *
@@ -7,12 +9,36 @@ package com.chronondb.core.properties;
  */
 public interface LogProperties {
     /**
-     * Block size in ms
+     * Block size in ms. With adaptive block size this is the size of the first block and of blocks spliced into the
+     * past.
      *
      * @return block size in ms
      */
     int getBlockSize();
 
+    /**
+     * Lower bound of adaptive block size in ms, see {@link #getMaxBlockSize()}
+     *
+     * @return min block size in ms
+     */
+    int getMinBlockSize();
+
+    /**
+     * Upper bound of adaptive block size in ms. 0 disables adaptive block size: every block has
+     * {@link #getBlockSize()} size. Otherwise size of a new block is picked at rotation from the recent ingest rate,
+     * so the block gets about {@link #getTargetBlockItems()} items.
+     *
+     * @return max block size in ms, 0 for fixed block size
+     */
+    int getMaxBlockSize();
+
+    /**
+     * Items per block adaptive block size aims at
+     *
+     * @return target items per block
+     */
+    int getTargetBlockItems();
+
     /**
      * How long to vait for block vacuuming in ms
      *
@@ -33,4 +59,61 @@ public interface LogProperties {
      * @return Max PUT op timeout for lock for block rotation
      */
     int getLockThreshold();
+
+    /**
+     * Clock used by Log and blocks for register times, TTL checks and vacuum.
+     *
+     * @return Time source
+     */
+    TimeSource getTimeSource();
+
+    /**
+     * Expected items per block, sizes key membership filter of the open block. Sealed block filter is rebuilt to its
+     * actual size. 0 disables filters.
+     *
+     * @return Expected items per block
+     */
+    int getKeyFilterExpectedItems();
+
+    /**
+     * Upsert mode: add of a known key retires its previous version, so there is exactly one version of a key in the
+     * Log. Otherwise the previous version stays in its bucket until TTL and VACUUM, and range reads return both.
+     *
+     * @return True for upsert mode
+     */
+    boolean isUpsert();
+
+    /**
+     * Allowed lateness of event-time adds in ms. Item with event time behind now minus lateness (the watermark) is
+     * late: rejected or routed to the late data handler. Blocks are not sealed or vacuumed until the watermark passes
+     * them, so the larger the window, the longer blocks stay in memory.
+     *
+     * @return Allowed lateness in ms, 0 to accept the current time only
+     */
+    int getAllowedLatenessMs();
+
+    /**
+     * Write stripes per bucket. Every millisecond bucket is split by key hash into independent maps, so writers of
+     * the same millisecond don't fight for one table. Reads merge stripes, get and remove by key still hit one map.
+     *
+     * @return Stripes, rounded up to a power of 2, 1 for a plain bucket
+     */
+    int getWriteStripes();
+
+    /**
+     * Relative accuracy of per-block quantile sketches, see {@link com.chronondb.core.memstore.MetricExtractor}. Any
+     * quantile is within this fraction of the true value, sketch size grows with log(max/min) divided by it.
+     *
+     * @return Accuracy, e.g. 0.01 for 1%
+     */
+    double getQuantileAccuracy();
+
+    /**
+     * Precision of per-block HyperLogLog sketches of distinct keys, see
+     * {@link com.chronondb.core.memstore.Log#distinctCount(long, long)}. Sketch has 2^p one-byte registers, standard
+     * error is about 1.04 / sqrt(2^p): 14 is 16 KB per block and 0.8%.
+     *
+     * @return Precision, 4 to 18, 0 for no sketches
+     */
+    int getDistinctPrecision();
 }
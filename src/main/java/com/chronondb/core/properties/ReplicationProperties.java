@@ -0,0 +1,42 @@
+package com.chronondb.core.properties;
+
+/**
+ * Replication properties provider.
+ */
+public interface ReplicationProperties {
+    /**
+     * Address leader binds to
+     *
+     * @return Host name or IP, null or empty for any local address
+     */
+    String getBindAddress();
+
+    /**
+     * Leader TCP port, 0 for ephemeral
+     *
+     * @return TCP port
+     */
+    int getPort();
+
+    /**
+     * Max operations shipped in a single batch
+     *
+     * @return Batch size
+     */
+    int getBatchSize();
+
+    /**
+     * How many operations may wait for a follower. If follower falls behind more than that, it is re-synced from a
+     * snapshot.
+     *
+     * @return Max pending operations per follower
+     */
+    int getMaxPendingOperations();
+
+    /**
+     * How often leader sends an empty batch to an idle follower, ms. Keeps lag measurement fresh
+     *
+     * @return Heartbeat period, ms
+     */
+    int getHeartbeatMs();
+}
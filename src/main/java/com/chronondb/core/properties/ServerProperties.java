@@ -0,0 +1,63 @@
+package com.chronondb.core.properties;
+
+/**
+ * Stand-alone server properties provider.
+ */
+public interface ServerProperties {
+    /**
+     * Address to bind to
+     *
+     * @return Host name or IP, null or empty for any local address
+     */
+    String getBindAddress();
+
+    /**
+     * TCP port, 0 for ephemeral
+     *
+     * @return TCP port
+     */
+    int getPort();
+
+    /**
+     * How many threads execute requests. Requests from the same connection are always executed one by one, in order
+     *
+     * @return Worker threads count
+     */
+    int getWorkerThreads();
+
+    /**
+     * Max items in a single range response frame
+     *
+     * @return Max items in a single range response frame
+     */
+    int getRangeFrameSize();
+
+    /**
+     * Max request or response frame size in bytes. Bigger frames are treated as protocol violation
+     *
+     * @return Max frame size in bytes
+     */
+    int getMaxFrameSize();
+
+    /**
+     * How many bytes may wait in a connection output before request execution is paused for slow reader
+     *
+     * @return Output high water mark in bytes
+     */
+    int getMaxPendingOutputBytes();
+
+    /**
+     * How long a worker waits for a client which doesn't read its output over the high water mark. Client which
+     * takes nothing for so long is disconnected, so it can't hold workers of other connections
+     *
+     * @return Write timeout, ms
+     */
+    int getWriteTimeoutMs();
+
+    /**
+     * How often to VACUUM the served Log, ms. 0 or negative to not schedule VACUUM at all
+     *
+     * @return VACUUM period, ms
+     */
+    int getVacuumPeriodMs();
+}
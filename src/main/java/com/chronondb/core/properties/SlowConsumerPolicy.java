@@ -0,0 +1,23 @@
+package com.chronondb.core.properties;
+
+/**
+ * What to do with an event when subscriber buffer is full
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * Drop the new event, subscriber sees older events only
+     */
+    DROP_NEWEST,
+    /**
+     * Drop the oldest buffered event, subscriber sees the most recent events
+     */
+    DROP_OLDEST,
+    /**
+     * Block the writer until there is space or timeout, then disconnect. Slows the Log down to the subscriber speed
+     */
+    BLOCK,
+    /**
+     * Disconnect the subscriber right away
+     */
+    DISCONNECT
+}
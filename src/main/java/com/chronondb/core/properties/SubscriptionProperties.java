@@ -0,0 +1,48 @@
+package com.chronondb.core.properties;
+
+/**
+ * Log subscription properties provider.
+ */
+public interface SubscriptionProperties {
+    /**
+     * Events buffered per subscriber, see {@link #getSlowConsumerPolicy()} for what happens beyond that
+     *
+     * @return Buffer size
+     */
+    int getBufferSize();
+
+    /**
+     * Max events delivered in a single call
+     *
+     * @return Batch size
+     */
+    int getBatchSize();
+
+    /**
+     * What to do when buffer is full
+     *
+     * @return Policy
+     */
+    SlowConsumerPolicy getSlowConsumerPolicy();
+
+    /**
+     * How long a writer waits for buffer space with {@link SlowConsumerPolicy#BLOCK}, ms
+     *
+     * @return Timeout, ms
+     */
+    int getBlockTimeoutMs();
+
+    /**
+     * Deliver removals and flushes, not only adds
+     *
+     * @return True if removals are delivered
+     */
+    boolean isDeliverRemovals();
+
+    /**
+     * Deliver items dropped by TTL, not only adds
+     *
+     * @return True if expirations are delivered
+     */
+    boolean isDeliverExpirations();
+}
@@ -0,0 +1,176 @@
+package com.chronondb.core.replication;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.memstore.Log;
+import com.chronondb.core.net.Codec;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replication follower. Keeps a local {@link Log} as a copy of the leader's one, see {@link ReplicationLeader}.
+ * <p>
+ * Reads are served by the local Log as usual, local writes are not prohibited but will be lost on the next re-sync.
+ * Items keep register times of the leader, so range queries on the follower return the same buckets.
+ * <p>
+ * A broken connection is re-established automatically, every new connection starts from a snapshot.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public class ReplicationFollower<K, V> implements AutoCloseable {
+
+    /**
+     * Pause before reconnect, ms
+     */
+    public static final long RECONNECT_DELAY_MS = 500;
+
+    private final Log<K, V> log;
+    private final InetSocketAddress leaderAddress;
+    private final Codec<K> keyCodec;
+    private final Codec<V> payloadCodec;
+    private final Thread thread;
+    private final long startTime = System.currentTimeMillis();
+
+    private final AtomicLong operations = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong snapshots = new AtomicLong();
+
+    private volatile long lagMillis;
+    private volatile boolean inSync;
+    private volatile boolean running = true;
+    private volatile Socket socket;
+
+    private ReplicationFollower(Log<K, V> log, InetSocketAddress leaderAddress, Codec<K> keyCodec,
+                                Codec<V> payloadCodec) {
+        this.log = log;
+        this.leaderAddress = leaderAddress;
+        this.keyCodec = keyCodec;
+        this.payloadCodec = payloadCodec;
+        this.thread = new Thread(this::readLoop, "chronondb-follower-" + leaderAddress);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start following the leader. Returns immediately, see {@link #isInSync()} to know when the copy is complete.
+     *
+     * @param log           Local Log, its content is replaced with the leader's one
+     * @param leaderAddress Leader address
+     * @param keyCodec      Item Id codec
+     * @param payloadCodec  Payload codec
+     * @param <K>           Item Id type
+     * @param <V>           Payload type
+     * @return Running follower
+     */
+    public static <K, V> ReplicationFollower<K, V> connect(Log<K, V> log, InetSocketAddress leaderAddress,
+                                                           Codec<K> keyCodec, Codec<V> payloadCodec) {
+        var follower = new ReplicationFollower<>(log, leaderAddress, keyCodec, payloadCodec);
+        follower.thread.start();
+        return follower;
+    }
+
+    /**
+     * Local copy is complete: the snapshot is applied and live operations are streaming
+     *
+     * @return True if in sync
+     */
+    public boolean isInSync() {
+        return inSync;
+    }
+
+    /**
+     * Replication statistics
+     *
+     * @return Stats
+     */
+    public ReplicationStats getStats() {
+        return new ReplicationStats(operations.get(), batches.get(), snapshots.get(), 0, lagMillis,
+                System.currentTimeMillis() - startTime);
+    }
+
+    private void readLoop() {
+        while (running) {
+            try (var connection = new Socket()) {
+                socket = connection;
+                connection.setTcpNoDelay(true);
+                connection.connect(leaderAddress);
+                follow(new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16)));
+            } catch (IOException | DatabaseGenericException ignored) {
+                // leader is gone or local Log can't keep up, the next connection starts from a snapshot anyway
+            } finally {
+                inSync = false;
+            }
+            if (running) pause();
+        }
+    }
+
+    private void follow(DataInputStream in) throws IOException, DatabaseGenericException {
+        while (running) {
+            byte type = in.readByte();
+            long leaderTime = in.readLong();
+            switch (type) {
+                case ReplicationWire.SNAPSHOT_BEGIN:
+                    inSync = false;
+                    log.flush(Long.MIN_VALUE, Long.MAX_VALUE);
+                    snapshots.incrementAndGet();
+                    break;
+                case ReplicationWire.SNAPSHOT_END:
+                    inSync = true;
+                    break;
+                case ReplicationWire.BATCH:
+                    applyBatch(in, leaderTime);
+                    break;
+                default:
+                    throw new IOException("Replication stream is corrupted, unknown message " + type);
+            }
+        }
+    }
+
+    private void applyBatch(DataInputStream in, long leaderTime) throws IOException, DatabaseGenericException {
+        int count = in.readInt();
+        long oldestCapture = leaderTime;
+
+        for (int i = 0; i < count; i++) {
+            var op = ReplicationWire.readOp(in, keyCodec, payloadCodec);
+            oldestCapture = Math.min(oldestCapture, op.captureTime);
+            switch (op.type) {
+                case ReplicationOp.ADD:
+                    log.replay(op.item);
+                    break;
+                case ReplicationOp.REMOVE:
+                    log.remove(op.itemId);
+                    break;
+                default:
+                    log.flush(op.startTimeMillis, op.endTimeMillis);
+            }
+        }
+
+        operations.addAndGet(count);
+        batches.incrementAndGet();
+        lagMillis = Math.max(0, log.getTimeSource().currentTimeMillis() - oldestCapture);
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            running = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        var current = socket;
+        if (current == null) return;
+        try {
+            current.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+    }
+}
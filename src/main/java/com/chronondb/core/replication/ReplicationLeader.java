@@ -0,0 +1,275 @@
+package com.chronondb.core.replication;
+
+import com.chronondb.core.memstore.Log;
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.memstore.LogListener;
+import com.chronondb.core.net.Codec;
+import com.chronondb.core.properties.ReplicationProperties;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replication leader. Captures every operation of the {@link Log} and ships it to connected followers, see
+ * {@link ReplicationFollower}.
+ * <p>
+ * Each follower has its own bounded queue and its own sender thread, so a slow follower never slows the Log or other
+ * followers down. A follower which can't keep up overflows its queue, loses the stream and is re-synced from a
+ * snapshot: it drops everything and gets the current content of the Log, then live operations again. The same
+ * happens on every (re)connect.
+ * <p>
+ * Operations are shipped in batches, up to {@link ReplicationProperties#getBatchSize()} operations per write. An idle
+ * stream gets an empty batch every {@link ReplicationProperties#getHeartbeatMs()}, it keeps lag measurable and dead
+ * connections detectable.
+ * <p>
+ * Operations of a single writer thread are replicated in order. Operations on the same item from different threads
+ * are replicated in the order listeners were invoked, see {@link LogListener}.
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+public class ReplicationLeader<K, V> implements LogListener<K, V>, AutoCloseable {
+
+    private final Log<K, V> log;
+    private final Codec<K> keyCodec;
+    private final Codec<V> payloadCodec;
+    private final ReplicationProperties settings;
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+    private final List<FollowerSession> sessions = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running = true;
+
+    private ReplicationLeader(Log<K, V> log, Codec<K> keyCodec, Codec<V> payloadCodec,
+                              ReplicationProperties settings) throws IOException {
+        this.log = log;
+        this.keyCodec = keyCodec;
+        this.payloadCodec = payloadCodec;
+        this.settings = settings;
+
+        this.serverSocket = new ServerSocket();
+        var address = settings.getBindAddress() == null || settings.getBindAddress().isEmpty()
+                ? new InetSocketAddress(settings.getPort())
+                : new InetSocketAddress(settings.getBindAddress(), settings.getPort());
+        this.serverSocket.bind(address);
+
+        this.acceptThread = new Thread(this::acceptLoop, "chronondb-replication-accept");
+        this.acceptThread.setDaemon(true);
+    }
+
+    /**
+     * Start capturing operations of the Log and accepting followers
+     *
+     * @param log          Log to replicate
+     * @param keyCodec     Item Id codec
+     * @param payloadCodec Payload codec
+     * @param settings     Settings, see type for details
+     * @param <K>          Item Id type
+     * @param <V>          Payload type
+     * @return Running leader
+     * @throws IOException If can't bind
+     */
+    public static <K, V> ReplicationLeader<K, V> start(Log<K, V> log, Codec<K> keyCodec, Codec<V> payloadCodec,
+                                                       ReplicationProperties settings) throws IOException {
+        var leader = new ReplicationLeader<>(log, keyCodec, payloadCodec, settings);
+        log.addListener(leader);
+        leader.acceptThread.start();
+        return leader;
+    }
+
+    /**
+     * Actual bound port, useful with ephemeral port
+     *
+     * @return TCP port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Statistics of currently connected followers
+     *
+     * @return One entry per follower
+     */
+    public List<ReplicationStats> getFollowerStats() {
+        var result = new ArrayList<ReplicationStats>(sessions.size());
+        for (var session : sessions) result.add(session.getStats());
+        return result;
+    }
+
+    @Override
+    public void onAdd(LogItem<K, V> item) {
+        if (sessions.isEmpty()) return;
+        enqueue(ReplicationOp.add(now(), item));
+    }
+
+    @Override
+    public void onTouch(LogItem<K, V> item) {
+        // replay of the same item with a new TTL replaces it on follower
+        onAdd(item);
+    }
+
+    @Override
+    public void onRemove(K itemId) {
+        if (sessions.isEmpty()) return;
+        enqueue(ReplicationOp.remove(now(), itemId));
+    }
+
+    @Override
+    public void onFlush(long startTimeMillis, long endTimeMillis) {
+        if (sessions.isEmpty()) return;
+        enqueue(ReplicationOp.flush(now(), startTimeMillis, endTimeMillis));
+    }
+
+    /**
+     * Capture time of operations: Log clock, so lag is right under a manual or cached clock as well
+     */
+    private long now() {
+        return log.getTimeSource().currentTimeMillis();
+    }
+
+    private void enqueue(ReplicationOp<K, V> op) {
+        // command thread, never blocks
+        for (var session : sessions) session.offer(op);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                var socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                var session = new FollowerSession(socket);
+                // register before the first snapshot, so nothing between snapshot and live stream is lost
+                sessions.add(session);
+                session.thread.start();
+            } catch (IOException e) {
+                // closed or broken, either way no more followers
+                running = false;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        log.removeListener(this);
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+        for (var session : sessions) session.close();
+    }
+
+    /**
+     * Connection to a single follower
+     */
+    private final class FollowerSession {
+
+        private final Socket socket;
+        private final Thread thread;
+        private final BlockingQueue<ReplicationOp<K, V>> queue;
+        private final long startTime = System.currentTimeMillis();
+
+        private final AtomicLong operations = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong snapshots = new AtomicLong();
+
+        // every new follower starts from a snapshot
+        private volatile boolean resync = true;
+
+        FollowerSession(Socket socket) {
+            this.socket = socket;
+            this.queue = new ArrayBlockingQueue<>(settings.getMaxPendingOperations());
+            this.thread = new Thread(this::sendLoop, "chronondb-replication-" + socket.getRemoteSocketAddress());
+            this.thread.setDaemon(true);
+        }
+
+        void offer(ReplicationOp<K, V> op) {
+            // the stream is lost anyway, follower will get the snapshot
+            if (!queue.offer(op)) resync = true;
+        }
+
+        ReplicationStats getStats() {
+            // age of the oldest operation still waiting, the follower is at least that far behind
+            var oldest = queue.peek();
+            long lag = oldest == null ? 0 : Math.max(0, now() - oldest.captureTime);
+            return new ReplicationStats(operations.get(), batches.get(), snapshots.get(), queue.size(), lag,
+                    System.currentTimeMillis() - startTime);
+        }
+
+        private void sendLoop() {
+            try (var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16))) {
+                var batch = new ArrayList<ReplicationOp<K, V>>(settings.getBatchSize());
+                while (running) {
+                    if (resync) sendSnapshot(out, batch);
+
+                    batch.clear();
+                    var first = queue.poll(settings.getHeartbeatMs(), TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, settings.getBatchSize() - 1);
+                    }
+                    sendBatch(out, batch);
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException ignored) {
+                // follower is gone, it will reconnect and get a snapshot
+            } finally {
+                close();
+            }
+        }
+
+        private void sendSnapshot(DataOutputStream out, List<ReplicationOp<K, V>> batch) throws IOException {
+            // Drop the stream first, then read the Log. Anything applied after the clear is either in the snapshot,
+            // in the queue or both - applying it twice is harmless.
+            resync = false;
+            queue.clear();
+            snapshots.incrementAndGet();
+
+            out.writeByte(ReplicationWire.SNAPSHOT_BEGIN);
+            out.writeLong(now());
+
+            batch.clear();
+            var items = log.iterator(Long.MIN_VALUE, Long.MAX_VALUE);
+            while (items.hasNext()) {
+                batch.add(ReplicationOp.add(now(), items.next()));
+                if (batch.size() < settings.getBatchSize()) continue;
+                sendBatch(out, batch);
+                batch.clear();
+            }
+            if (!batch.isEmpty()) sendBatch(out, batch);
+
+            out.writeByte(ReplicationWire.SNAPSHOT_END);
+            out.writeLong(now());
+            out.flush();
+        }
+
+        private void sendBatch(DataOutputStream out, List<ReplicationOp<K, V>> batch) throws IOException {
+            ReplicationWire.writeBatch(out, now(), batch, keyCodec, payloadCodec);
+            operations.addAndGet(batch.size());
+            batches.incrementAndGet();
+        }
+
+        void close() {
+            sessions.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+    }
+}
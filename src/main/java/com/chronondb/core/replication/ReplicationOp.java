@@ -0,0 +1,45 @@
+package com.chronondb.core.replication;
+
+import com.chronondb.core.memstore.LogItem;
+
+/**
+ * Single captured operation
+ *
+ * @param <K> Item Id type
+ * @param <V> Payload type
+ */
+final class ReplicationOp<K, V> {
+
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+    static final byte FLUSH = 3;
+
+    final byte type;
+    final long captureTime;
+    final LogItem<K, V> item;
+    final K itemId;
+    final long startTimeMillis;
+    final long endTimeMillis;
+
+    private ReplicationOp(byte type, long captureTime, LogItem<K, V> item, K itemId, long startTimeMillis,
+                          long endTimeMillis) {
+        this.type = type;
+        this.captureTime = captureTime;
+        this.item = item;
+        this.itemId = itemId;
+        this.startTimeMillis = startTimeMillis;
+        this.endTimeMillis = endTimeMillis;
+    }
+
+    static <K, V> ReplicationOp<K, V> add(long captureTime, LogItem<K, V> item) {
+        return new ReplicationOp<>(ADD, captureTime, item, item.getId(), 0, 0);
+    }
+
+    static <K, V> ReplicationOp<K, V> remove(long captureTime, K itemId) {
+        return new ReplicationOp<>(REMOVE, captureTime, null, itemId, 0, 0);
+    }
+
+    static <K, V> ReplicationOp<K, V> flush(long captureTime, long startTimeMillis, long endTimeMillis) {
+        return new ReplicationOp<>(FLUSH, captureTime, null, null, startTimeMillis, endTimeMillis);
+    }
+}
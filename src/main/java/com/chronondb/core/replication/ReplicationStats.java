@@ -0,0 +1,86 @@
+package com.chronondb.core.replication;
+
+/**
+ * Replication statistics, immutable snapshot
+ */
+public final class ReplicationStats {
+
+    private final long operations;
+    private final long batches;
+    private final long snapshots;
+    private final long pendingOperations;
+    private final long lagMillis;
+    private final long uptimeMillis;
+
+    ReplicationStats(long operations, long batches, long snapshots, long pendingOperations, long lagMillis,
+                     long uptimeMillis) {
+        this.operations = operations;
+        this.batches = batches;
+        this.snapshots = snapshots;
+        this.pendingOperations = pendingOperations;
+        this.lagMillis = lagMillis;
+        this.uptimeMillis = uptimeMillis;
+    }
+
+    /**
+     * Operations shipped (leader) or applied (follower), snapshot items included
+     *
+     * @return Operations count
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * Batches shipped or applied, heartbeats included
+     *
+     * @return Batches count
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Full re-syncs from a snapshot, the initial one included
+     *
+     * @return Snapshots count
+     */
+    public long getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Operations captured on leader and not shipped yet. Always 0 on follower
+     *
+     * @return Pending operations
+     */
+    public long getPendingOperations() {
+        return pendingOperations;
+    }
+
+    /**
+     * Follower: time between capture of the operation on leader and its apply on follower, for the last applied batch.
+     * Clocks of leader and follower Logs are assumed to be in sync. Leader: age of the oldest operation waiting in the
+     * follower queue, 0 if the queue is empty
+     *
+     * @return Lag, ms
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * Average throughput since the stream started
+     *
+     * @return Operations per second
+     */
+    public long getOperationsPerSecond() {
+        return uptimeMillis <= 0 ? operations : operations * 1000 / uptimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "operations=" + operations + ", batches=" + batches + ", snapshots=" + snapshots
+                + ", pending=" + pendingOperations + ", lag=" + lagMillis + "ms, " + getOperationsPerSecond() + " ops/sec";
+    }
+}
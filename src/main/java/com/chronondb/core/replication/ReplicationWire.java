@@ -0,0 +1,94 @@
+package com.chronondb.core.replication;
+
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.net.Codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Replication stream format. Leader writes, follower reads, nothing goes back.
+ * <pre>
+ * [SNAPSHOT_BEGIN][long leaderTime]                 follower drops everything it has
+ * [BATCH][long leaderTime][int count][op]...        snapshot items and live operations
+ * [SNAPSHOT_END][long leaderTime]                   follower is in sync, live operations follow
+ * op:  [byte type][long captureTime][body]
+ * ADD: [bytes id][long registerTime][long ttl][bytes payload], REMOVE: [bytes id], FLUSH: [long start][long end]
+ * </pre>
+ * Bytes are length-prefixed, -1 length is null.
+ */
+final class ReplicationWire {
+
+    static final byte SNAPSHOT_BEGIN = 'S';
+    static final byte SNAPSHOT_END = 'E';
+    static final byte BATCH = 'B';
+
+    private ReplicationWire() {
+    }
+
+    static <K, V> void writeBatch(DataOutputStream out, long leaderTime, List<ReplicationOp<K, V>> batch,
+                                  Codec<K> keyCodec, Codec<V> payloadCodec) throws IOException {
+        out.writeByte(BATCH);
+        out.writeLong(leaderTime);
+        out.writeInt(batch.size());
+
+        for (var op : batch) {
+            out.writeByte(op.type);
+            out.writeLong(op.captureTime);
+            switch (op.type) {
+                case ReplicationOp.ADD:
+                    writeBytes(out, keyCodec.encode(op.item.getId()));
+                    out.writeLong(op.item.getRegisterTime());
+                    out.writeLong(op.item.getTtl());
+                    writeBytes(out, op.item.getPayLoad() == null ? null : payloadCodec.encode(op.item.getPayLoad()));
+                    break;
+                case ReplicationOp.REMOVE:
+                    writeBytes(out, keyCodec.encode(op.itemId));
+                    break;
+                default:
+                    out.writeLong(op.startTimeMillis);
+                    out.writeLong(op.endTimeMillis);
+            }
+        }
+    }
+
+    static <K, V> ReplicationOp<K, V> readOp(DataInputStream in, Codec<K> keyCodec, Codec<V> payloadCodec)
+            throws IOException {
+        byte type = in.readByte();
+        long captureTime = in.readLong();
+
+        switch (type) {
+            case ReplicationOp.ADD:
+                K itemId = keyCodec.decode(readBytes(in, in.readInt()));
+                long registerTime = in.readLong();
+                long ttl = in.readLong();
+                int payloadLength = in.readInt();
+                V payload = payloadLength < 0 ? null : payloadCodec.decode(readBytes(in, payloadLength));
+                return ReplicationOp.add(captureTime, new LogItem<>(itemId, registerTime, ttl, payload));
+            case ReplicationOp.REMOVE:
+                return ReplicationOp.remove(captureTime, keyCodec.decode(readBytes(in, in.readInt())));
+            case ReplicationOp.FLUSH:
+                return ReplicationOp.flush(captureTime, in.readLong(), in.readLong());
+            default:
+                throw new IOException("Replication stream is corrupted, unknown operation " + type);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in, int length) throws IOException {
+        if (length < 0) throw new IOException("Replication stream is corrupted, unexpected null");
+        var bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,95 @@
+package com.chronondb.core.time;
+
+/**
+ * Coarse cached clock. A single daemon ticker thread publishes current millisecond into a volatile field, so readers
+ * pay a volatile read instead of a clock call.
+ * <p>
+ * Published time never goes backward, even if wall clock does (NTP adjustment etc.). This is exactly what block
+ * rotation wants: no block from the future.
+ * <p>
+ * Resolution is a tick interval. With 1ms tick (default) behavior is the same as system clock for the Log, with bigger
+ * ticks register times are just coarser. Don't forget to close it, or ticker will live until JVM exit.
+ */
+public final class CachedTimeSource implements TimeSource, AutoCloseable {
+
+    /**
+     * Default tick interval, ms
+     */
+    public static final int DEFAULT_TICK_MS = 1;
+
+    private final long tickMs;
+
+    private final Thread ticker;
+
+    private volatile long now;
+
+    private volatile boolean running = true;
+
+    private CachedTimeSource(long tickMs) {
+        this.tickMs = tickMs;
+        this.now = System.currentTimeMillis();
+        this.ticker = new Thread(this::tick, "chronondb-clock");
+        this.ticker.setDaemon(true);
+    }
+
+    /**
+     * Create and start cached clock with default tick
+     *
+     * @return Running clock
+     */
+    public static CachedTimeSource start() {
+        return start(DEFAULT_TICK_MS);
+    }
+
+    /**
+     * Create and start cached clock
+     *
+     * @param tickMs Tick interval in ms, must be positive
+     * @return Running clock
+     */
+    public static CachedTimeSource start(long tickMs) {
+        if (tickMs <= 0) throw new IllegalArgumentException("Tick must be positive, got " + tickMs);
+
+        var clock = new CachedTimeSource(tickMs);
+        clock.ticker.start();
+        return clock;
+    }
+
+    private void tick() {
+        while (running) {
+            // single writer, so no CAS needed to keep it monotonic
+            long time = System.currentTimeMillis();
+            if (time > now) now = time;
+
+            try {
+                Thread.sleep(tickMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * Is ticker still running
+     *
+     * @return Is ticker still running
+     */
+    public boolean isRunning() {
+        return running && ticker.isAlive();
+    }
+
+    /**
+     * Stops the ticker. Clock will keep returning the last published time.
+     */
+    @Override
+    public void close() {
+        running = false;
+        ticker.interrupt();
+    }
+}
@@ -0,0 +1,50 @@
+package com.chronondb.core.time;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Manual clock for deterministic tests and benchmarks. Time moves only when you say so.
+ * <p>
+ * Moving time backward is prohibited, Log is not ready for it.
+ */
+public final class ManualTimeSource implements TimeSource {
+
+    private final AtomicLong now;
+
+    /**
+     * Create manual clock
+     *
+     * @param startTimeMillis Initial time, ms
+     */
+    public ManualTimeSource(long startTimeMillis) {
+        this.now = new AtomicLong(startTimeMillis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now.get();
+    }
+
+    /**
+     * Move clock forward
+     *
+     * @param deltaMillis How much to move, ms, non-negative
+     * @return New time
+     */
+    public long advance(long deltaMillis) {
+        if (deltaMillis < 0) throw new IllegalArgumentException("Time can't go backward, delta " + deltaMillis);
+        return now.addAndGet(deltaMillis);
+    }
+
+    /**
+     * Set clock to the exact time
+     *
+     * @param timeMillis New time, must not be less than current one
+     */
+    public void set(long timeMillis) {
+        now.accumulateAndGet(timeMillis, (prev, next) -> {
+            if (next < prev) throw new IllegalArgumentException("Time can't go backward: " + prev + " -> " + next);
+            return next;
+        });
+    }
+}
@@ -0,0 +1,20 @@
+package com.chronondb.core.time;
+
+/**
+ * Default time source, plain {@link System#currentTimeMillis()} on every call
+ */
+public final class SystemTimeSource implements TimeSource {
+
+    /**
+     * Shared instance, there is no state anyway
+     */
+    public static final SystemTimeSource INSTANCE = new SystemTimeSource();
+
+    private SystemTimeSource() {
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
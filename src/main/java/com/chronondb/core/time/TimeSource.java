@@ -0,0 +1,17 @@
+package com.chronondb.core.time;
+
+/**
+ * Source of the "current millisecond" for the Log and its blocks.
+ * <p>
+ * Every ADD, GET, range query, FLUSH and VACUUM asks for the current time, so this is a hot path. Implementation
+ * MUST be thread-safe and SHOULD be monotonic, otherwise block rotation may detect a block from the future.
+ */
+public interface TimeSource {
+
+    /**
+     * Current time
+     *
+     * @return current time in milliseconds, absolute
+     */
+    long currentTimeMillis();
+}
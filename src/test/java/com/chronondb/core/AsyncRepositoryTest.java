@@ -0,0 +1,176 @@
+package com.chronondb.core;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.exception.OverloadException;
+import com.chronondb.core.memstore.Log;
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.properties.DefaultLogProperties;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncRepositoryTest {
+
+    @Test
+    public void testBaseSimple() throws DatabaseGenericException {
+        Log<Long, String> log = new Log<>(new DefaultLogProperties());
+        try (var repository = AsyncRepository.wrap(log)) {
+            int count = 10 * 1000;
+            var futures = new ArrayList<CompletableFuture<Void>>(count);
+            for (long i = 0; i < count; i++) futures.add(repository.addAsync(i, Long.MAX_VALUE, "v" + i));
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), count);
+
+            // point operations are ordered
+            var removed = repository.removeAsync(1L);
+            var gone = repository.getAsync(1L);
+            Assert.assertNull(removed.join());
+            Assert.assertNull(gone.join());
+            Assert.assertEquals(repository.getAsync(2L).join().getPayLoad(), "v2");
+
+            Assert.assertEquals(repository.getAsync(0L, Long.MAX_VALUE).join().size(), count - 1);
+            repository.flushAsync(Long.MIN_VALUE, Long.MAX_VALUE).join();
+            Assert.assertTrue(repository.getAsync(0L, Long.MAX_VALUE).join().isEmpty());
+        }
+    }
+
+    @Test
+    public void testBatching() throws Exception {
+        var counting = new CountingRepository(new Log<>(new DefaultLogProperties()));
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var repository = AsyncRepository.wrap(counting, executor);
+            repository.addAsync(1L, Long.MAX_VALUE, "one").join();
+
+            // hold the executor, so everything below lands in one batch
+            var gate = new CountDownLatch(1);
+            executor.execute(() -> {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            var before = new ArrayList<CompletableFuture<LogItem<Long, String>>>();
+            for (int i = 0; i < 10; i++) before.add(repository.getAsync(1L));
+            var write = repository.addAsync(1L, Long.MAX_VALUE, "two");
+            var after = repository.getAsync(1L);
+            gate.countDown();
+
+            for (var get : before) Assert.assertEquals(get.join().getPayLoad(), "one");
+            write.join();
+            // write in between, so the get after it reads again
+            Assert.assertEquals(after.join().getPayLoad(), "two");
+            Assert.assertEquals(counting.gets.get(), 2);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailures() {
+        var counting = new CountingRepository(new Log<>(new DefaultLogProperties()));
+        try (var repository = AsyncRepository.wrap(counting)) {
+            var failed = repository.addAsync(CountingRepository.BROKEN, Long.MAX_VALUE, "x");
+            var ok = repository.addAsync(2L, Long.MAX_VALUE, "y");
+
+            var e = Assert.expectThrows(CompletionException.class, failed::join);
+            Assert.assertTrue(e.getCause() instanceof OverloadException);
+            // the rest of the batch is fine
+            Assert.assertNull(ok.join());
+        }
+
+        // nobody to run it
+        var executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        var repository = AsyncRepository.wrap(counting, executor);
+        Assert.assertThrows(CompletionException.class, () -> repository.getAsync(1L).join());
+        Assert.assertThrows(CompletionException.class, () -> repository.getAsync(0L, 1L).join());
+    }
+
+    @Test
+    public void testParallelLanes() throws Exception {
+        var counting = new CountingRepository(new Log<>(new DefaultLogProperties()));
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var repository = AsyncRepository.wrap(counting, executor, 4);
+            var stuck = repository.getAsync(CountingRepository.SLOW);
+
+            // one slow operation holds up its own lane only
+            var writes = new ArrayList<CompletableFuture<Void>>();
+            for (long id = 0; id < 100; id++) writes.add(repository.addAsync(id, Long.MAX_VALUE, "v" + id));
+            long deadline = System.currentTimeMillis() + 10 * 1000;
+            while (writes.stream().filter(CompletableFuture::isDone).count() < 50) {
+                if (System.currentTimeMillis() > deadline) Assert.fail("Lanes are not drained in parallel");
+                Thread.sleep(10);
+            }
+            Assert.assertFalse(stuck.isDone());
+
+            counting.slow.countDown();
+            Assert.assertNull(stuck.join());
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+            Assert.assertEquals(repository.getAsync(0L, Long.MAX_VALUE).join().size(), 100);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Counts point reads, fails writes of a broken Id, reads of a slow Id wait for the latch
+     */
+    private static final class CountingRepository implements ItemRepository<Long, String> {
+        static final long BROKEN = -1L;
+        static final long SLOW = -2L;
+
+        final ItemRepository<Long, String> repository;
+        final AtomicInteger gets = new AtomicInteger();
+        final CountDownLatch slow = new CountDownLatch(1);
+
+        CountingRepository(ItemRepository<Long, String> repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public void add(Long itemId, long expiryTimeMillis, String payload) throws DatabaseGenericException {
+            if (itemId == BROKEN) throw new OverloadException("Broken");
+            repository.add(itemId, expiryTimeMillis, payload);
+        }
+
+        @Override
+        public void remove(Long itemId) throws DatabaseGenericException {
+            repository.remove(itemId);
+        }
+
+        @Override
+        public Collection<LogItem<Long, String>> get(long startTimeMillis, long endTimeMillis)
+                throws DatabaseGenericException {
+            return repository.get(startTimeMillis, endTimeMillis);
+        }
+
+        @Override
+        public LogItem<Long, String> get(Long itemId) throws DatabaseGenericException {
+            gets.incrementAndGet();
+            if (itemId == SLOW) {
+                try {
+                    slow.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return repository.get(itemId);
+        }
+
+        @Override
+        public void flush(long startTimeMillis, long endTimeMillis) throws DatabaseGenericException {
+            repository.flush(startTimeMillis, endTimeMillis);
+        }
+    }
+}
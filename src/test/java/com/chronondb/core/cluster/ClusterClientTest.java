@@ -0,0 +1,224 @@
+package com.chronondb.core.cluster;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.memstore.Log;
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.net.Codecs;
+import com.chronondb.core.net.LogServer;
+import com.chronondb.core.properties.DefaultClusterProperties;
+import com.chronondb.core.properties.DefaultLogProperties;
+import com.chronondb.core.properties.DefaultServerProperties;
+import com.chronondb.core.time.ManualTimeSource;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class ClusterClientTest {
+
+    private static final int NODES = 3;
+
+    private ManualTimeSource clock;
+    private final List<Log<Long, String>> logs = new ArrayList<>();
+    private final List<LogServer<Long, String>> servers = new ArrayList<>();
+    private final List<InetSocketAddress> addresses = new ArrayList<>();
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        clock = new ManualTimeSource(1000);
+        for (int i = 0; i < NODES; i++) {
+            var log = new Log<Long, String>(new DefaultLogProperties().setBlockSize(100).setTimeSource(clock));
+            // tiny frames, so ranges are really streamed and merged in pieces
+            var server = LogServer.start(log, Codecs.LONG, Codecs.STRING,
+                    new DefaultServerProperties().setPort(0).setWorkerThreads(2).setRangeFrameSize(7));
+            logs.add(log);
+            servers.add(server);
+            addresses.add(new InetSocketAddress("localhost", server.getPort()));
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        for (var server : servers) server.close();
+        logs.clear();
+        servers.clear();
+        addresses.clear();
+    }
+
+    @Test
+    public void testPartitionedWritesAndMergedRange() throws Exception {
+        try (var cluster = ClusterClient.connect(addresses, Codecs.LONG, Codecs.STRING,
+                new DefaultClusterProperties())) {
+            int count = 3000;
+            for (long id = 0; id < count; id++) {
+                clock.set(1000 + id / 10);
+                cluster.add(id, Long.MAX_VALUE, "v" + id);
+            }
+
+            // every key lives on its owner only, owners share the load
+            int total = 0;
+            for (int i = 0; i < NODES; i++) {
+                int size = logs.get(i).get(0, Long.MAX_VALUE).size();
+                Assert.assertTrue(size > count / NODES / 2, "Node " + i + " has " + size);
+                total += size;
+            }
+            Assert.assertEquals(total, count);
+            Assert.assertEquals(cluster.get(1234L).getPayLoad(), "v1234");
+            var owner = logs.get(cluster.getNodes().indexOf(cluster.nodeFor(1234L)));
+            Assert.assertEquals(owner.get(1234L).getPayLoad(), "v1234");
+
+            // merged stream is ordered by register time and complete
+            var range = cluster.iterator(1100, 1199);
+            var ids = new HashSet<Long>();
+            long last = Long.MIN_VALUE;
+            while (range.hasNext()) {
+                LogItem<Long, String> item = range.next();
+                Assert.assertTrue(item.getRegisterTime() >= last);
+                last = item.getRegisterTime();
+                ids.add(item.getId());
+            }
+            Assert.assertEquals(ids.size(), 1000);
+            Assert.assertTrue(range.isComplete());
+
+            var all = new ArrayList<>(cluster.getAsync(0L, Long.MAX_VALUE).join());
+            Assert.assertEquals(all.size(), count);
+            for (int i = 1; i < all.size(); i++)
+                Assert.assertTrue(all.get(i).getRegisterTime() >= all.get(i - 1).getRegisterTime());
+
+            // pipelined point operations
+            var removes = new ArrayList<CompletableFuture<Void>>();
+            for (long id = 0; id < 100; id++) removes.add(cluster.removeAsync(id));
+            CompletableFuture.allOf(removes.toArray(new CompletableFuture[0])).join();
+            Assert.assertNull(cluster.getAsync(50L).join());
+            Assert.assertEquals(cluster.get(0, Long.MAX_VALUE).size(), count - 100);
+
+            cluster.flush(Long.MIN_VALUE, Long.MAX_VALUE);
+            Assert.assertTrue(cluster.get(0, Long.MAX_VALUE).isEmpty());
+        }
+    }
+
+    @Test
+    public void testPartialFailure() throws Exception {
+        try (var strict = ClusterClient.connect(addresses, Codecs.LONG, Codecs.STRING,
+                new DefaultClusterProperties());
+             var partial = ClusterClient.connect(addresses, Codecs.LONG, Codecs.STRING,
+                     new DefaultClusterProperties().setAllowPartialResults(true))) {
+            for (long id = 0; id < 300; id++) strict.add(id, Long.MAX_VALUE, "v" + id);
+
+            // node goes down
+            servers.remove(0).close();
+            var down = strict.getNodes().get(0);
+            int alive = logs.get(1).get(0, Long.MAX_VALUE).size() + logs.get(2).get(0, Long.MAX_VALUE).size();
+            long lost = -1;
+            for (long id = 0; id < 300 && lost < 0; id++) if (strict.nodeFor(id).equals(down)) lost = id;
+
+            Assert.expectThrows(DatabaseGenericException.class, () -> strict.get(0, Long.MAX_VALUE));
+            Assert.expectThrows(DatabaseGenericException.class, () -> strict.iterator(0, Long.MAX_VALUE));
+            long key = lost;
+            Assert.expectThrows(DatabaseGenericException.class, () -> strict.get(key));
+
+            var range = partial.iterator(0, Long.MAX_VALUE);
+            int size = 0;
+            while (range.hasNext()) {
+                range.next();
+                size++;
+            }
+            Assert.assertEquals(size, alive);
+            Assert.assertEquals(range.getFailedNodes(), List.of(down));
+            Assert.assertEquals(partial.getAsync(0L, Long.MAX_VALUE).join().size(), alive);
+            Assert.assertEquals(partial.getPartialResults(), 2);
+        }
+    }
+
+    @Test
+    public void testTopNAndClose() throws Exception {
+        try (var cluster = ClusterClient.connect(addresses, Codecs.LONG, Codecs.STRING,
+                new DefaultClusterProperties().setTimeoutMs(5000))) {
+            // more than a node stream may buffer
+            var payload = "x".repeat(64 * 1024);
+            for (long id = 0; id < 600; id++) {
+                clock.set(1000 + id);
+                cluster.add(id, Long.MAX_VALUE, payload);
+            }
+
+            // only the oldest ones are needed, the rest is cancelled on all the nodes
+            var top = new ArrayList<Long>();
+            try (var range = cluster.iterator(0, Long.MAX_VALUE)) {
+                while (top.size() < 10 && range.hasNext()) top.add(range.next().getId());
+                range.close();
+                Assert.assertFalse(range.hasNext());
+            }
+            Assert.assertEquals(top, List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L));
+
+            // all the connections go on
+            for (long id = 0; id < 30; id++) Assert.assertEquals(cluster.get(id).getPayLoad(), payload);
+            Assert.assertEquals(cluster.get(0, 1299).size(), 300);
+            Assert.assertEquals(cluster.get(1300, Long.MAX_VALUE).size(), 300);
+        }
+    }
+
+    @Test(timeOut = 10 * 1000)
+    public void testStuckNode() throws Exception {
+        for (long id = 0; id < 10; id++) logs.get(0).add(id, Long.MAX_VALUE, "v" + id);
+
+        try (var stuck = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0))) {
+            var withStuck = new ArrayList<>(addresses);
+            withStuck.add((InetSocketAddress) stuck.getLocalAddress());
+            try (var cluster = ClusterClient.connect(withStuck, Codecs.LONG, Codecs.STRING,
+                    new DefaultClusterProperties().setTimeoutMs(200).setAllowPartialResults(true));
+                 var peer = stuck.accept()) {
+                // the stuck node is left out on timeout
+                Assert.assertEquals(cluster.getAsync(0L, Long.MAX_VALUE).join().size(), 10);
+                Assert.assertEquals(cluster.getPartialResults(), 1);
+
+                // and its range is cancelled, not left pending: the node gets the request and the cancel of it
+                long request = readFrame(peer).getLong();
+                Assert.assertEquals(readFrame(peer).getLong(), request);
+            }
+        }
+    }
+
+    private static ByteBuffer readFrame(SocketChannel channel) throws IOException {
+        var length = ByteBuffer.allocate(Integer.BYTES);
+        while (length.hasRemaining()) channel.read(length);
+        var frame = ByteBuffer.allocate(length.flip().getInt());
+        while (frame.hasRemaining()) channel.read(frame);
+        return frame.flip();
+    }
+
+    @Test
+    public void testRing() {
+        var nodes = List.of("a:1", "b:1", "c:1", "d:1");
+        var ring = new HashRing(nodes, DefaultClusterProperties.VIRTUAL_NODES);
+        var grown = new HashRing(List.of("a:1", "b:1", "c:1", "d:1", "e:1"), DefaultClusterProperties.VIRTUAL_NODES);
+
+        var load = new HashMap<String, Integer>();
+        int keys = 100 * 1000;
+        int moved = 0;
+        for (int i = 0; i < keys; i++) {
+            var key = ("key-" + i).getBytes(StandardCharsets.UTF_8);
+            var node = ring.nodeFor(key);
+            load.merge(node, 1, Integer::sum);
+            var newNode = grown.nodeFor(key);
+            // a key moves to the new node only, never between old ones
+            if (!newNode.equals(node)) {
+                Assert.assertEquals(newNode, "e:1");
+                moved++;
+            }
+        }
+        for (var node : nodes) Assert.assertEquals(load.get(node), keys / 4, keys / 4 * 0.25);
+        Assert.assertEquals(moved, keys / 5, keys / 5 * 0.25);
+    }
+}
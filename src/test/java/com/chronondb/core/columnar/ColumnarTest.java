@@ -0,0 +1,83 @@
+package com.chronondb.core.columnar;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.memstore.Log;
+import com.chronondb.core.net.Codecs;
+import com.chronondb.core.properties.DefaultLogProperties;
+import com.chronondb.core.time.ManualTimeSource;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ColumnarTest {
+
+    private Path file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = Files.createTempFile("chronondb", ".columnar");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testExportAndImport() throws DatabaseGenericException, IOException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock));
+        for (long i = 0; i < 250; i++) {
+            // odd ids have no payload
+            log.add(i, 100 * 1000 + i, i % 2 == 0 ? "v" + i : null);
+            clock.advance(1);
+        }
+
+        try (var writer = ColumnarWriter.create(file, Codecs.LONG, Codecs.STRING, 100)) {
+            Assert.assertEquals(writer.writeAll(log.iterator(0, Long.MAX_VALUE)), 250);
+        }
+
+        var columnar = ColumnarFile.open(file);
+        Assert.assertEquals(columnar.getRows(), 250);
+        Assert.assertEquals(columnar.getBlocks().size(), 3);
+
+        // metadata and columns straight from the mapping
+        var first = columnar.getBlocks().get(0);
+        Assert.assertEquals(first.getRows(), 100);
+        Assert.assertEquals(first.getMinRegisterTime(), 1000);
+        Assert.assertEquals(first.getMaxRegisterTime(), 1099);
+        Assert.assertEquals(first.getMaxTtl(), 100 * 1000 + 99);
+        var times = first.registerTimes();
+        Assert.assertEquals(times.remaining(), 100);
+        for (int row = 0; row < 100; row++) Assert.assertEquals(times.get(row), 1000 + row);
+        Assert.assertEquals(first.getIdBytes(7).getLong(), 7);
+        Assert.assertNull(first.getPayloadBytes(7));
+        Assert.assertEquals(first.getItem(8, Codecs.LONG, Codecs.STRING).getPayLoad(), "v8");
+
+        // range read skips blocks by header
+        var items = columnar.items(1120, 1129, Codecs.LONG, Codecs.STRING);
+        long expected = 120;
+        while (items.hasNext()) Assert.assertEquals((long) items.next().getId(), expected++);
+        Assert.assertEquals(expected, 130);
+
+        // import keeps register times
+        var another = new Log<Long, String>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock));
+        Assert.assertEquals(columnar.importInto(another, Codecs.LONG, Codecs.STRING, 2), 250);
+        Assert.assertEquals(another.get(0, Long.MAX_VALUE).size(), 250);
+        Assert.assertEquals(another.get(42L).getRegisterTime(), 1042);
+        Assert.assertEquals(another.get(42L).getPayLoad(), "v42");
+        Assert.assertNull(another.get(43L).getPayLoad());
+        Assert.assertEquals(another.get(1200, 1249).size(), 50);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testNotColumnar() throws IOException {
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+        ColumnarFile.open(file);
+    }
+}
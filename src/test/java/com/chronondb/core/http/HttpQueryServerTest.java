@@ -0,0 +1,92 @@
+package com.chronondb.core.http;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.memstore.Log;
+import com.chronondb.core.properties.DefaultLogProperties;
+import com.chronondb.core.properties.DefaultServerProperties;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+public class HttpQueryServerTest {
+
+    private Log<Long, String> log;
+    private HttpQueryServer<Long, String> server;
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        log = new Log<>(new DefaultLogProperties());
+        server = HttpQueryServer.start(log, TextCodecs.LONG, TextCodecs.STRING,
+                new DefaultServerProperties().setPort(0).setWorkerThreads(2));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        server.close();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void testItemLifecycle() throws Exception {
+        Assert.assertEquals(send("PUT", "/items/1?ttl=" + Long.MAX_VALUE, "hello \"world\"").statusCode(), 204);
+        Assert.assertEquals(log.get(1L).getPayLoad(), "hello \"world\"");
+
+        var response = send("GET", "/items/1", null);
+        Assert.assertEquals(response.statusCode(), 200);
+        Assert.assertTrue(response.body().startsWith("{\"id\":\"1\",\"registerTime\":"));
+        Assert.assertTrue(response.body().endsWith(",\"ttl\":" + Long.MAX_VALUE + ",\"payload\":\"hello \\\"world\\\"\"}"));
+
+        Assert.assertEquals(send("DELETE", "/items/1", null).statusCode(), 204);
+        Assert.assertEquals(send("GET", "/items/1", null).statusCode(), 404);
+    }
+
+    @Test
+    public void testRangeStreamingCountLimitAndFlush() throws Exception {
+        int count = 5000;
+        for (long i = 0; i < count; i++) log.add(i, Long.MAX_VALUE, i % 2 == 0 ? "v" + i : null);
+
+        var response = send("GET", "/range?from=0&to=" + Long.MAX_VALUE, null);
+        Assert.assertEquals(response.statusCode(), 200);
+        Assert.assertEquals(response.headers().firstValue("Content-Type").orElse(""), HttpQueryServer.NDJSON);
+        var lines = response.body().split("\n");
+        Assert.assertEquals(lines.length, count);
+        Assert.assertTrue(lines[0].startsWith("{\"id\":"));
+
+        Assert.assertEquals(send("GET", "/range?from=0&to=" + Long.MAX_VALUE + "&limit=10", null).body().split("\n").length, 10);
+        Assert.assertEquals(send("GET", "/range?from=0&to=" + Long.MAX_VALUE + "&count=true", null).body(), "{\"count\":" + count + "}");
+        Assert.assertEquals(send("GET", "/range?from=0&to=" + Long.MAX_VALUE + "&count=true&limit=7", null).body(), "{\"count\":7}");
+
+        Assert.assertEquals(send("POST", "/flush?from=0&to=" + Long.MAX_VALUE, null).statusCode(), 204);
+        Assert.assertEquals(send("GET", "/range?from=0&to=" + Long.MAX_VALUE + "&count=true", null).body(), "{\"count\":0}");
+    }
+
+    @Test
+    public void testBadRequests() throws Exception {
+        Assert.assertEquals(send("GET", "/range?from=0", null).statusCode(), 400);
+        Assert.assertEquals(send("GET", "/items/abc", null).statusCode(), 400);
+        Assert.assertEquals(send("PUT", "/items/1", "no ttl").statusCode(), 400);
+        Assert.assertEquals(send("GET", "/flush?from=0&to=1", null).statusCode(), 405);
+    }
+
+    @Test
+    public void testEmptyRange() throws IOException, InterruptedException, DatabaseGenericException {
+        var response = send("GET", "/range?from=0&to=" + Long.MAX_VALUE, null);
+        Assert.assertEquals(response.statusCode(), 200);
+        Assert.assertEquals(response.body(), "");
+        Assert.assertTrue(log.get(0, Long.MAX_VALUE).isEmpty());
+    }
+}
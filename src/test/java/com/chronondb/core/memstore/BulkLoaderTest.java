@@ -0,0 +1,75 @@
+package com.chronondb.core.memstore;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.properties.DefaultLogProperties;
+import com.chronondb.core.time.ManualTimeSource;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkLoaderTest {
+
+    @Test
+    public void testLoadHistory() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(100 * 1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(100).setTimeSource(clock));
+        log.add(-1L, Long.MAX_VALUE, "now");
+        // a block in the past is there already
+        log.replay(new LogItem<>(-2L, 50 * 1000 + 50, Long.MAX_VALUE, "old"));
+
+        // one item per ms for 90 seconds, every 10th one already expired, one more from the future
+        var items = new ArrayList<LogItem<Long, String>>();
+        for (long time = 10 * 1000; time < 100 * 1000; time++)
+            items.add(new LogItem<>(time, time, time % 10 == 0 ? 1 : Long.MAX_VALUE, "v" + time));
+        items.add(new LogItem<>(-3L, 200 * 1000, Long.MAX_VALUE, "future"));
+
+        long loaded = log.bulkLoader(4).load(items.iterator());
+        Assert.assertEquals(loaded, 81 * 1000 + 1);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), loaded + 2);
+
+        // by key and by range, built blocks are sealed already
+        Assert.assertEquals(log.get(12345L).getRegisterTime(), 12345);
+        Assert.assertEquals(log.get(12345L).getPayLoad(), "v12345");
+        Assert.assertNull(log.get(12340L));
+        Assert.assertEquals(log.get(20 * 1000, 20 * 1000 + 99).size(), 90);
+        Assert.assertTrue(log.findBlock(20 * 1000).isSealed());
+        // existing block got its items the regular way
+        Assert.assertEquals(log.get(50 * 1000, 50 * 1000 + 99).size(), 91);
+        Assert.assertFalse(log.findBlock(50 * 1000).isSealed());
+        Assert.assertEquals(log.get(-3L).getRegisterTime(), 100 * 1000);
+
+        // regular writes keep working after splice
+        clock.advance(1000);
+        log.add(-4L, Long.MAX_VALUE, "after");
+        Assert.assertEquals(log.get(-4L).getRegisterTime(), 101 * 1000);
+    }
+
+    @Test
+    public void testLoadUpsert() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(100 * 1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(100).setTimeSource(clock)
+                .setUpsert(true));
+        log.add(1L, Long.MAX_VALUE, "now");
+
+        log.bulkLoader(2).load(List.of(
+                new LogItem<>(1L, 1000, Long.MAX_VALUE, "older"),
+                new LogItem<>(2L, 1000, Long.MAX_VALUE, "first"),
+                new LogItem<>(2L, 5000, Long.MAX_VALUE, "second")).iterator());
+
+        // one version of a key, the newest one
+        Assert.assertEquals(log.get(1L).getPayLoad(), "now");
+        Assert.assertEquals(log.get(2L).getPayLoad(), "second");
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), 2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnsorted() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(100 * 1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setTimeSource(clock));
+        log.bulkLoader(2).load(List.of(
+                new LogItem<>(1L, 5000, Long.MAX_VALUE, "b"),
+                new LogItem<>(2L, 1000, Long.MAX_VALUE, "a")).iterator());
+    }
+}
@@ -2,6 +2,7 @@ package com.chronondb.core.memstore;
 
 import com.chronondb.core.exception.DatabaseGenericException;
 import com.chronondb.core.properties.DefaultLogProperties;
+import com.chronondb.core.time.ManualTimeSource;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -48,6 +49,55 @@ public class LogBlockTest {
         Assert.assertEquals(LogBlock.calculateBlockEnd(1233, 1234), 1522755);
     }
 
+    @Test
+    public void testKeyFilterSealAndSearch() {
+        var clock = new ManualTimeSource(0);
+        var settings = new DefaultLogProperties().setBlockSize(100).setTimeSource(clock).setKeyFilterExpectedItems(100);
+        var block = new LogBlock<Long, String>(settings);
+
+        // ten times more than expected, open filter gets crowded but never lies about presence
+        for (long i = 0; i < 1000; i++) block.add(i, i % 100, Long.MAX_VALUE, null);
+        for (long i = 0; i < 1000; i++) Assert.assertTrue(block.mightContain(i));
+
+        block.sealUnsafe();
+        Assert.assertTrue(block.isSealed());
+        for (long i = 0; i < 1000; i++) Assert.assertTrue(block.mightContain(i));
+
+        // sealed filter is sized for the content, ~1% false positives
+        int falsePositives = 0;
+        for (long i = 1000; i < 11000; i++) if (block.mightContain(i)) falsePositives++;
+        Assert.assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+
+        // late item after seal is still found
+        block.add(5000L, 50, Long.MAX_VALUE, "late");
+        Assert.assertEquals(block.find(5000L).getPayLoad(), "late");
+        Assert.assertNull(block.find(-1L));
+        Assert.assertTrue(block.remove(5000L));
+        Assert.assertFalse(block.remove(5000L));
+    }
+
+    @Test
+    public void testScanAndPurgeAcrossChain() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(0);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock)
+                .setKeyFilterExpectedItems(16));
+
+        for (long i = 0; i < 100; i++) {
+            log.add(i, Long.MAX_VALUE, "v" + i);
+            clock.advance(1);
+        }
+        // seals closed blocks, vacuum delay keeps all of them
+        log.vacuum();
+
+        Assert.assertEquals(log.scan(42L).getPayLoad(), "v42");
+        Assert.assertNull(log.scan(1000L));
+
+        Assert.assertEquals(log.purge(42L), 1);
+        Assert.assertNull(log.scan(42L));
+        Assert.assertNull(log.get(42L));
+        Assert.assertEquals(log.purge(42L), 0);
+    }
+
     @Test
     public void linearReadEraseVacuumTest() throws InterruptedException, DatabaseGenericException {
         // one-thread block read-erase-vacuum
@@ -4,9 +4,11 @@ import com.chronondb.core.properties.DefaultLogProperties;
 
 import java.util.ArrayList;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class LogMTRunner {
 
@@ -36,4 +38,37 @@ public class LogMTRunner {
         globalStat.print();
 
     }
+
+    /**
+     * Writes only: all threads start at once and add their own keys, so they share the same milliseconds
+     *
+     * @return Writes per second of all threads together, wall clock
+     */
+    static long runLogWriteThroughputMTTest(int threads, int chunk, int writeStripes) throws ExecutionException, InterruptedException {
+        Log<Long, Integer> log = new Log<Long, Integer>(new DefaultLogProperties().setLockThresholdMs(400).setWriteStripes(writeStripes));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        var start = new CountDownLatch(1);
+
+        var results = new ArrayList<Future<?>>(threads);
+        for (int i = 0; i < threads; i++) {
+            long first = (long) i * chunk;
+            results.add(executorService.submit(() -> {
+                start.await();
+                for (long id = first; id < first + chunk; id++) log.add(id, Long.MAX_VALUE, (int) id);
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (var result : results) result.get();
+        long elapsed = System.nanoTime() - begin;
+
+        executorService.shutdown();
+        long tps = (long) threads * chunk * 1000 * 1000 * 1000 / Math.max(1, elapsed);
+        System.out.println("WRITE THROUGHPUT REPORT -- Threads: " + threads + ", write stripes " + writeStripes + ", chunk size is " + chunk + " records");
+        System.out.println("Write is " + tps + " TPS");
+        return tps;
+    }
 }
@@ -1,15 +1,23 @@
 package com.chronondb.core.memstore;
 
 import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.exception.LateDataException;
 import com.chronondb.core.properties.DefaultLogProperties;
+import com.chronondb.core.time.ManualTimeSource;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class LogTest {
 
@@ -102,6 +110,674 @@ public class LogTest {
         Assert.assertNull(log.get(123L));
     }
 
+    @Test
+    public void testManualClockRotationAndTTL() throws DatabaseGenericException {
+        // with manual clock block rotation and TTL are fully deterministic, no sleeps
+        var clock = new ManualTimeSource(1000);
+        Log<Long, Integer> log = new Log<>(new DefaultLogProperties()
+                .setBlockSize(10)
+                .setBlockVacuumDelayMs(0)
+                .setBlockVacuumDelayBlocksize(0)
+                .setTimeSource(clock));
+
+        log.add(1L, 1050, null);
+        Assert.assertEquals(log.get(1L).getRegisterTime(), 1000);
+
+        // next block
+        clock.advance(15);
+        log.add(2L, Long.MAX_VALUE, null);
+        Assert.assertEquals(log.get(2L).getRegisterTime(), 1015);
+        Assert.assertEquals(log.get(1000, 1009).size(), 1);
+        Assert.assertEquals(log.get(1010, 1019).size(), 1);
+
+        // item 1 expires exactly after its TTL
+        clock.set(1050);
+        Assert.assertEquals((long) log.get(1L).getId(), 1L);
+        clock.advance(1);
+        Assert.assertNull(log.get(1L));
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), 1);
+
+        // rotate again, chain is too short for VACUUM, nothing is lost
+        clock.advance(30);
+        log.add(3L, Long.MAX_VALUE, null);
+        Assert.assertEquals(log.get(3L).getRegisterTime(), 1081);
+        Assert.assertEquals(log.vacuum(), 0);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), 2);
+    }
+
+    @Test
+    public void testLabelIndex() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        // payload is "tenant/region"
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock), Map.of(
+                "tenant", payload -> payload.substring(0, payload.indexOf('/')),
+                "region", payload -> payload.substring(payload.indexOf('/') + 1)));
+
+        for (long i = 0; i < 100; i++) {
+            log.add(i, Long.MAX_VALUE, (i % 3 == 0 ? "a" : "b") + "/" + (i % 2 == 0 ? "eu" : "us"));
+            clock.advance(1);
+        }
+        log.add(1000L, Long.MAX_VALUE, null);
+
+        // 34 of "a", half of them in "eu"
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE, Map.of("tenant", "a")).size(), 34);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE, Map.of("tenant", "a", "region", "eu")).size(), 17);
+        Assert.assertTrue(log.get(0, Long.MAX_VALUE, Map.of("tenant", "c")).isEmpty());
+        // time range still applies, 1000..1009 is the first block
+        for (var item : log.get(1000, 1009, Map.of("tenant", "a")))
+            Assert.assertTrue(item.getRegisterTime() <= 1009 && item.getId() % 3 == 0);
+        Assert.assertEquals(log.get(1000, 1009, Map.of("tenant", "a")).size(), 4);
+        // no filter is a regular range
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE, Map.of()).size(), 101);
+
+        // removed items are skipped
+        log.remove(0L);
+        log.flush(1010, 1019);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE, Map.of("tenant", "a")).size(), 30);
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> log.get(0, Long.MAX_VALUE, Map.of("device", "x")));
+    }
+
+    @Test
+    public void testDescendingLatestAndTop() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock));
+
+        // one item per ms across 10 blocks, TTL goes the other way round
+        for (long i = 0; i < 100; i++) {
+            log.add(i, 100_000 - i * 10, null);
+            clock.advance(1);
+        }
+
+        var items = log.descendingIterator(0, Long.MAX_VALUE);
+        long expected = 99;
+        while (items.hasNext()) Assert.assertEquals((long) items.next().getId(), expected--);
+        Assert.assertEquals(expected, -1);
+
+        var latest = log.latest(5, 0, Long.MAX_VALUE);
+        Assert.assertEquals(latest.size(), 5);
+        Assert.assertEquals((long) latest.get(0).getId(), 99);
+        Assert.assertEquals((long) latest.get(4).getId(), 95);
+
+        // range end is honored, first block is 1000..1009
+        latest = log.latest(3, 0, 1009);
+        Assert.assertEquals((long) latest.get(0).getId(), 9);
+        Assert.assertEquals(log.latest(100, 1005, 1009).size(), 5);
+
+        Assert.assertEquals(log.top(5, 0, Long.MAX_VALUE, ItemOrder.REGISTER_TIME), log.latest(5, 0, Long.MAX_VALUE));
+        var longest = log.top(3, 0, Long.MAX_VALUE, ItemOrder.TTL);
+        Assert.assertEquals((long) longest.get(0).getId(), 0);
+        Assert.assertEquals((long) longest.get(2).getId(), 2);
+        Assert.assertTrue(log.top(0, 0, Long.MAX_VALUE, ItemOrder.TTL).isEmpty());
+    }
+
+    @Test
+    public void testPagination() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock)
+                .setBlockVacuumDelayMs(0).setBlockVacuumDelayBlocksize(0));
+
+        // several items per bucket, so pages split buckets as well as blocks
+        for (long i = 0; i < 300; i++) {
+            // the first block expires soon, VACUUM takes it in the middle of the read
+            log.add(i, i < 30 ? 1150 : Long.MAX_VALUE, "v" + i);
+            if (i % 3 == 2) clock.advance(1);
+        }
+        clock.advance(1);
+
+        var ids = new HashSet<Long>();
+        var page = log.page(0, Long.MAX_VALUE, 7);
+        int pages = 1;
+        for (var item : page.getItems()) Assert.assertTrue(ids.add(item.getId()));
+        while (page.hasMore()) {
+            Assert.assertTrue(page.getItems().size() <= 7);
+            if (pages == 2) {
+                // read position is in the first block, which is gone now
+                clock.advance(100);
+                log.vacuum();
+            }
+            page = log.page(page.getNextToken(), 7);
+            pages++;
+            for (var item : page.getItems()) Assert.assertTrue(ids.add(item.getId()));
+        }
+
+        // first two pages came before VACUUM, the rest of the first block expired with it
+        Assert.assertEquals(ids.size(), 14 + 270);
+        for (long i = 30; i < 300; i++) Assert.assertTrue(ids.contains(i));
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> log.page("garbage", 10));
+        Assert.assertThrows(IllegalArgumentException.class, () -> log.page(0, Long.MAX_VALUE, 0));
+    }
+
+    @Test
+    public void testUpsert() throws DatabaseGenericException, InterruptedException, ExecutionException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock)
+                .setUpsert(true));
+        Log<Long, String> plain = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock));
+
+        // refresh the same key across blocks and within a bucket
+        for (int i = 0; i < 5; i++) {
+            log.add(1L, Long.MAX_VALUE, "v" + i);
+            log.add(1L, Long.MAX_VALUE, "w" + i);
+            plain.add(1L, Long.MAX_VALUE, "v" + i);
+            clock.advance(7);
+        }
+
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), 1);
+        Assert.assertEquals(log.get(1L).getPayLoad(), "w4");
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).iterator().next().getPayLoad(), "w4");
+        // without upsert every refresh leaves a stale copy behind
+        Assert.assertEquals(plain.get(0, Long.MAX_VALUE).size(), 5);
+
+        // concurrent refreshes of the same keys still leave exactly one version per key
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        var tasks = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < 4; t++) {
+            tasks.add(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    log.add((long) (i % 50), Long.MAX_VALUE, null);
+                    if (i % 100 == 0) clock.advance(1);
+                }
+                return null;
+            });
+        }
+        for (var future : executor.invokeAll(tasks)) future.get();
+        executor.shutdown();
+
+        var ids = new HashSet<Long>();
+        for (var item : log.get(0, Long.MAX_VALUE)) Assert.assertTrue(ids.add(item.getId()));
+        Assert.assertEquals(ids.size(), 50);
+    }
+
+    @Test
+    public void testTouch() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock));
+
+        for (long i = 0; i < 10; i++) log.add(i, 1100, "v" + i);
+        var item = log.get(1L);
+
+        // heartbeat: same item, same place, new TTL
+        Assert.assertTrue(log.touch(1L, 2000));
+        Assert.assertSame(log.get(1L), item);
+        Assert.assertEquals(item.getTtl(), 2000);
+        Assert.assertEquals(item.getRegisterTime(), 1000);
+
+        Assert.assertEquals(log.touch(List.of(2L, 3L, 42L), 3000), 2);
+        Assert.assertFalse(log.touch(42L, 3000));
+
+        // the rest expires, touched ones stay
+        clock.set(1500);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), 3);
+        Assert.assertFalse(log.touch(4L, 5000));
+        clock.set(2500);
+        Assert.assertNull(log.get(1L));
+        Assert.assertEquals(log.get(3L).getTtl(), 3000);
+    }
+
+    @Test
+    public void testAdaptiveBlockSize() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock)
+                .setMinBlockSize(5).setMaxBlockSize(1000).setTargetBlockItems(100));
+        long id = 0;
+
+        // peak: 1000 items in the first 10ms block, next one is as short as allowed
+        for (int i = 0; i < 1000; i++) log.add(id++, Long.MAX_VALUE, "peak");
+        clock.set(1010);
+        log.add(id++, Long.MAX_VALUE, "peak");
+        Assert.assertEquals(log.findBlock(1010).getBlockStart(), 1010);
+        Assert.assertEquals(log.findBlock(1010).getBlockSize(), 5);
+
+        // quiet: one item per block, blocks grow up to the max
+        for (int i = 0; i < 20; i++) {
+            clock.set(log.findBlock(clock.currentTimeMillis()).getBlockEnd() + 1);
+            log.add(id++, Long.MAX_VALUE, "quiet");
+        }
+        var quietBlock = log.findBlock(clock.currentTimeMillis());
+        Assert.assertEquals(quietBlock.getBlockSize(), 1000);
+
+        // peak again, size goes down at the next rotation
+        for (int i = 0; i < 10 * 1000; i++) log.add(id++, Long.MAX_VALUE, "peak");
+        clock.set(quietBlock.getBlockEnd() + 1);
+        log.add(id++, Long.MAX_VALUE, "peak");
+        Assert.assertTrue(log.findBlock(clock.currentTimeMillis()).getBlockSize() < 100);
+
+        // whatever the sizes are, every item is found by key and by range
+        for (long i = 0; i < id; i++) Assert.assertEquals((long) log.get(i).getId(), i);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), id);
+        Assert.assertEquals(log.get(1010, 1014).size(), 1);
+
+        // replay into a gap between blocks, spliced block fits the gap whatever the neighbours are
+        clock.set(clock.currentTimeMillis() + 10 * 1000);
+        log.add(id++, Long.MAX_VALUE, "later");
+        long gapTime = clock.currentTimeMillis() - 5000;
+        Assert.assertNull(log.findBlock(gapTime));
+        log.replay(new LogItem<>(-1L, gapTime, Long.MAX_VALUE, "replayed"));
+        Assert.assertEquals(log.get(-1L).getRegisterTime(), gapTime);
+        Assert.assertEquals(log.get(gapTime, gapTime).size(), 1);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), id + 1);
+    }
+
+    @Test
+    public void testEventTimeAdd() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(10 * 1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock)
+                .setBlockVacuumDelayMs(0).setBlockVacuumDelayBlocksize(0).setAllowedLatenessMs(1000));
+
+        log.add(1L, Long.MAX_VALUE, "now");
+        clock.set(10500);
+        log.add(2L, Long.MAX_VALUE, "now");
+        Assert.assertEquals(log.getWatermark(), 9500);
+
+        // inside the window: lands where it happened, old block or a new one spliced in
+        log.add(3L, 10205, Long.MAX_VALUE, "buffered");
+        log.add(4L, 10003, Long.MAX_VALUE, "buffered");
+        Assert.assertEquals(log.get(3L).getRegisterTime(), 10205);
+        Assert.assertEquals(log.get(4L).getRegisterTime(), 10003);
+        Assert.assertEquals(log.get(10200, 10209).size(), 1);
+        Assert.assertEquals(log.get(10000, 10009).size(), 2);
+
+        // behind the watermark: rejected, or routed aside if there is a handler
+        Assert.expectThrows(LateDataException.class, () -> log.add(5L, 9400, Long.MAX_VALUE, "late"));
+        var late = new ArrayList<LogItem<Long, String>>();
+        log.setLateDataHandler((item, watermark) -> late.add(item));
+        log.add(6L, 9000, Long.MAX_VALUE, "late");
+        Assert.assertEquals(late.size(), 1);
+        Assert.assertEquals(late.get(0).getRegisterTime(), 9000);
+        Assert.assertNull(log.get(6L));
+
+        // client clock ahead is not trusted
+        log.add(7L, 20 * 1000, Long.MAX_VALUE, "future");
+        Assert.assertEquals(log.get(7L).getRegisterTime(), 10500);
+
+        // block is open for late items, so neither sealed nor vacuumable until the watermark passes it
+        clock.set(11100);
+        log.add(8L, Long.MAX_VALUE, "now");
+        log.vacuum();
+        Assert.assertTrue(log.findBlock(10003).isSealed());
+        Assert.assertFalse(log.findBlock(10205).isSealed());
+        Assert.assertFalse(log.findBlock(10205).isVacuumable());
+        clock.set(11300);
+        log.vacuum();
+        Assert.assertTrue(log.findBlock(10205).isSealed());
+        Assert.assertTrue(log.findBlock(10205).isVacuumable());
+    }
+
+    @Test
+    public void testEventTimeAddIdleBlock() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(0);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(1000).setTimeSource(clock)
+                .setAllowedLatenessMs(10 * 1000));
+        log.add(1L, Long.MAX_VALUE, "now");
+
+        // nobody has added for a while, current block is stale, but the event still lands where it happened
+        clock.set(5000);
+        log.add(2L, 3000, Long.MAX_VALUE, "buffered");
+        Assert.assertEquals(log.get(2L).getRegisterTime(), 3000);
+        Assert.assertEquals(ids(log.get(3000, 3999)), List.of(2L));
+        log.add(3L, 5500, Long.MAX_VALUE, "future");
+        log.add(4L, 4200, Long.MAX_VALUE, "buffered");
+        Assert.assertEquals(log.get(4L).getRegisterTime(), 4200);
+
+        // future time inside the current block is not kept either, the item is visible right away
+        Assert.assertEquals(log.get(3L).getRegisterTime(), 5000);
+        Assert.assertEquals(ids(log.get(0, 5000)), List.of(1L, 2L, 4L, 3L));
+    }
+
+    @Test
+    public void testRangeTombstones() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock));
+        for (long i = 0; i < 50; i++) {
+            clock.set(1000 + i);
+            log.add(i, Long.MAX_VALUE, "v" + i);
+        }
+
+        // 1005..1024: a tombstone in 1000..1009 and 1020..1029, 1010..1019 is dropped at once
+        log.flush(1005, 1024);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), 30);
+        // every flushed block waits for VACUUM once, however many FLUSHes hit it
+        log.flush(1005, 1024);
+        Assert.assertEquals(queuedForPurge(log), 3);
+        Assert.assertNull(log.findBlock(1015));
+        Assert.assertNull(log.get(7L));
+        Assert.assertNull(log.get(12L));
+        Assert.assertEquals(log.get(4L).getPayLoad(), "v4");
+        Assert.assertEquals(log.latest(100, 1000, 1029).size(), 10);
+
+        // data is still there physically, VACUUM takes it out
+        Assert.assertEquals(log.findBlock(1000).size(), 10);
+        log.vacuum();
+        Assert.assertEquals(queuedForPurge(log), 0);
+        Assert.assertEquals(log.findBlock(1000).size(), 5);
+        Assert.assertEquals(log.findBlock(1020).size(), 5);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), 30);
+
+        // what comes after FLUSH stays, even the same millisecond or the flushed past
+        log.flush(1040, Long.MAX_VALUE);
+        log.add(100L, Long.MAX_VALUE, "after");
+        log.replay(new LogItem<>(101L, 1015, Long.MAX_VALUE, "replayed"));
+        Assert.assertEquals(log.get(100L).getRegisterTime(), 1049);
+        Assert.assertEquals(log.get(101L).getRegisterTime(), 1015);
+        Assert.assertEquals(log.get(1040, Long.MAX_VALUE).size(), 1);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE).size(), 22);
+        Assert.assertEquals(queuedForPurge(log), 1);
+    }
+
+    private static int queuedForPurge(Log<?, ?> log) {
+        int count = 0;
+        for (var ignored : log.flushedBlocks()) count++;
+        return count;
+    }
+
+    @Test
+    public void testRangePublisher() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock));
+        for (long id = 0; id < 100; id++) {
+            clock.set(1000 + id);
+            log.add(id, Long.MAX_VALUE, "v" + id);
+        }
+
+        var received = new ArrayList<Long>();
+        var completed = new AtomicBoolean();
+        var subscription = new AtomicReference<Flow.Subscription>();
+        log.publisher(0, Long.MAX_VALUE).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.set(s);
+            }
+
+            @Override
+            public void onNext(LogItem<Long, String> item) {
+                received.add(item.getId());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                Assert.fail("Unexpected", throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completed.set(true);
+            }
+        });
+
+        // nothing without demand, exactly the demand after it
+        Assert.assertTrue(received.isEmpty());
+        subscription.get().request(3);
+        Assert.assertEquals(received, List.of(0L, 1L, 2L));
+        subscription.get().request(50);
+        Assert.assertEquals(received.size(), 53);
+        Assert.assertFalse(completed.get());
+
+        // cancelled midway, nothing more
+        subscription.get().cancel();
+        subscription.get().request(100);
+        Assert.assertEquals(received.size(), 53);
+        Assert.assertFalse(completed.get());
+
+        // unbounded, with a request from onNext
+        var all = new ArrayList<Long>();
+        var done = new AtomicBoolean();
+        log.publisher(1050, 1059).subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription s;
+
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                this.s = s;
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(LogItem<Long, String> item) {
+                all.add(item.getId());
+                s.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                Assert.fail("Unexpected", throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.set(true);
+            }
+        });
+        Assert.assertEquals(all.size(), 10);
+        Assert.assertTrue(done.get());
+
+        // empty range completes without demand
+        var empty = new AtomicBoolean();
+        var error = new AtomicReference<Throwable>();
+        Flow.Subscriber<LogItem<Long, String>> lazy = new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.set(s);
+            }
+
+            @Override
+            public void onNext(LogItem<Long, String> item) {
+                // not needed
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                empty.set(true);
+            }
+        };
+        log.publisher(5000, 6000).subscribe(lazy);
+        Assert.assertTrue(empty.get());
+
+        // bad demand is an error
+        log.publisher(0, Long.MAX_VALUE).subscribe(lazy);
+        subscription.get().request(0);
+        Assert.assertTrue(error.get() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testScanVisitor() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, Integer> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock));
+        for (long id = 0; id < 100; id++) {
+            clock.set(1000 + id);
+            log.add(id, id == 7 ? 1050 : Long.MAX_VALUE, (int) id);
+        }
+        log.remove(8L);
+        log.flush(1090, 1094);
+        clock.set(1100);
+
+        // expired, removed and flushed ones are not visited
+        long[] sum = new long[2];
+        Assert.assertTrue(log.scanLong(0, Long.MAX_VALUE, (itemId, registerTime, ttl, payload) -> {
+            Assert.assertEquals(registerTime, 1000 + itemId);
+            sum[0] += itemId;
+            sum[1]++;
+            return true;
+        }));
+        Assert.assertEquals(sum[1], 100 - 1 - 1 - 5);
+        Assert.assertEquals(sum[0], 99 * 100 / 2 - 7 - 8 - (90 + 91 + 92 + 93 + 94));
+
+        // visitor stops it
+        var visited = new ArrayList<Long>();
+        Assert.assertFalse(log.scan(1010, 1030, (itemId, registerTime, ttl, payload) -> {
+            visited.add(itemId);
+            return visited.size() < 5;
+        }));
+        Assert.assertEquals(visited, List.of(10L, 11L, 12L, 13L, 14L));
+
+        // same items as the iterator
+        var scanned = new ArrayList<Integer>();
+        log.scan(1020, 1060, (itemId, registerTime, ttl, payload) -> scanned.add(payload));
+        var iterated = new ArrayList<Integer>();
+        log.iterator(1020, 1060).forEachRemaining(item -> iterated.add(item.getPayLoad()));
+        Assert.assertEquals(scanned, iterated);
+    }
+
+    @Test
+    public void testFilteredGet() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock));
+        for (long id = 0; id < 100; id++) {
+            clock.set(1000 + id);
+            // TTL grows with time, so blocks have disjoint TTL bounds
+            log.add(id, 10000 + id, id % 2 == 0 ? "even" : "odd");
+        }
+
+        var odd = ItemFilter.<Long, String>all().payload("odd"::equals);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE, odd).size(), 50);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE, odd.key(id -> id < 10)).size(), 5);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE, ItemFilter.<Long, String>all().registered(1020, 1029)).size(),
+                10);
+
+        // block of the TTLs only
+        var ttl = ItemFilter.<Long, String>all().ttl(10045, 10047);
+        Assert.assertEquals(ids(log.get(0, Long.MAX_VALUE, ttl)), List.of(45L, 46L, 47L));
+        Assert.assertTrue(log.findBlock(1045).mightHoldTtl(10045, 10047));
+        Assert.assertFalse(log.findBlock(1035).mightHoldTtl(10045, 10047));
+
+        // touched out of the block bounds, still found
+        Assert.assertTrue(log.touch(5L, 20000));
+        Assert.assertEquals(ids(log.get(0, Long.MAX_VALUE, ItemFilter.<Long, String>all().ttl(20000, 20000))),
+                List.of(5L));
+
+        // expired are not there, touched one is
+        clock.set(10050);
+        Assert.assertEquals(log.get(0, Long.MAX_VALUE, ItemFilter.all()).size(), 51);
+        Assert.assertFalse(log.findBlock(1015).mightHoldTtl(10050, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testQuantiles() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, Double> log = new Log<>(new DefaultLogProperties().setBlockSize(100).setTimeSource(clock),
+                Map.of(), payload -> payload);
+        // latency 1..10000 ms, shuffled over 1000 ms, 10 blocks
+        int count = 10 * 1000;
+        for (long id = 0; id < count; id++) {
+            clock.set(1000 + id / 10);
+            log.add(id, Long.MAX_VALUE, (double) (id * 7919 % count + 1));
+        }
+        clock.set(3000);
+        log.add(-1L, Long.MAX_VALUE, null);
+
+        var values = log.quantiles(0, Long.MAX_VALUE, 0, 0.5, 0.99, 1);
+        Assert.assertEquals(values[0], 1, 0.01);
+        Assert.assertEquals(values[1], 5000, 5000 * 0.01);
+        Assert.assertEquals(values[2], 9900, 9900 * 0.01);
+        Assert.assertEquals(values[3], 10000, 10000 * 0.01);
+
+        // edge blocks are scanned, same answer as for the items
+        var items = new ArrayList<Double>();
+        for (var item : log.get(1050, 1549)) items.add(item.getPayLoad());
+        items.sort(null);
+        var median = log.quantiles(1050, 1549, 0.5)[0];
+        Assert.assertEquals(median, items.get((items.size() - 1) / 2), median * 0.01);
+
+        // removed and flushed ones are not counted
+        for (long id = 0; id < count; id++) {
+            if (id * 7919 % count + 1 > 100) log.remove(id);
+        }
+        Assert.assertEquals(log.quantiles(0, Long.MAX_VALUE, 1)[0], 100, 1);
+        log.flush(1000, 1499);
+        log.vacuum();
+        Assert.assertEquals(log.quantiles(1000, 1499, 0.5)[0], Double.NaN);
+        Assert.assertTrue(log.quantiles(0, Long.MAX_VALUE, 1)[0] <= 101);
+
+        Assert.expectThrows(IllegalArgumentException.class, () -> log.quantiles(0, 1, 2));
+        Assert.expectThrows(IllegalStateException.class,
+                () -> new Log<Long, Double>(new DefaultLogProperties()).quantiles(0, 1, 0.5));
+    }
+
+    @Test
+    public void testDistinctCount() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        var settings = new DefaultLogProperties().setBlockSize(100).setTimeSource(clock).setDistinctPrecision(14);
+        Log<Long, String> log = new Log<>(settings);
+        Log<Long, String> users = new Log<>(settings, Map.of(), null, (itemId, payload) -> payload);
+        int count = 50 * 1000;
+        for (long id = 0; id < count; id++) {
+            clock.set(1000 + id / 100);
+            log.add(id, Long.MAX_VALUE, null);
+            users.add(id, Long.MAX_VALUE, "user-" + id % 1000);
+        }
+        clock.set(2000);
+
+        Assert.assertEquals(log.distinctCount(0, Long.MAX_VALUE), count, count * 0.03);
+        // edge blocks are scanned
+        Assert.assertEquals(log.distinctCount(1050, 1249), 20000, 20000 * 0.03);
+        Assert.assertEquals(users.distinctCount(0, Long.MAX_VALUE), 1000, 1000 * 0.03);
+
+        // sketch can't forget, blocks with removals are scanned
+        for (long id = 0; id < count; id += 5) log.remove(id);
+        Assert.assertEquals(log.distinctCount(0, Long.MAX_VALUE), 40000, 40000 * 0.03);
+        log.flush(1000, 1249);
+        Assert.assertEquals(log.distinctCount(0, Long.MAX_VALUE), 20000, 20000 * 0.03);
+
+        // same millisecond replacement takes the previous value out of the count
+        for (long id = count; id < count + 100; id++) {
+            users.add(id, Long.MAX_VALUE, "first-" + id);
+            users.add(id, Long.MAX_VALUE, "second-" + id);
+        }
+        clock.set(2100);
+        Assert.assertEquals(users.distinctCount(2000, 2099), 100, 100 * 0.03);
+
+        Assert.expectThrows(IllegalStateException.class,
+                () -> new Log<Long, String>(new DefaultLogProperties()).distinctCount(0, 1));
+        Assert.expectThrows(IllegalArgumentException.class,
+                () -> new Log<Long, String>(new DefaultLogProperties(), Map.of(), null, (itemId, payload) -> itemId));
+    }
+
+    @Test
+    public void testStripedWrites() throws DatabaseGenericException, InterruptedException, ExecutionException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock)
+                .setWriteStripes(6));
+
+        // everybody writes the same millisecond
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            var tasks = new ArrayList<Callable<Void>>();
+            for (long t = 0; t < 8; t++) {
+                long first = t * 1000;
+                tasks.add(() -> {
+                    for (long id = first; id < first + 1000; id++) log.add(id, Long.MAX_VALUE, "v" + id);
+                    return null;
+                });
+            }
+            for (var future : executor.invokeAll(tasks)) future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(log.get(1000, 1000).size(), 8000);
+        Assert.assertEquals(log.findBlock(1000).size(), 8000);
+        Assert.assertEquals(log.get(4321L).getPayLoad(), "v4321");
+
+        // key still lives in one place: remove and the same millisecond replacement work as before
+        log.remove(4321L);
+        Assert.assertNull(log.get(4321L));
+        log.add(1234L, Long.MAX_VALUE, "again");
+        Assert.assertEquals(log.get(1000, 1000).size(), 7999);
+        Assert.assertEquals(log.get(1234L).getPayLoad(), "again");
+
+        // writes go on while a snapshot is open, the snapshot keeps its version
+        try (var snapshot = log.snapshot()) {
+            log.add(1L, Long.MAX_VALUE, "changed");
+            Assert.assertEquals(snapshot.get(1L).getPayLoad(), "v1");
+        }
+        Assert.assertEquals(log.get(1L).getPayLoad(), "changed");
+    }
+
     @Test
     public void simpleStabilityMT1Test() throws InterruptedException, ExecutionException {
         LogMTRunner.runLogSimplePerformanceMTTest(1, 10*1000);
@@ -126,6 +802,9 @@ public class LogTest {
         System.gc();
     }
 
-
-
+    private static List<Long> ids(Iterable<LogItem<Long, String>> items) {
+        var ids = new ArrayList<Long>();
+        for (var item : items) ids.add(item.getId());
+        return ids;
+    }
 }
@@ -22,4 +22,18 @@ public class LogTest_Performance_MT {
 
     }
 
+    @Test
+    public void perfMTStripedWritesTest() throws InterruptedException, ExecutionException {
+
+        // warm up
+        LogMTRunner.runLogWriteThroughputMTTest(1, 1000*1000, 1);
+
+        // same 1M records every time, the only difference is how many threads write them
+        for (int stripes : new int[]{1, 16}) {
+            LogMTRunner.runLogWriteThroughputMTTest(1, 1000*1000, stripes);
+            LogMTRunner.runLogWriteThroughputMTTest(100, 10*1000, stripes);
+            LogMTRunner.runLogWriteThroughputMTTest(200, 5*1000, stripes);
+        }
+    }
+
 }
@@ -0,0 +1,124 @@
+package com.chronondb.core.memstore;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.properties.DefaultLogProperties;
+import com.chronondb.core.time.ManualTimeSource;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class SnapshotTest {
+
+    @Test
+    public void testPointInTime() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock)
+                .setBlockVacuumDelayMs(0).setBlockVacuumDelayBlocksize(0));
+        log.add(1L, 1500, "a");
+        clock.set(1001);
+        log.add(2L, Long.MAX_VALUE, "b");
+        clock.set(1002);
+        log.add(3L, Long.MAX_VALUE, "c");
+
+        var snapshot = log.snapshot();
+        Assert.assertEquals(snapshot.getTime(), 1002);
+
+        // later writes of the same millisecond and from the past are not there
+        log.add(4L, Long.MAX_VALUE, "d");
+        log.replay(new LogItem<>(5L, 1001, Long.MAX_VALUE, "e"));
+        // removed ones are still there
+        log.remove(2L);
+        log.flush(1002, 1002);
+        Assert.assertEquals(ids(log.get(0, Long.MAX_VALUE)), List.of(1L, 5L));
+
+        // expired and vacuumed after the snapshot, still there
+        clock.set(1015);
+        log.add(6L, Long.MAX_VALUE, "f");
+        clock.set(1025);
+        log.add(7L, Long.MAX_VALUE, "g");
+        clock.set(2000);
+        log.add(8L, Long.MAX_VALUE, "h");
+        log.vacuum();
+        Assert.assertNull(log.get(1L));
+
+        Assert.assertEquals(ids(snapshot.get(0, Long.MAX_VALUE)), List.of(1L, 2L, 3L));
+        Assert.assertEquals(ids(snapshot.get(1001, 1001)), List.of(2L));
+        Assert.assertEquals(snapshot.get(2L).getPayLoad(), "b");
+        Assert.assertEquals(snapshot.get(1L).getPayLoad(), "a");
+        Assert.assertNull(snapshot.get(5L));
+        Assert.assertNull(snapshot.get(8L));
+
+        // nobody needs removed items after close
+        Assert.assertTrue(log.versions().retiredCount() > 0);
+        snapshot.close();
+        Assert.assertEquals(log.versions().retiredCount(), 0);
+        Assert.expectThrows(IllegalStateException.class, () -> snapshot.get(0, Long.MAX_VALUE));
+
+        // no snapshot, nothing is kept
+        log.remove(6L);
+        Assert.assertEquals(log.versions().retiredCount(), 0);
+    }
+
+    @Test
+    public void testUpsertVersion() throws DatabaseGenericException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock)
+                .setUpsert(true));
+        log.add(1L, Long.MAX_VALUE, "old");
+
+        try (var snapshot = log.snapshot()) {
+            clock.set(1005);
+            log.add(1L, Long.MAX_VALUE, "new");
+
+            Assert.assertEquals(log.get(1L).getPayLoad(), "new");
+            Assert.assertEquals(snapshot.get(1L).getPayLoad(), "old");
+            Assert.assertEquals(ids(snapshot.get(0, Long.MAX_VALUE)), List.of(1L));
+
+            // a newer snapshot sees the new version
+            try (var newer = log.snapshot()) {
+                Assert.assertEquals(newer.get(1L).getPayLoad(), "new");
+                Assert.assertTrue(newer.getVersion() > snapshot.getVersion());
+            }
+        }
+    }
+
+    @Test(timeOut = 10 * 1000)
+    public void testWritersDontWaitForEachOther() throws Exception {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(10).setTimeSource(clock));
+        log.add(1L, Long.MAX_VALUE, "a");
+
+        try (var snapshot = log.snapshot()) {
+            // writer preempted in the middle of its change
+            var versions = log.versions();
+            int epoch = versions.enter();
+            long stuck = versions.stamp();
+            Assert.assertTrue(stuck > snapshot.getVersion());
+
+            // the others go on
+            log.add(2L, Long.MAX_VALUE, "b");
+            log.remove(1L);
+            Assert.assertEquals(ids(log.get(0, Long.MAX_VALUE)), List.of(2L));
+            Assert.assertEquals(ids(snapshot.get(0, Long.MAX_VALUE)), List.of(1L));
+
+            // only a new snapshot waits for it, its version covers the stamp
+            var newer = CompletableFuture.supplyAsync(log::snapshot);
+            Thread.sleep(100);
+            Assert.assertFalse(newer.isDone());
+            versions.exit(epoch);
+            try (var next = newer.get()) {
+                Assert.assertTrue(next.getVersion() >= stuck);
+                Assert.assertEquals(ids(next.get(0, Long.MAX_VALUE)), List.of(2L));
+            }
+        }
+    }
+
+    private static List<Long> ids(Iterable<LogItem<Long, String>> items) {
+        var ids = new ArrayList<Long>();
+        for (var item : items) ids.add(item.getId());
+        return ids;
+    }
+}
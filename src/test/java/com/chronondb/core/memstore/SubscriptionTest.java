@@ -0,0 +1,132 @@
+package com.chronondb.core.memstore;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.properties.DefaultLogProperties;
+import com.chronondb.core.properties.DefaultSubscriptionProperties;
+import com.chronondb.core.properties.SlowConsumerPolicy;
+import com.chronondb.core.time.ManualTimeSource;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class SubscriptionTest {
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) Assert.fail("Delivery timeout");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testAllEventTypes() throws DatabaseGenericException, InterruptedException {
+        var clock = new ManualTimeSource(1000);
+        Log<Long, String> log = new Log<>(new DefaultLogProperties().setBlockSize(100).setTimeSource(clock));
+
+        var events = new CopyOnWriteArrayList<LogEvent<Long, String>>();
+        try (var subscription = log.subscribe(events::addAll,
+                new DefaultSubscriptionProperties().setDeliverRemovals(true).setDeliverExpirations(true))) {
+
+            log.add(1L, Long.MAX_VALUE, "one");
+            log.add(2L, 1010, "two");
+            log.remove(1L);
+            // nothing to remove, nothing to report
+            log.remove(42L);
+            clock.advance(20);
+            // read notices expired item
+            Assert.assertNull(log.get(2L));
+            log.flush(0, 5000);
+
+            await(() -> events.size() == 5);
+            Assert.assertEquals(events.get(0).getType(), LogEvent.Type.ADD);
+            Assert.assertEquals(events.get(0).getItem().getPayLoad(), "one");
+            Assert.assertEquals((long) events.get(1).getItemId(), 2L);
+            Assert.assertEquals(events.get(2).getType(), LogEvent.Type.REMOVE);
+            Assert.assertEquals((long) events.get(2).getItemId(), 1L);
+            Assert.assertEquals(events.get(3).getType(), LogEvent.Type.EXPIRE);
+            Assert.assertEquals(events.get(3).getItem().getPayLoad(), "two");
+            Assert.assertEquals(events.get(4).getType(), LogEvent.Type.FLUSH);
+            Assert.assertEquals(events.get(4).getEndTimeMillis(), 5000);
+            Assert.assertEquals(subscription.getDelivered(), 5);
+        }
+
+        // closed, nobody listens anymore
+        log.add(3L, Long.MAX_VALUE, "three");
+        Thread.sleep(50);
+        Assert.assertEquals(events.size(), 5);
+    }
+
+    @Test
+    public void testAddsOnlyByDefaultAndBatched() throws DatabaseGenericException, InterruptedException {
+        Log<Long, String> log = new Log<>(new DefaultLogProperties());
+        var batches = new CopyOnWriteArrayList<Integer>();
+        var received = new CopyOnWriteArrayList<Long>();
+
+        try (var ignored = log.subscribe(events -> {
+            batches.add(events.size());
+            for (var event : events) received.add(event.getItemId());
+        }, new DefaultSubscriptionProperties().setBatchSize(10))) {
+            for (long i = 0; i < 1000; i++) log.add(i, Long.MAX_VALUE, null);
+            log.remove(0L);
+            log.flush(Long.MIN_VALUE, Long.MAX_VALUE);
+
+            await(() -> received.size() == 1000);
+            Thread.sleep(50);
+            // removals are off, so nothing but adds, in order
+            Assert.assertEquals(received.size(), 1000);
+            for (int i = 0; i < 1000; i++) Assert.assertEquals((long) received.get(i), i);
+            for (var size : batches) Assert.assertTrue(size <= 10);
+        }
+    }
+
+    @Test
+    public void testSlowConsumerPolicies() throws DatabaseGenericException, InterruptedException {
+        Log<Long, String> log = new Log<>(new DefaultLogProperties());
+        var release = new CountDownLatch(1);
+        Subscriber<Long, String> stuck = events -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        var newest = log.subscribe(stuck, new DefaultSubscriptionProperties()
+                .setBufferSize(4).setSlowConsumerPolicy(SlowConsumerPolicy.DROP_NEWEST));
+        var oldest = log.subscribe(stuck, new DefaultSubscriptionProperties()
+                .setBufferSize(4).setSlowConsumerPolicy(SlowConsumerPolicy.DROP_OLDEST));
+
+        var disconnected = new CountDownLatch(1);
+        var disconnect = log.subscribe(new Subscriber<>() {
+            @Override
+            public void onEvents(List<LogEvent<Long, String>> events) {
+                stuck.onEvents(events);
+            }
+
+            @Override
+            public void onDisconnect() {
+                disconnected.countDown();
+            }
+        }, new DefaultSubscriptionProperties().setBufferSize(4).setSlowConsumerPolicy(SlowConsumerPolicy.DISCONNECT));
+
+        for (long i = 0; i < 100; i++) log.add(i, Long.MAX_VALUE, null);
+
+        // writer never waited, consumers lost what didn't fit
+        Assert.assertTrue(newest.getDropped() > 0);
+        Assert.assertTrue(oldest.getDropped() > 0);
+        Assert.assertTrue(newest.getPending() <= 4);
+        Assert.assertTrue(disconnected.await(1, TimeUnit.SECONDS));
+        Assert.assertFalse(disconnect.isOpen());
+
+        release.countDown();
+        newest.close();
+        oldest.close();
+        Assert.assertFalse(newest.isOpen());
+    }
+}
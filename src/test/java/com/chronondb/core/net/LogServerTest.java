@@ -0,0 +1,237 @@
+package com.chronondb.core.net;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.exception.OverloadException;
+import com.chronondb.core.memstore.Log;
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.properties.DefaultLogProperties;
+import com.chronondb.core.properties.DefaultServerProperties;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+public class LogServerTest {
+
+    private Log<Long, String> log;
+    private LogServer<Long, String> server;
+    private LogClient<Long, String> client;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        log = new Log<>(new DefaultLogProperties());
+        // tiny frames to be sure range is really streamed in pieces
+        server = LogServer.start(log, Codecs.LONG, Codecs.STRING,
+                new DefaultServerProperties().setPort(0).setWorkerThreads(2).setRangeFrameSize(7));
+        client = LogClient.connect(new InetSocketAddress("localhost", server.getPort()), Codecs.LONG, Codecs.STRING);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testBaseSimple() throws DatabaseGenericException {
+        client.ping();
+
+        client.add(123L, Long.MAX_VALUE, "payload");
+        Assert.assertEquals(log.get(123L).getPayLoad(), "payload");
+
+        var item = client.get(123L);
+        Assert.assertEquals((long) item.getId(), 123L);
+        Assert.assertEquals(item.getPayLoad(), "payload");
+        Assert.assertEquals(item.getTtl(), Long.MAX_VALUE);
+
+        client.add(124L, Long.MAX_VALUE, null);
+        Assert.assertNull(client.get(124L).getPayLoad());
+
+        client.remove(123L);
+        Assert.assertNull(client.get(123L));
+        Assert.assertEquals(client.get(0, Long.MAX_VALUE).size(), 1);
+
+        client.flush(Long.MIN_VALUE, Long.MAX_VALUE);
+        Assert.assertTrue(client.get(0, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testPipelinedWritesAndStreamedRange() throws DatabaseGenericException {
+        int count = 10 * 1000;
+
+        // don't wait for each write, all of them are in flight at once
+        var futures = new ArrayList<CompletableFuture<Void>>(count);
+        for (long i = 0; i < count; i++) futures.add(client.addAsync(i, Long.MAX_VALUE, "v" + i));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        var ids = new HashSet<Long>();
+        var items = client.iterator(0, Long.MAX_VALUE);
+        while (items.hasNext()) {
+            LogItem<Long, String> item = items.next();
+            Assert.assertEquals(item.getPayLoad(), "v" + item.getId());
+            ids.add(item.getId());
+        }
+        Assert.assertEquals(ids.size(), count);
+
+        // GETs in flight interleaved with another range
+        var gets = new ArrayList<CompletableFuture<LogItem<Long, String>>>();
+        for (long i = 0; i < 100; i++) gets.add(client.getAsync(i));
+        Assert.assertEquals(client.get(0, Long.MAX_VALUE).size(), count);
+        for (int i = 0; i < gets.size(); i++) Assert.assertEquals((long) gets.get(i).join().getId(), i);
+
+        // whole range collected by the reader thread, nobody iterates
+        Assert.assertEquals(client.getAsync(0L, Long.MAX_VALUE).join().size(), count);
+        client.remove(0L);
+        Assert.assertEquals(client.getAsync(0L, Long.MAX_VALUE).join().size(), count - 1);
+    }
+
+    @Test
+    public void testSeveralClients() throws Exception {
+        try (var another = LogClient.connect(new InetSocketAddress("localhost", server.getPort()), Codecs.LONG, Codecs.STRING)) {
+            client.add(1L, Long.MAX_VALUE, "one");
+            another.add(2L, Long.MAX_VALUE, "two");
+            Assert.assertEquals(another.get(1L).getPayLoad(), "one");
+            Assert.assertEquals(client.get(2L).getPayLoad(), "two");
+        }
+        // closed one doesn't affect the rest
+        Assert.assertEquals(client.get(0, Long.MAX_VALUE).size(), 2);
+    }
+
+    @Test
+    public void testAbandonedAndClosedRanges() throws Exception {
+        var payload = "x".repeat(64 * 1024);
+        for (long i = 0; i < 200; i++) log.add(i, Long.MAX_VALUE, payload);
+
+        try (var another = LogClient.connect(new InetSocketAddress("localhost", server.getPort()),
+                Codecs.LONG, Codecs.STRING, 5000)) {
+            // nobody reads it, but the rest of the connection goes on, the stream is dropped instead
+            var abandoned = another.iterator(0, Long.MAX_VALUE);
+            Assert.assertTrue(abandoned.hasNext());
+            Assert.assertEquals(another.get(5L).getPayLoad(), payload);
+            Assert.expectThrows(IllegalStateException.class, () -> {
+                while (abandoned.hasNext()) abandoned.next();
+            });
+
+            // closed one is cancelled on server
+            var closed = another.iterator(0, Long.MAX_VALUE);
+            closed.next();
+            closed.close();
+            Assert.assertFalse(closed.hasNext());
+            Assert.assertEquals(another.get(6L).getPayLoad(), payload);
+            Assert.assertEquals(another.get(0, 99).size() + another.get(100, Long.MAX_VALUE).size(), 200);
+        }
+    }
+
+    @Test
+    public void testClientNotReading() throws Exception {
+        var payload = "x".repeat(64 * 1024);
+        for (long i = 0; i < 200; i++) log.add(i, Long.MAX_VALUE, payload);
+
+        try (var single = LogServer.start(log, Codecs.LONG, Codecs.STRING, new DefaultServerProperties().setPort(0)
+                .setWorkerThreads(1).setMaxPendingOutputBytes(64 * 1024).setWriteTimeoutMs(500));
+             var stuck = SocketChannel.open()) {
+            var address = new InetSocketAddress("localhost", single.getPort());
+            // asks for a range and never reads it
+            stuck.socket().setReceiveBufferSize(1024);
+            stuck.connect(address);
+            var request = new FrameWriter(32).beginFrame(1, Protocol.OP_RANGE)
+                    .putLong(0).putLong(Long.MAX_VALUE).endFrame().drain();
+            while (request.hasRemaining()) stuck.write(request);
+            Thread.sleep(100);
+
+            // the only worker is freed once the stuck connection is dropped
+            try (var another = LogClient.connect(address, Codecs.LONG, Codecs.STRING, 5000)) {
+                another.ping();
+                Assert.assertEquals(another.get(1L).getPayLoad(), payload);
+            }
+        }
+    }
+
+    @Test
+    public void testBrokenClients() throws Exception {
+        var payload = "x".repeat(1024);
+        for (long i = 0; i < 500; i++) log.add(i, Long.MAX_VALUE, payload);
+
+        // clients ask for a range and reset the connection while workers stream it
+        var address = new InetSocketAddress("localhost", server.getPort());
+        var resets = new ArrayList<CompletableFuture<Void>>();
+        for (int t = 0; t < 4; t++) {
+            resets.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 50; i++) {
+                    try (var broken = SocketChannel.open(address)) {
+                        var request = new FrameWriter(32).beginFrame(1, Protocol.OP_RANGE)
+                                .putLong(0).putLong(Long.MAX_VALUE).endFrame().drain();
+                        while (request.hasRemaining()) broken.write(request);
+                        broken.socket().setSoLinger(true, 0);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }));
+        }
+        CompletableFuture.allOf(resets.toArray(new CompletableFuture[0])).join();
+
+        // the server still reads and accepts
+        client.ping();
+        Assert.assertEquals(client.get(0, Long.MAX_VALUE).size(), 500);
+        try (var another = LogClient.connect(address, Codecs.LONG, Codecs.STRING, 5000)) {
+            Assert.assertEquals(another.get(7L).getPayLoad(), payload);
+        }
+    }
+
+    @Test(timeOut = 10 * 1000)
+    public void testTimeoutsAndBrokenFrames() throws Exception {
+        try (var fake = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+             var slow = LogClient.connect((InetSocketAddress) fake.getLocalAddress(), Codecs.LONG, Codecs.STRING, 200);
+             var peer = fake.accept()) {
+            // nobody answers: the timed out requests are forgotten, ranges are cancelled on server
+            Assert.expectThrows(OverloadException.class, slow::ping);
+            var range = slow.getAsync(0L, 100L).orTimeout(100, TimeUnit.MILLISECONDS);
+            Assert.expectThrows(CompletionException.class, range::join);
+            var stream = slow.iterator(0, 100);
+            Assert.expectThrows(IllegalStateException.class, stream::hasNext);
+
+            var received = new ArrayList<String>();
+            for (int i = 0; i < 5; i++) {
+                var frame = readFrame(peer);
+                received.add(frame.getLong() + ":" + frame.get());
+            }
+            Assert.assertEquals(received, List.of("1:" + Protocol.OP_PING, "2:" + Protocol.OP_RANGE,
+                    "2:" + Protocol.OP_CANCEL, "3:" + Protocol.OP_RANGE, "3:" + Protocol.OP_CANCEL));
+
+            // garbage breaks the connection instead of the reader thread
+            var get = slow.getAsync(1L);
+            readFrame(peer);
+            peer.write(ByteBuffer.allocate(Protocol.LENGTH_SIZE).putInt(-1).flip());
+            var error = Assert.expectThrows(CompletionException.class, get::join);
+            Assert.assertTrue(error.getCause() instanceof DatabaseGenericException);
+            Assert.assertEquals(peer.read(ByteBuffer.allocate(1)), -1);
+        }
+    }
+
+    private static ByteBuffer readFrame(SocketChannel channel) throws IOException {
+        var length = ByteBuffer.allocate(Protocol.LENGTH_SIZE);
+        while (length.hasRemaining()) channel.read(length);
+        var frame = ByteBuffer.allocate(length.flip().getInt());
+        while (frame.hasRemaining()) channel.read(frame);
+        return frame.flip();
+    }
+
+    @Test(expectedExceptions = DatabaseGenericException.class)
+    public void testClosedClient()throws DatabaseGenericException {
+        client.close();
+        client.add(1L, Long.MAX_VALUE, "one");
+    }
+}
@@ -0,0 +1,172 @@
+package com.chronondb.core.replication;
+
+import com.chronondb.core.exception.DatabaseGenericException;
+import com.chronondb.core.memstore.Log;
+import com.chronondb.core.memstore.LogItem;
+import com.chronondb.core.net.Codecs;
+import com.chronondb.core.properties.DefaultLogProperties;
+import com.chronondb.core.properties.DefaultReplicationProperties;
+import com.chronondb.core.time.ManualTimeSource;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.function.BooleanSupplier;
+
+public class ReplicationTest {
+
+    private static Log<Long, String> newLog(ManualTimeSource clock) {
+        return new Log<>(new DefaultLogProperties().setBlockSize(100).setTimeSource(clock));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) Assert.fail("Replication timeout");
+            Thread.sleep(10);
+        }
+    }
+
+    private static int size(Log<Long, String> log) {
+        try {
+            return log.get(Long.MIN_VALUE, Long.MAX_VALUE).size();
+        } catch (DatabaseGenericException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static LogItem<Long, String> find(Log<Long, String> log, long itemId) {
+        try {
+            return log.get(itemId);
+        } catch (DatabaseGenericException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testSnapshotAndLiveStream() throws IOException, DatabaseGenericException, InterruptedException {
+        // both sides see the same time, so items from the current block keep register time as well
+        var leaderClock = new ManualTimeSource(10_000);
+        var followerClock = new ManualTimeSource(10_000);
+        var leaderLog = newLog(leaderClock);
+
+        // history from several blocks, follower doesn't have these blocks and must splice them
+        for (long i = 0; i < 5; i++) {
+            leaderLog.add(i, Long.MAX_VALUE, "v" + i);
+            leaderClock.advance(250);
+        }
+        followerClock.set(leaderClock.currentTimeMillis());
+
+        try (var leader = ReplicationLeader.start(leaderLog, Codecs.LONG, Codecs.STRING,
+                new DefaultReplicationProperties().setPort(0).setHeartbeatMs(20))) {
+            var address = new InetSocketAddress("localhost", leader.getPort());
+            var followerLog = newLog(followerClock);
+
+            try (var follower = ReplicationFollower.connect(followerLog, address, Codecs.LONG, Codecs.STRING)) {
+                await(follower::isInSync);
+                Assert.assertEquals(size(followerLog), 5);
+                for (long i = 0; i < 5; i++)
+                    Assert.assertEquals(followerLog.get(i).getRegisterTime(), leaderLog.get(i).getRegisterTime());
+
+                // live operations
+                leaderLog.add(100L, Long.MAX_VALUE, "live");
+                leaderLog.remove(0L);
+                await(() -> size(followerLog) == 5 && find(followerLog, 0L) == null);
+                Assert.assertEquals(followerLog.get(100L).getPayLoad(), "live");
+
+                // touched TTL goes to the follower, item stays where it was
+                leaderLog.touch(1L, 123_456);
+                await(() -> find(followerLog, 1L).getTtl() == 123_456);
+                Assert.assertEquals(followerLog.get(1L).getRegisterTime(), leaderLog.get(1L).getRegisterTime());
+                Assert.assertEquals(size(followerLog), 5);
+
+                leaderLog.flush(Long.MIN_VALUE, Long.MAX_VALUE);
+                await(() -> size(followerLog) == 0);
+
+                var stats = follower.getStats();
+                Assert.assertEquals(stats.getSnapshots(), 1);
+                Assert.assertTrue(stats.getOperations() >= 8);
+                Assert.assertTrue(stats.getBatches() > 0);
+                Assert.assertEquals(leader.getFollowerStats().size(), 1);
+            }
+        }
+    }
+
+    @Test
+    public void testReplayIntoIdleBlock() throws IOException, DatabaseGenericException, InterruptedException {
+        var leaderClock = new ManualTimeSource(10_000);
+        var followerClock = new ManualTimeSource(10_000);
+        var leaderLog = newLog(leaderClock);
+        var followerLog = newLog(followerClock);
+
+        try (var leader = ReplicationLeader.start(leaderLog, Codecs.LONG, Codecs.STRING,
+                new DefaultReplicationProperties().setPort(0).setHeartbeatMs(20));
+             var follower = ReplicationFollower.connect(followerLog,
+                     new InetSocketAddress("localhost", leader.getPort()), Codecs.LONG, Codecs.STRING)) {
+            await(follower::isInSync);
+
+            // follower has had no writes for a few blocks, and its clock is a bit ahead
+            leaderClock.set(10_300);
+            followerClock.set(10_550);
+            leaderLog.add(1L, Long.MAX_VALUE, "v1");
+            await(() -> find(followerLog, 1L) != null);
+            Assert.assertEquals(followerLog.get(1L).getRegisterTime(), 10_300);
+
+            // so a touch replaces the item instead of leaving a second copy
+            leaderLog.touch(1L, 123_456);
+            await(() -> find(followerLog, 1L).getTtl() == 123_456);
+            Assert.assertEquals(size(followerLog), 1);
+        }
+    }
+
+    @Test
+    public void testLeaderLag() throws IOException, DatabaseGenericException, InterruptedException {
+        var leaderClock = new ManualTimeSource(10_000);
+        var leaderLog = newLog(leaderClock);
+
+        try (var leader = ReplicationLeader.start(leaderLog, Codecs.LONG, Codecs.STRING,
+                new DefaultReplicationProperties().setPort(0));
+             var stuck = new Socket()) {
+            // follower which never reads, sender is soon blocked on a full socket and operations wait in the queue
+            stuck.setReceiveBufferSize(1024);
+            stuck.connect(new InetSocketAddress("localhost", leader.getPort()));
+            await(() -> leader.getFollowerStats().size() == 1);
+            Assert.assertEquals(leader.getFollowerStats().get(0).getLagMillis(), 0);
+
+            // sender takes these in a single batch and can't write it out
+            var payload = "x".repeat(1 << 20);
+            for (long i = 0; i < 64; i++) leaderLog.add(i, Long.MAX_VALUE, payload);
+            Thread.sleep(200);
+            for (long i = 100; i < 110; i++) leaderLog.add(i, Long.MAX_VALUE, "small");
+            Assert.assertEquals(leader.getFollowerStats().get(0).getPendingOperations(), 10);
+
+            // lag is measured by the Log clock
+            leaderClock.advance(5000);
+            Assert.assertEquals(leader.getFollowerStats().get(0).getLagMillis(), 5000);
+        }
+    }
+
+    @Test
+    public void testSlowFollowerResync() throws IOException, DatabaseGenericException, InterruptedException {
+        var leaderClock = new ManualTimeSource(10_000);
+        var leaderLog = newLog(leaderClock);
+        var followerLog = newLog(new ManualTimeSource(10_000));
+
+        // tiny queue, a burst of writes overflows it for sure
+        try (var leader = ReplicationLeader.start(leaderLog, Codecs.LONG, Codecs.STRING,
+                new DefaultReplicationProperties().setPort(0).setMaxPendingOperations(4).setBatchSize(2));
+             var follower = ReplicationFollower.connect(followerLog,
+                     new InetSocketAddress("localhost", leader.getPort()), Codecs.LONG, Codecs.STRING)) {
+            await(follower::isInSync);
+
+            int count = 10 * 1000;
+            for (long i = 0; i < count; i++) leaderLog.add(i, Long.MAX_VALUE, "v" + i);
+
+            // whatever was lost comes with a snapshot
+            await(() -> size(followerLog) == count);
+            Assert.assertTrue(follower.getStats().getSnapshots() > 1);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.chronondb.core.time;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TimeSourceTest {
+
+    @Test
+    public void testManualTimeSource() {
+        var clock = new ManualTimeSource(100);
+        Assert.assertEquals(clock.currentTimeMillis(), 100);
+        Assert.assertEquals(clock.advance(10), 110);
+        clock.set(200);
+        Assert.assertEquals(clock.currentTimeMillis(), 200);
+        Assert.assertThrows(IllegalArgumentException.class, () -> clock.set(199));
+        Assert.assertThrows(IllegalArgumentException.class, () -> clock.advance(-1));
+        Assert.assertEquals(clock.currentTimeMillis(), 200);
+    }
+
+    @Test
+    public void testCachedTimeSource() throws InterruptedException {
+        try (var clock = CachedTimeSource.start()) {
+            Assert.assertTrue(clock.isRunning());
+
+            long first = clock.currentTimeMillis();
+            Assert.assertTrue(Math.abs(first - System.currentTimeMillis()) < 100);
+
+            Thread.sleep(50);
+            long second = clock.currentTimeMillis();
+            Assert.assertTrue(second > first);
+
+            clock.close();
+            Thread.sleep(20);
+            Assert.assertFalse(clock.isRunning());
+            long frozen = clock.currentTimeMillis();
+            Thread.sleep(20);
+            Assert.assertEquals(clock.currentTimeMillis(), frozen);
+        }
+    }
+
+    @Test
+    public void testCachedTimeSourceBadTick() {
+        Assert.assertThrows(IllegalArgumentException.class, () -> CachedTimeSource.start(0));
+    }
+}